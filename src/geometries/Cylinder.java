@@ -10,6 +10,7 @@ import primitives.Ray;
  * @author Eitan Lafair
  */
 public class Cylinder extends Tube {
+    private static final long serialVersionUID = 1L;
 
     /**
      * The height of the cylinder.
@@ -13,7 +13,9 @@ import java.util.List;
  * @author Eitan Lafair
  */
 public class Geometries extends Intersectable {
+    private static final long serialVersionUID = 1L;
 
+    @SuppressWarnings("serial") // A linked list
     private final List<Intersectable> intersectables = new LinkedList<>();
 
     /**
@@ -79,4 +81,11 @@ public class Geometries extends Intersectable {
         }
         return intersections;
     }
+
+    @Override
+    public boolean hasIntersection(Ray ray, double maxDistance) {
+        for (Intersectable geometry : intersectables)
+            if (geometry.hasIntersection(ray, maxDistance)) return true; // Any hit is enough
+        return false;
+    }
 }
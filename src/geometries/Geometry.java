@@ -10,6 +10,7 @@ import primitives.Vector;
  * @author Eitan Lafair
  */
 public abstract class Geometry extends Intersectable {
+    private static final long serialVersionUID = 1L;
 
 
     /**
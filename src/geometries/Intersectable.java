@@ -6,13 +6,17 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.io.Serializable;
 import java.util.List;
 
+import static primitives.Util.alignZero;
+
 /**
  * Abstract base for all intersectable geometries.
  * @author Eitan Lafair
  */
-public abstract class Intersectable {
+public abstract class Intersectable implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Returns intersection points (without geometry info) of a ray with the geometry.
@@ -41,6 +45,22 @@ public abstract class Intersectable {
         return calculateIntersectionsHelper(ray);
     }
 
+    /**
+     * Bounded any-hit query - checks whether a ray hits the geometry closer than
+     * a distance from its head. Collections stop at the first geometry which is
+     * hit, without collecting all the intersections.
+     * @param ray         the ray to intersect
+     * @param maxDistance the distance bound
+     * @return true if there is an intersection closer than the distance
+     */
+    public boolean hasIntersection(Ray ray, double maxDistance) {
+        var intersections = calculateIntersections(ray);
+        if (intersections == null) return false;
+        for (Intersection intersection : intersections)
+            if (alignZero(intersection.point.distance(ray.head) - maxDistance) < 0) return true;
+        return false;
+    }
+
     /**
      * Record of an intersection point and its geometry.
      */
@@ -54,6 +74,7 @@ public abstract class Intersectable {
         public LightSource lightSource;   // Current light source affecting the point
         public Vector lightDirection;     // Vector from the point toward the light source
         public double lnDotProduct;       // Dot product of light direction and normal
+        public long seed;                 // Random key of the traced sample (see primitives.CounterRng)
 
 
 
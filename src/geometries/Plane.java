@@ -14,6 +14,8 @@ import java.util.List;
  * the vector will always be normalized
  */
 public class Plane extends Geometry {
+    private static final long serialVersionUID = 1L;
+
     private final Point q;
     private final Vector normal;
 
@@ -52,22 +54,34 @@ public class Plane extends Geometry {
     }
     @Override
     public List<Point> findIntersections(Ray ray) {
+        double t = intersectionDistance(ray);
+        if (t > 0)
+            return List.of(ray.getPoint(t));
+        return null;
+
+    }
+
+    /**
+     * Distance along a ray to its intersection with the plane
+     * @param ray the ray
+     * @return the distance, 0 or negative if the ray does not intersect the plane
+     */
+    double intersectionDistance(Ray ray) {
         double denominator = Util.alignZero(normal.dotProduct(ray.direction));
         if (Util.isZero(denominator)) // the ray is parallel to the plane
-            return null;
-
-        double t;
+            return 0;
 
         try {
-            t = Util.alignZero(normal.dotProduct(q.subtract(ray.head)) / denominator);
+            return Util.alignZero(normal.dotProduct(q.subtract(ray.head)) / denominator);
         }
         catch (IllegalArgumentException e) { //q-head == 0 => head == q => ray starts on plane
-            return null; }
-
-        if (t > 0)
-            return List.of(ray.getPoint(t));
-        return null;
+            return 0; }
+    }
 
+    @Override
+    public boolean hasIntersection(Ray ray, double maxDistance) {
+        double t = intersectionDistance(ray);
+        return t > 0 && Util.alignZero(t - maxDistance) < 0;
     }
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
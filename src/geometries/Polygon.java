@@ -15,9 +15,12 @@ import static primitives.Util.isZero;
  * @author Dan
  */
 public class Polygon extends Geometry  {
+    private static final long serialVersionUID = 1L;
+
     /**
      * List of polygon's vertices
      */
+    @SuppressWarnings("serial") // An immutable list
     protected final List<Point> vertices;
     /**
      * Associated plane in which the polygon lays
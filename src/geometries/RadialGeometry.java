@@ -4,6 +4,7 @@ package geometries;
  * Abstract class representing geometric shapes with a radius.
  */
 public abstract class RadialGeometry extends Geometry {
+    private static final long serialVersionUID = 1L;
 
     protected final double radius;
     protected final double radiusSquared;
@@ -14,6 +14,7 @@ import static primitives.Util.alignZero;
  * @author Eitan lafair
  */
 public class Sphere extends RadialGeometry {
+    private static final long serialVersionUID = 1L;
 
 
     public Point center;
@@ -78,4 +79,19 @@ public class Sphere extends RadialGeometry {
         // If both are negative, return null
         return null;
     }
+
+    @Override
+    public boolean hasIntersection(Ray ray, double maxDistance) {
+        if (ray.head.equals(center)) return alignZero(radius - maxDistance) < 0;
+        Vector u = center.subtract(ray.head);
+        double tm = ray.direction.dotProduct(u);
+        double d = Math.sqrt(u.lengthSquared() - tm * tm);
+        if (d >= radius) return false;
+
+        // The nearest intersection in front of the head, if any
+        double th = Math.sqrt(radius * radius - d * d);
+        double t0 = alignZero(tm - th);
+        double t = t0 > 0 ? t0 : alignZero(tm + th);
+        return t > 0 && alignZero(t - maxDistance) < 0;
+    }
 }
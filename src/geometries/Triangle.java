@@ -14,6 +14,8 @@ import static primitives.Util.alignZero;
  * @author Eitan Lafair
  */
 public class Triangle extends Polygon {
+    private static final long serialVersionUID = 1L;
+
     public Triangle(Point p1, Point p2, Point p3) {
         super(p1, p2, p3);
     }
@@ -22,9 +24,25 @@ public class Triangle extends Polygon {
     protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
         var intersections = plane.findIntersections(ray);
         // Check if the ray intersects the plane of the triangle
-        if (intersections == null)
+        if (intersections == null || !isInside(ray))
             return null;
+        return List.of(new Intersection(this, intersections.getFirst(), this.getMaterial()));
+    }
+
+    @Override
+    public boolean hasIntersection(Ray ray, double maxDistance) {
+        double t = plane.intersectionDistance(ray);
+        // Reject a miss of the plane, or a hit too far, before the edges tests
+        return t > 0 && alignZero(t - maxDistance) < 0 && isInside(ray);
+    }
 
+    /**
+     * Checks whether a ray passes inside the triangle (by its edges only - the
+     * intersection with the plane is checked by the caller)
+     * @param ray the ray
+     * @return true if the ray passes inside the triangle
+     */
+    private boolean isInside(Ray ray) {
         // Retrieve the vertices of the triangle
         Point p0 = vertices.getFirst();
         Point p1 = vertices.get(1);
@@ -35,7 +53,7 @@ public class Triangle extends Polygon {
         Point rayPoint = ray.head;
 
         if (p0.equals(rayPoint) || p1.equals(rayPoint) || p2.equals(rayPoint))
-            return null; // The ray's head is one of the triangle's vertices
+            return false; // The ray's head is one of the triangle's vertices
 
         // Calculate vectors representing edges of the triangle
         Vector v1 = p0.subtract(rayPoint);
@@ -46,22 +64,19 @@ public class Triangle extends Polygon {
         double d1 = alignZero(n1.dotProduct(rayDirection));
         // Check if the ray does not intersect the triangle.
         if (d1 == 0)
-            return null;
+            return false;
 
         Vector v3 = p2.subtract(rayPoint);
         Vector n2 = v2.crossProduct(v3).normalize();
         double d2 = alignZero(n2.dotProduct(rayDirection));
         // Check if the ray does not intersect the triangle
         if (d1 * d2 <= 0)
-            return null;
+            return false;
 
         Vector n3 = v3.crossProduct(v1).normalize();
         double d3 = alignZero(n3.dotProduct(rayDirection));
         // Check if the ray does not intersect the triangle
-        if (d1 * d3 <= 0)
-            return null;
-
-        return List.of(new Intersection(this, intersections.getFirst(), this.getMaterial()));
+        return d1 * d3 > 0;
     }
 
 }
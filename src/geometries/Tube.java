@@ -14,6 +14,7 @@ import static primitives.Util.isZero;
  * @author Eitan lafair
  */
 public class Tube extends RadialGeometry {
+    private static final long serialVersionUID = 1L;
 
     public Ray axis;
 
@@ -8,6 +8,7 @@ import primitives.Color;
  * @author Eitan
  */
 public class AmbientLight extends Light {
+    private static final long serialVersionUID = 1L;
 
     /** Constant representing no ambient light (black) */
     public static final AmbientLight NONE = new AmbientLight(Color.BLACK);
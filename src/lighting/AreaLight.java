@@ -0,0 +1,169 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+import renderer.BlackBoard;
+
+/**
+ * Area light - a rectangle or a disk which emits light from its whole surface,
+ * casting soft shadows. The shading (intensity, attenuation and direction) is
+ * computed from the center of the light as of a point light, and the shadow
+ * is the average visibility of sample points of the surface, taken on the
+ * {@link BlackBoard} grid of the light shape.<br/>
+ * The shadow sampling is adaptive: a first batch of samples, spread over the
+ * surface by the progressive order of the grid, is traced, and only if the
+ * samples disagree (the point is in the penumbra) the rest of the samples are
+ * traced.
+ *
+ * @author Eitan Lafair
+ */
+public class AreaLight extends PointLight {
+    private static final long serialVersionUID = 1L;
+
+    /** Local horizontal axis of the light surface */
+    private final Vector right;
+    /** Local vertical axis of the light surface */
+    private final Vector up;
+    /** Width of the light surface */
+    private final double width;
+    /** Height of the light surface */
+    private final double height;
+    /** Shape of the light surface */
+    private final BlackBoard.Shape shape;
+
+    /** Sample points of the surface, in progressive order */
+    private Point[] samples;
+    /** Amount of samples of the first batch of a shadow */
+    private int batch = 4;
+
+    /**
+     * Constructs a rectangle (or an ellipse inscribed in it) area light
+     *
+     * @param intensity the color intensity of the light
+     * @param center    the center of the light surface
+     * @param right     the horizontal axis of the surface
+     * @param up        the vertical axis of the surface
+     * @param width     the width of the surface
+     * @param height    the height of the surface
+     * @param shape     the shape of the surface
+     */
+    public AreaLight(Color intensity, Point center, Vector right, Vector up, double width, double height,
+                     BlackBoard.Shape shape) {
+        super(intensity, center);
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Area light size must be positive");
+        this.right = right.normalize();
+        this.up = up.normalize();
+        this.width = width;
+        this.height = height;
+        this.shape = shape;
+        this.samples = surfaceSamples(4);
+    }
+
+    /**
+     * Constructs a disk area light
+     *
+     * @param intensity the color intensity of the light
+     * @param center    the center of the disk
+     * @param normal    the normal of the disk
+     * @param radius    the radius of the disk
+     */
+    public AreaLight(Color intensity, Point center, Vector normal, double radius) {
+        this(intensity, center, orthogonal(normal), normal.crossProduct(orthogonal(normal)),
+                2 * radius, 2 * radius, BlackBoard.Shape.CIRCLE);
+    }
+
+    /**
+     * A vector orthogonal to a vector
+     */
+    private static Vector orthogonal(Vector vector) {
+        Vector n = vector.normalize();
+        return n.crossProduct(Math.abs(n.dotProduct(Vector.AXIS_X)) < 0.9 ? Vector.AXIS_X : Vector.AXIS_Y);
+    }
+
+    /**
+     * Sets the density of the shadow samples
+     *
+     * @param samplesPerDim amount of samples along each axis of the surface
+     * @return the light itself
+     */
+    public AreaLight setSamples(int samplesPerDim) {
+        if (samplesPerDim < 1) throw new IllegalArgumentException("Area light needs samples");
+        samples = surfaceSamples(samplesPerDim);
+        return this;
+    }
+
+    /**
+     * Sample points of the surface, in progressive order
+     *
+     * @param samplesPerDim amount of samples along each axis of the surface
+     * @return the sample points
+     */
+    private Point[] surfaceSamples(int samplesPerDim) {
+        BlackBoard board = new BlackBoard(position, right, up, width, height, samplesPerDim, shape);
+        int[] order = board.progressiveOrder();
+        Point[] points = new Point[order.length];
+        for (int s = 0; s < order.length; s++) points[s] = board.getSamplePoint(order[s]);
+        return points;
+    }
+
+    /**
+     * Sets the amount of samples of the first batch of a shadow - if all of them
+     * agree, the shadow is not sampled any further
+     *
+     * @param batch amount of samples
+     * @return the light itself
+     */
+    public AreaLight setShadowBatch(int batch) {
+        if (batch < 1) throw new IllegalArgumentException("Shadow batch must have samples");
+        this.batch = batch;
+        return this;
+    }
+
+    @Override
+    public AreaLight setKc(double kC) {
+        super.setKc(kC);
+        return this;
+    }
+
+    @Override
+    public AreaLight setKl(double kL) {
+        super.setKl(kL);
+        return this;
+    }
+
+    @Override
+    public AreaLight setKQ(double kQ) {
+        super.setKQ(kQ);
+        return this;
+    }
+
+    /**
+     * Returns the amount of shadow samples of the surface
+     *
+     * @return the amount of samples
+     */
+    public int getSampleCount() {
+        return samples.length;
+    }
+
+    /**
+     * Returns the amount of samples of the first batch of a shadow
+     *
+     * @return the amount of samples, at most all the samples
+     */
+    public int getShadowBatch() {
+        return Math.min(batch, samples.length);
+    }
+
+    /**
+     * Returns a shadow sample point of the surface. The samples are in
+     * progressive order - every prefix covers the surface evenly.
+     *
+     * @param sample the index of the sample
+     * @return the sample point
+     */
+    public Point getSamplePoint(int sample) {
+        return samples[sample];
+    }
+}
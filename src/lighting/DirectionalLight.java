@@ -8,7 +8,12 @@ import primitives.Vector;
  * class for directional light
  */
 public class DirectionalLight extends Light implements LightSource{
+    private static final long serialVersionUID = 1L;
+
     private final Vector direction;
+    private int shadowMapResolution = 0; // Texels along each axis of the shadow map, 0 for exact shadow rays
+    private Point shadowMapCenter = null; // Center of the square area covered by the shadow map
+    private double shadowMapSize = 0; // Edge size of the square area covered by the shadow map
 
     /**
      * get intensity of the light at a specific point
@@ -44,4 +49,44 @@ public class DirectionalLight extends Light implements LightSource{
     public double getDistance(Point point) {
         return Double.POSITIVE_INFINITY;
     }
+
+    /**
+     * Switches the light to shadow map mode (for preview renders): its shadows
+     * are looked up in a depth map of the scene, rendered by parallel rays along
+     * the light direction over a square area across the light direction. Points
+     * outside the area get exact shadow rays.
+     * @param resolution texels along each axis of the map, 0 for exact shadow rays
+     * @param center     center of the covered area
+     * @param size       edge size of the covered area
+     * @return the light itself
+     */
+    public DirectionalLight setShadowMap(int resolution, Point center, double size) {
+        if (resolution < 0) throw new IllegalArgumentException("Shadow map resolution must not be negative");
+        if (resolution > 0 && size <= 0) throw new IllegalArgumentException("Shadow map area must be positive");
+        this.shadowMapResolution = resolution;
+        this.shadowMapCenter = center;
+        this.shadowMapSize = size;
+        return this;
+    }
+
+    @Override
+    public int getShadowMapResolution() {
+        return shadowMapResolution;
+    }
+
+    /**
+     * get center of the area covered by the shadow map
+     * @return the center of the area
+     */
+    public Point getShadowMapCenter() {
+        return shadowMapCenter;
+    }
+
+    /**
+     * get edge size of the area covered by the shadow map
+     * @return the edge size of the area
+     */
+    public double getShadowMapSize() {
+        return shadowMapSize;
+    }
 }
\ No newline at end of file
@@ -2,13 +2,16 @@ package lighting;
 
 import primitives.Color;
 
+import java.io.Serializable;
+
 /**
  * Abstract base class for all light sources.
  * Holds the light intensity color.
  *
  * @author Eitan
  */
-public abstract class Light {
+public abstract class Light implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /** The light intensity color */
     protected final Color intensity;
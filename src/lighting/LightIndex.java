@@ -0,0 +1,183 @@
+package lighting;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial index of the light sources of a scene by their radius and cone of
+ * influence (see {@link LightSource#getInfluenceRadius(double)} and
+ * {@link LightSource#getInfluenceCone(double)}). The lights with a finite
+ * radius are binned into a uniform grid of cells over their bounding boxes -
+ * into the cells which meet their influence cone - so a point visits only the
+ * lights whose influence sphere and cone may contain it; lights at infinity and lights without attenuation are visited everywhere,
+ * and lights which are negligible everywhere are never visited. The lights of a
+ * cell are kept in the order of the scene.
+ *
+ * @author Eitan Lafair
+ */
+public final class LightIndex {
+    /** Maximal amount of cells along an axis */
+    private static final int MAX_CELLS = 32;
+
+    /** The indexed lights list */
+    private final List<LightSource> lights;
+    /** Amount of the indexed lights */
+    private final int count;
+    /** Lights visited everywhere, in the order of the scene */
+    private final LightSource[] unbounded;
+    /** Lights of each cell (including the unbounded ones), null if there is no grid */
+    private final LightSource[][] cells;
+    /** Grid origin - the minimal corner of the bounding box of the lights */
+    private final double minX, minY, minZ;
+    /** Cell edge sizes */
+    private final double cellX, cellY, cellZ;
+    /** Amounts of cells along the axes */
+    private final int nX, nY, nZ;
+
+    /**
+     * Builds the index of lights
+     *
+     * @param lights    the lights of the scene
+     * @param threshold the negligible light intensity
+     */
+    public LightIndex(List<LightSource> lights, double threshold) {
+        this.lights = lights;
+        this.count = lights.size();
+
+        List<LightSource> everywhere = new ArrayList<>();
+        double[] radii = new double[count];
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        double radiusSum = 0;
+        int bounded = 0;
+        int k = 0;
+        for (LightSource light : lights) {
+            Point position = light.getPosition();
+            double radius = position == null ? Double.POSITIVE_INFINITY : light.getInfluenceRadius(threshold);
+            radii[k++] = radius;
+            if (radius == Double.POSITIVE_INFINITY) {
+                everywhere.add(light);
+            } else if (radius > 0) {
+                x0 = Math.min(x0, position.getX() - radius);
+                y0 = Math.min(y0, position.getY() - radius);
+                z0 = Math.min(z0, position.getZ() - radius);
+                x1 = Math.max(x1, position.getX() + radius);
+                y1 = Math.max(y1, position.getY() + radius);
+                z1 = Math.max(z1, position.getZ() + radius);
+                radiusSum += radius;
+                bounded++;
+            }
+        }
+        unbounded = everywhere.toArray(new LightSource[0]);
+
+        if (bounded == 0) {
+            cells = null;
+            minX = minY = minZ = cellX = cellY = cellZ = 0;
+            nX = nY = nZ = 0;
+            return;
+        }
+
+        // Cells about the size of an average influence sphere
+        double cellSize = 2 * radiusSum / bounded;
+        minX = x0;
+        minY = y0;
+        minZ = z0;
+        nX = cellsAlong(x1 - x0, cellSize);
+        nY = cellsAlong(y1 - y0, cellSize);
+        nZ = cellsAlong(z1 - z0, cellSize);
+        cellX = (x1 - x0) / nX;
+        cellY = (y1 - y0) / nY;
+        cellZ = (z1 - z0) / nZ;
+
+        List<List<LightSource>> binned = new ArrayList<>(nX * nY * nZ);
+        for (int c = 0; c < nX * nY * nZ; c++) binned.add(new ArrayList<>());
+        k = 0;
+        for (LightSource light : lights) {
+            double radius = radii[k++];
+            if (radius == Double.POSITIVE_INFINITY) {
+                for (List<LightSource> cell : binned) cell.add(light);
+            } else if (radius > 0) {
+                Point p = light.getPosition();
+                Vector axis = light.getDirection();
+                double cone = axis == null ? -1 : light.getInfluenceCone(threshold);
+                int ix0 = cell(p.getX() - radius, minX, cellX, nX), ix1 = cell(p.getX() + radius, minX, cellX, nX);
+                int iy0 = cell(p.getY() - radius, minY, cellY, nY), iy1 = cell(p.getY() + radius, minY, cellY, nY);
+                int iz0 = cell(p.getZ() - radius, minZ, cellZ, nZ), iz1 = cell(p.getZ() + radius, minZ, cellZ, nZ);
+                for (int iz = iz0; iz <= iz1; iz++)
+                    for (int iy = iy0; iy <= iy1; iy++)
+                        for (int ix = ix0; ix <= ix1; ix++)
+                            if (cone == -1 || meetsCone(p, axis, cone, ix, iy, iz))
+                                binned.get((iz * nY + iy) * nX + ix).add(light);
+            }
+        }
+        cells = new LightSource[binned.size()][];
+        for (int c = 0; c < cells.length; c++) cells[c] = binned.get(c).toArray(new LightSource[0]);
+    }
+
+    /**
+     * Checks whether a cell may meet the cone of a light - whether the bounding
+     * sphere of the cell meets the cone
+     *
+     * @param apex the position of the light
+     * @param axis the axis of the cone
+     * @param cos  the cosine of the half angle of the cone
+     * @param ix   the cell column
+     * @param iy   the cell row
+     * @param iz   the cell layer
+     * @return false if the cell is entirely outside the cone
+     */
+    private boolean meetsCone(Point apex, Vector axis, double cos, int ix, int iy, int iz) {
+        double x = minX + (ix + 0.5) * cellX - apex.getX();
+        double y = minY + (iy + 0.5) * cellY - apex.getY();
+        double z = minZ + (iz + 0.5) * cellZ - apex.getZ();
+        double distance = Math.sqrt(x * x + y * y + z * z);
+        double radius = 0.5 * Math.sqrt(cellX * cellX + cellY * cellY + cellZ * cellZ);
+        if (distance <= radius) return true; // The apex is in the sphere
+        double angle = Math.acos(Math.max(-1, Math.min(1,
+                (x * axis.getX() + y * axis.getY() + z * axis.getZ()) / distance)));
+        return angle <= Math.acos(cos) + Math.asin(radius / distance);
+    }
+
+    /**
+     * Amount of cells along an axis of the grid
+     */
+    private static int cellsAlong(double extent, double cellSize) {
+        return (int) Math.max(1, Math.min(MAX_CELLS, Math.ceil(extent / cellSize)));
+    }
+
+    /**
+     * Index of the cell of a coordinate along an axis, clamped into the grid
+     */
+    private static int cell(double coordinate, double min, double size, int n) {
+        return (int) Math.max(0, Math.min(n - 1, Math.floor((coordinate - min) / size)));
+    }
+
+    /**
+     * Checks whether the index is up to date for a lights list
+     *
+     * @param lights the lights list
+     * @return true if the index was built from the list, and no light was added since
+     */
+    public boolean isFor(List<LightSource> lights) {
+        return this.lights == lights && count == lights.size();
+    }
+
+    /**
+     * Returns the lights which may be non-negligible at a point - the lights of
+     * its cell, in the order of the scene. The array must not be modified.
+     *
+     * @param point the point
+     * @return the lights to be visited at the point
+     */
+    public LightSource[] lightsAt(Point point) {
+        if (cells == null) return unbounded;
+        double x = (point.getX() - minX) / cellX;
+        double y = (point.getY() - minY) / cellY;
+        double z = (point.getZ() - minZ) / cellZ;
+        if (x < 0 || y < 0 || z < 0 || x > nX || y > nY || z > nZ) return unbounded; // Outside all the spheres
+        return cells[(Math.min((int) z, nZ - 1) * nY + Math.min((int) y, nY - 1)) * nX + Math.min((int) x, nX - 1)];
+    }
+}
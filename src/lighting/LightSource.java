@@ -36,4 +36,65 @@ public interface LightSource {
      * @return the distance from the light to the point
      */
     double getDistance(Point point);
+
+    /**
+     * Returns the base intensity (color) of the light, before attenuation.
+     *
+     * @return the light intensity
+     */
+    Color getIntensity();
+
+    /**
+     * Returns the emission axis of a light located in the scene which emits into
+     * the hemisphere around the axis (e.g. a spot light).
+     *
+     * @return the emission axis, or null for a light without an emission axis
+     */
+    default Vector getDirection() {
+        return null;
+    }
+
+    /**
+     * Returns the position of the light, for lights located in the scene.
+     *
+     * @return the light position, or null for a light at infinity
+     */
+    default Point getPosition() {
+        return null;
+    }
+
+    /**
+     * Returns the radius of influence of the light - the distance from its
+     * position beyond which its intensity is below a threshold in all the color
+     * components, so the light may be ignored there.
+     *
+     * @param threshold the negligible intensity
+     * @return the radius, infinity for a light without attenuation
+     */
+    default double getInfluenceRadius(double threshold) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cone of influence of the light around its emission axis (see
+     * {@link #getDirection()}) - the cosine of the angle from the axis beyond
+     * which its intensity is below a threshold at any distance, so the light
+     * may be ignored there.
+     *
+     * @param threshold the negligible intensity
+     * @return the cosine of the half angle of the cone, -1 for a light without a cone
+     */
+    default double getInfluenceCone(double threshold) {
+        return -1;
+    }
+
+    /**
+     * Returns the resolution of the shadow map of the light - a depth map of
+     * the scene seen from the light, used instead of shadow rays.
+     *
+     * @return the amount of texels along each axis of the map, 0 for exact shadow rays
+     */
+    default int getShadowMapResolution() {
+        return 0;
+    }
 }
@@ -0,0 +1,249 @@
+package lighting;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Light tree - a bounding volume hierarchy over the light sources located in
+ * the scene, for stochastic sampling of many lights. Each node aggregates the
+ * power of its lights (the sum of their intensity components), their bounding
+ * box and a cone bounding their emission directions. A light is sampled for a
+ * shading point by descending from the root, choosing a child with probability
+ * proportional to its importance for the point - its power over the squared
+ * distance, reduced by the angle between the point and the emission cone.
+ * The importance estimate never vanishes where a light of the node may reach
+ * the point, so weighting the sampled light by the inverse of its probability
+ * gives an unbiased estimate of the sum over all the lights, at a cost
+ * logarithmic in the amount of lights.<br/>
+ * Lights at infinity (without a position) are not in the tree - they should be
+ * shaded deterministically.
+ *
+ * @author Eitan Lafair
+ */
+public final class LightTree {
+    /**
+     * Node of the tree
+     *
+     * @param light  the light of a leaf, null for an inner node
+     * @param left   the left child of an inner node
+     * @param right  the right child of an inner node
+     * @param min    the minimal corner of the bounding box
+     * @param max    the maximal corner of the bounding box
+     * @param power  the total power of the lights
+     * @param axis   the axis of the emission cone (null if it is the whole sphere)
+     * @param theta  the half angle of the cone of the emission axes around the axis
+     * @param spread the angle beyond an emission axis where there is no emission
+     */
+    private record Node(LightSource light, Node left, Node right, double[] min, double[] max,
+                        double power, Vector axis, double theta, double spread) {
+    }
+
+    /** The indexed lights list */
+    private final List<LightSource> lights;
+    /** Amount of the indexed lights */
+    private final int count;
+    /** Lights without a position, in the order of the scene */
+    private final List<LightSource> unbounded = new ArrayList<>();
+    /** The root of the tree, null if there are no located lights */
+    private final Node root;
+    /** Path of each light from the root - its leaf and its ancestors */
+    private final Map<LightSource, List<Node>> paths = new IdentityHashMap<>();
+
+    /**
+     * Builds the tree of lights
+     *
+     * @param lights the lights of the scene
+     */
+    public LightTree(List<LightSource> lights) {
+        this.lights = lights;
+        this.count = lights.size();
+        List<Node> leaves = new ArrayList<>();
+        for (LightSource light : lights) {
+            Point p = light.getPosition();
+            if (p == null) {
+                unbounded.add(light);
+                continue;
+            }
+            Double3 rgb = light.getIntensity().getRgb();
+            double power = rgb.d1() + rgb.d2() + rgb.d3();
+            if (power <= 0) continue; // Emits nothing
+            double[] position = { p.getX(), p.getY(), p.getZ() };
+            Vector axis = light.getDirection();
+            leaves.add(new Node(light, null, null, position, position, power,
+                    axis, axis == null ? Math.PI : 0, Math.PI / 2));
+        }
+        root = leaves.isEmpty() ? null : build(leaves.toArray(new Node[0]), 0, leaves.size());
+        if (root != null) collectPaths(root, new ArrayList<>());
+    }
+
+    /**
+     * Builds a subtree by splitting the lights at the median of the longest axis
+     * of their bounding box
+     */
+    private static Node build(Node[] leaves, int from, int to) {
+        if (to - from == 1) return leaves[from];
+        double[] min = leaves[from].min.clone(), max = leaves[from].max.clone();
+        for (int i = from + 1; i < to; i++)
+            for (int d = 0; d < 3; d++) {
+                min[d] = Math.min(min[d], leaves[i].min[d]);
+                max[d] = Math.max(max[d], leaves[i].max[d]);
+            }
+        int axis = 0;
+        for (int d = 1; d < 3; d++) if (max[d] - min[d] > max[axis] - min[axis]) axis = d;
+        final int splitAxis = axis;
+        Arrays.sort(leaves, from, to, Comparator.comparingDouble((Node n) -> n.min[splitAxis]));
+        int middle = (from + to) / 2;
+        return merge(build(leaves, from, middle), build(leaves, middle, to));
+    }
+
+    /**
+     * Creates the parent node of two nodes
+     */
+    private static Node merge(Node a, Node b) {
+        double[] min = new double[3], max = new double[3];
+        for (int d = 0; d < 3; d++) {
+            min[d] = Math.min(a.min[d], b.min[d]);
+            max[d] = Math.max(a.max[d], b.max[d]);
+        }
+        double spread = Math.max(a.spread, b.spread);
+        if (a.axis == null || b.axis == null)
+            return new Node(null, a, b, min, max, a.power + b.power, null, Math.PI, spread);
+
+        // Bounding cone of the two cones of emission axes
+        if (b.theta > a.theta) {
+            Node swap = a;
+            a = b;
+            b = swap;
+        }
+        double between = Math.acos(Math.max(-1, Math.min(1, a.axis.dotProduct(b.axis))));
+        Vector axis = a.axis;
+        double theta = a.theta;
+        if (Math.min(between + b.theta, Math.PI) > a.theta) {
+            theta = (a.theta + between + b.theta) / 2;
+            if (theta >= Math.PI || Math.sin(between) < 1e-9) {
+                axis = null; // The whole sphere
+                theta = Math.PI;
+            } else { // Rotate the axis of the wider cone toward the other axis
+                double rotation = theta - a.theta;
+                axis = a.axis.scale(Math.sin(between - rotation) / Math.sin(between))
+                        .add(b.axis.scale(Math.sin(rotation) / Math.sin(between))).normalize();
+            }
+        }
+        return new Node(null, a, b, min, max, a.power + b.power, axis, theta, spread);
+    }
+
+    /**
+     * Records the path from the root of each leaf
+     */
+    private void collectPaths(Node node, List<Node> path) {
+        path.add(node);
+        if (node.light != null) paths.put(node.light, List.copyOf(path));
+        else {
+            collectPaths(node.left, path);
+            collectPaths(node.right, path);
+        }
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Checks whether the tree is up to date for a lights list
+     *
+     * @param lights the lights list
+     * @return true if the tree was built from the list, and no light was added since
+     */
+    public boolean isFor(List<LightSource> lights) {
+        return this.lights == lights && count == lights.size();
+    }
+
+    /**
+     * Returns the lights which are not in the tree - the lights at infinity
+     *
+     * @return the lights, in the order of the scene
+     */
+    public List<LightSource> getUnboundedLights() {
+        return unbounded;
+    }
+
+    /**
+     * Importance of a node for a point
+     */
+    private static double importance(Node node, Point point) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        double cx = (node.min[0] + node.max[0]) / 2, cy = (node.min[1] + node.max[1]) / 2;
+        double cz = (node.min[2] + node.max[2]) / 2;
+        double dx = x - cx, dy = y - cy, dz = z - cz;
+        double distance2 = dx * dx + dy * dy + dz * dz;
+        double ex = node.max[0] - cx, ey = node.max[1] - cy, ez = node.max[2] - cz;
+        double radius2 = ex * ex + ey * ey + ez * ez; // Squared radius of the bounding sphere
+        double falloff = node.power / Math.max(Math.max(distance2, radius2), 1e-12);
+        if (node.axis == null || distance2 <= radius2) return falloff; // Any direction may reach the point
+
+        // Angle from the emission cone to the point, less the angle of the node as seen from the point
+        double distance = Math.sqrt(distance2);
+        double cos = (dx * node.axis.dotProduct(Vector.AXIS_X) + dy * node.axis.dotProduct(Vector.AXIS_Y)
+                + dz * node.axis.dotProduct(Vector.AXIS_Z)) / distance;
+        double angle = Math.acos(Math.max(-1, Math.min(1, cos)))
+                - node.theta - Math.asin(Math.sqrt(radius2) / distance);
+        if (angle <= 0) return falloff;
+        return angle >= node.spread ? 0 : falloff * Math.cos(angle);
+    }
+
+    /**
+     * Samples a light for a point
+     *
+     * @param point the shading point
+     * @param u     a uniform random number in [0,1)
+     * @param pdf   receives (in its first cell) the probability of the sampled light
+     * @return the sampled light, or null if no light may reach the point
+     */
+    public LightSource sample(Point point, double u, double[] pdf) {
+        double probability = 1;
+        Node node = root;
+        while (node != null && node.light == null) {
+            double left = importance(node.left, point);
+            double right = importance(node.right, point);
+            if (left + right <= 0) return null;
+            double pLeft = left / (left + right);
+            if (u < pLeft) {
+                u /= pLeft;
+                probability *= pLeft;
+                node = node.left;
+            } else {
+                u = Math.min((u - pLeft) / (1 - pLeft), Math.nextDown(1.0));
+                probability *= 1 - pLeft;
+                node = node.right;
+            }
+        }
+        pdf[0] = probability;
+        return node == null ? null : node.light;
+    }
+
+    /**
+     * Probability of a light to be sampled for a point
+     *
+     * @param point the shading point
+     * @param light the light
+     * @return the probability, 0 for a light which is not in the tree
+     */
+    public double pdf(Point point, LightSource light) {
+        List<Node> path = paths.get(light);
+        if (path == null) return 0;
+        double probability = 1;
+        for (int i = 0; i + 1 < path.size(); i++) {
+            Node parent = path.get(i);
+            double left = importance(parent.left, point);
+            double right = importance(parent.right, point);
+            if (left + right <= 0) return 0;
+            probability *= (path.get(i + 1) == parent.left ? left : right) / (left + right);
+        }
+        return probability;
+    }
+}
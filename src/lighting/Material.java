@@ -2,10 +2,13 @@ package lighting;
 
 import primitives.Double3;
 
+import java.io.Serializable;
+
 /**
  * Material class represents the material of a geometry
  */
-public class Material {
+public class Material implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * kD is the diffuse factor
@@ -1,6 +1,7 @@
 package lighting;
 
 import primitives.Color;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Vector;
 
@@ -8,6 +9,7 @@ import primitives.Vector;
  * A point light that emits light from a specific location in all directions.
  */
 public class PointLight extends Light implements LightSource {
+    private static final long serialVersionUID = 1L;
 
     /** The position of the light in space */
     protected final Point position;
@@ -108,5 +110,24 @@ public class PointLight extends Light implements LightSource {
     public double getDistance(Point point) {
         return position.distance(point);
     }
+
+    @Override
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * The radius where the attenuation kC + kL*d + kQ*d^2 reaches the ratio of
+     * the strongest intensity component to the threshold.
+     */
+    @Override
+    public double getInfluenceRadius(double threshold) {
+        Double3 rgb = intensity.getRgb();
+        double attenuation = Math.max(rgb.d1(), Math.max(rgb.d2(), rgb.d3())) / threshold; // Negligible beyond it
+        if (kC >= attenuation) return 0; // Negligible everywhere
+        if (kQ > 0) return (-kL + Math.sqrt(kL * kL + 4 * kQ * (attenuation - kC))) / (2 * kQ);
+        if (kL > 0) return (attenuation - kC) / kL;
+        return Double.POSITIVE_INFINITY; // No attenuation with distance
+    }
 }
 
@@ -1,6 +1,7 @@
 package lighting;
 
 import primitives.Color;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Vector;
 
@@ -10,9 +11,12 @@ import static primitives.Util.alignZero;
  * SpotLight represents a light source that has direction and a beam angle.
  */
 public class SpotLight extends PointLight {
+    private static final long serialVersionUID = 1L;
 
     private final Vector direction;
     private double narrowBeam = 1.0; // Beam concentration factor
+    private int shadowMapResolution = 0; // Texels along each axis of the shadow map, 0 for exact shadow rays
+    private double shadowMapAngle = 0; // Half angle of the frustum of the shadow map, in degrees
 
     /**
      * Constructs a spot light with intensity, position and direction.
@@ -48,6 +52,42 @@ public class SpotLight extends PointLight {
     }
 
 
+    @Override
+    public Vector getDirection() {
+        return direction;
+    }
+
+    /**
+     * Switches the light to shadow map mode (for preview renders): its shadows
+     * are looked up in a depth map of the scene, rendered by rays from the light
+     * over a square frustum around its direction. Points outside the frustum get
+     * exact shadow rays.
+     * @param resolution texels along each axis of the map, 0 for exact shadow rays
+     * @param halfAngle  half angle of the frustum, in degrees (less than 90)
+     * @return the light itself
+     */
+    public SpotLight setShadowMap(int resolution, double halfAngle) {
+        if (resolution < 0) throw new IllegalArgumentException("Shadow map resolution must not be negative");
+        if (resolution > 0 && (halfAngle <= 0 || halfAngle >= 90))
+            throw new IllegalArgumentException("Shadow map frustum angle must be between 0 and 90 degrees");
+        this.shadowMapResolution = resolution;
+        this.shadowMapAngle = halfAngle;
+        return this;
+    }
+
+    @Override
+    public int getShadowMapResolution() {
+        return shadowMapResolution;
+    }
+
+    /**
+     * Returns the half angle of the frustum of the shadow map
+     * @return the angle, in degrees
+     */
+    public double getShadowMapAngle() {
+        return shadowMapAngle;
+    }
+
     @Override
     public Color getIntensity(Point p) {
         Vector l = getL(p);
@@ -62,4 +102,17 @@ public class SpotLight extends PointLight {
 
         return super.getIntensity(p).scale(factor);
     }
+
+    /**
+     * The cone where the beam factor of the strongest intensity of the light (at
+     * its position) reaches the threshold - never wider than the hemisphere
+     * around the direction, outside which the light is dark.
+     */
+    @Override
+    public double getInfluenceCone(double threshold) {
+        if (narrowBeam <= 0) return 0; // The beam does not fade towards the hemisphere edge
+        Double3 rgb = super.getIntensity(position).getRgb();
+        double strongest = Math.max(rgb.d1(), Math.max(rgb.d2(), rgb.d3()));
+        return Math.min(1, Math.pow(threshold / strongest, 1 / narrowBeam));
+    }
 }
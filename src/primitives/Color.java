@@ -1,5 +1,7 @@
 package primitives;
 
+import java.io.Serializable;
+
 /**
  * Wrapper class for java.jwt.Color The constructors operate with any
  * non-negative RGB values. The colors are maintained without upper limit of
@@ -7,7 +9,9 @@ package primitives;
  * light's colors
  * @author Dan Zilberstein
  */
-public class Color {
+public class Color implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     /**
      * The internal fields maintain RGB components as double numbers from 0 to
      * whatever...
@@ -63,6 +67,12 @@ public class Color {
         return new java.awt.Color(ir > 255 ? 255 : ir, ig > 255 ? 255 : ig, ib > 255 ? 255 : ib);
     }
 
+    /**
+     * RGB components getter - returns the unclamped components of the color
+     * @return triad of Red/Green/Blue components
+     */
+    public Double3 getRgb() { return rgb; }
+
 
     public Color subtract(Color other) {
         double r = rgb.d1() - other.rgb.d1();
@@ -0,0 +1,74 @@
+package primitives;
+
+/**
+ * Counter-based random number generator. Instead of a stream of numbers kept
+ * in a shared mutable state, each random number is a pure function (a strong
+ * 64-bit hash, SplitMix64 finalizer) of a key and a dimension. Keys are derived
+ * hierarchically - from a pixel, to a sample in the pixel, to a bounce of the
+ * sample ray - so the numbers used by a sample depend only on where it is in
+ * the image, never on which thread traced it or in which order. There is no
+ * shared state, so there is no contention between rendering threads and the
+ * output is identical for any amount of threads.
+ * @author Eitan Lafair
+ */
+public final class CounterRng {
+   /** Weyl sequence increment (2^64 / golden ratio) */
+   private static final long   GOLDEN = 0x9E3779B97F4A7C15L;
+   /** Scale of 53 random bits to a double in [0,1) */
+   private static final double UNIT   = 0x1.0p-53;
+
+   /** Don't let anyone instantiate this class. */
+   private CounterRng() {}
+
+   /** SplitMix64 finalizer - a bijective 64-bit mixing function
+    * @param  z the value to mix
+    * @return   the mixed value */
+   private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+   /** Key of a pixel of the image
+    * @param  x pixel column
+    * @param  y pixel row
+    * @return   the pixel key */
+   public static long pixelKey(int x, int y) {
+      return mix(((long) y << 32 | (x & 0xFFFFFFFFL)) + GOLDEN);
+   }
+
+   /** Derives the key of a sub-stream, e.g. of a sample in a pixel or of a
+    * bounce of a sample ray
+    * @param  parent the parent key
+    * @param  index  the index of the sub-stream in the parent
+    * @return        the derived key */
+   public static long key(long parent, long index) {
+      return mix(parent ^ mix(index * GOLDEN + GOLDEN));
+   }
+
+   /** Random 64 bits of a key
+    * @param  key       the key of the stream
+    * @param  dimension the index of the number in the stream
+    * @return           the random bits */
+   public static long bits(long key, int dimension) {
+      return mix(key + (dimension + 1L) * GOLDEN);
+   }
+
+   /** Random real number in range [0,1)
+    * @param  key       the key of the stream
+    * @param  dimension the index of the number in the stream
+    * @return           the random value */
+   public static double uniform(long key, int dimension) {
+      return (bits(key, dimension) >>> 11) * UNIT;
+   }
+
+   /** Random real number in range between min and max
+    * @param  key       the key of the stream
+    * @param  dimension the index of the number in the stream
+    * @param  min       value (included)
+    * @param  max       value (excluded)
+    * @return           the random value */
+   public static double uniform(long key, int dimension, double min, double max) {
+      return uniform(key, dimension) * (max - min) + min;
+   }
+}
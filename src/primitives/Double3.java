@@ -5,6 +5,8 @@ package primitives;
 
 import static primitives.Util.isZero;
 
+import java.io.Serializable;
+
 /**
  * This class will serve all primitive classes based on three numbers
  * @param  d1 first number
@@ -12,7 +14,7 @@ import static primitives.Util.isZero;
  * @param  d3 first number
  * @author    Dan Zilberstein
  */
-public record Double3(double d1, double d2, double d3) {
+public record Double3(double d1, double d2, double d3) implements Serializable {
 
    /** Zero triad (0,0,0) */
    public static final Double3 ZERO = new Double3(0, 0, 0);
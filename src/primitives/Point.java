@@ -1,9 +1,12 @@
 package primitives;
 
+import java.io.Serializable;
+
 /**
  * Creating a new class for point representation
  */
-public class Point {
+public class Point implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     protected final Double3 xyz;
 
@@ -81,6 +84,27 @@ public class Point {
         return dx * dx + dy * dy + dz * dz;
     }
 
+    /**
+     * @return the x coordinate of the point
+     */
+    public double getX() {
+        return xyz.d1();
+    }
+
+    /**
+     * @return the y coordinate of the point
+     */
+    public double getY() {
+        return xyz.d2();
+    }
+
+    /**
+     * @return the z coordinate of the point
+     */
+    public double getZ() {
+        return xyz.d3();
+    }
+
 
 
 
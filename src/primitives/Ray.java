@@ -1,5 +1,6 @@
 package primitives;
 
+import java.io.Serializable;
 import java.util.List;
 
 import static primitives.Util.isZero;
@@ -12,7 +13,8 @@ import geometries.Intersectable.Intersection;
  *
  * @author Eitan lafair
  */
-public class Ray {
+public class Ray implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     public final Point head;
     public final Vector direction;
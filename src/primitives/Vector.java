@@ -5,6 +5,8 @@ package primitives;
  */
 
 public class Vector extends Point {
+    private static final long serialVersionUID = 1L;
+
     public static final Vector AXIS_X = new Vector(1,0,0);
     public static final Vector AXIS_Y = new Vector(0,1,0);
     public static final Vector AXIS_Z = new Vector(0,0,1);
@@ -48,6 +50,23 @@ public class Vector extends Point {
     }
 
 
+    /**
+     * Adds two scaled vectors to this vector: {@code this + u*a + w*b}.
+     * Computed at once, without the intermediate vectors of
+     * {@code add(u.scale(a)).add(w.scale(b))}
+     *
+     * @param u first vector to add
+     * @param a scale of the first vector
+     * @param w second vector to add
+     * @param b scale of the second vector
+     * @return New vector
+     */
+    public Vector addScaled(Vector u, double a, Vector w, double b) {
+        return new Vector(xyz.d1() + u.xyz.d1() * a + w.xyz.d1() * b,
+                xyz.d2() + u.xyz.d2() * a + w.xyz.d2() * b,
+                xyz.d3() + u.xyz.d3() * a + w.xyz.d3() * b);
+    }
+
     /**
      * Multiple vector with a scaler
      *
@@ -0,0 +1,156 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Accumulation buffer for progressive rendering. For each pixel it keeps the
+ * running sum of all the samples traced so far (as floats) and the amount of
+ * these samples, so that the averaged image may be resolved after any pass.<br/>
+ * Each pixel is expected to be updated by a single thread during a pass.
+ * @author Eitan Lafair
+ */
+final class AccumulationBuffer {
+   /** Horizontal resolution - number of pixels in row */
+   private final int     nX;
+   /** Vertical resolution - number of pixels in column */
+   private final int     nY;
+   /** Sum of the samples of each pixel, 3 floats (R, G, B) per pixel */
+   private final float[] sums;
+   /** Amount of samples accumulated in each pixel */
+   private final int[]   counts;
+
+   /**
+    * Constructs an empty accumulation buffer
+    * @param nX amount of pixels by width
+    * @param nY amount of pixels by height
+    */
+   AccumulationBuffer(int nX, int nY) {
+      this.nX = nX;
+      this.nY = nY;
+      sums    = new float[3 * nX * nY];
+      counts  = new int[nX * nY];
+   }
+
+   /**
+    * Buffer X axis resolution
+    * @return the amount of horizontal pixels
+    */
+   int nX() { return nX; }
+
+   /**
+    * Buffer Y axis resolution
+    * @return the amount of vertical pixels
+    */
+   int nY() { return nY; }
+
+   /**
+    * Adds a sample color to a pixel
+    * @param xIndex X axis index of the pixel
+    * @param yIndex Y axis index of the pixel
+    * @param color  the sample color
+    */
+   void add(int xIndex, int yIndex, Color color) {
+      int     index = yIndex * nX + xIndex;
+      Double3 rgb   = color.getRgb();
+      sums[3 * index]     += (float) rgb.d1();
+      sums[3 * index + 1] += (float) rgb.d2();
+      sums[3 * index + 2] += (float) rgb.d3();
+      ++counts[index];
+   }
+
+   /**
+    * Amount of samples accumulated in a pixel
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the amount of samples
+    */
+   int count(int xIndex, int yIndex) { return counts[yIndex * nX + xIndex]; }
+
+   /**
+    * Average color of the samples accumulated in a pixel
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the averaged color, black if the pixel has no samples yet
+    */
+   Color get(int xIndex, int yIndex) {
+      int index = yIndex * nX + xIndex;
+      int count = counts[index];
+      if (count == 0) return Color.BLACK;
+      return new Color(sums[3 * index] / count, sums[3 * index + 1] / count, sums[3 * index + 2] / count);
+   }
+
+   /**
+    * Creates a copy of the buffer, e.g. for persisting a snapshot while rendering continues
+    * @return a new buffer with the same content
+    */
+   AccumulationBuffer copy() {
+      AccumulationBuffer copy = new AccumulationBuffer(nX, nY);
+      System.arraycopy(sums, 0, copy.sums, 0, sums.length);
+      System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+      return copy;
+   }
+
+   /**
+    * Copies the content of a region of another buffer of the same resolution
+    * @param other  the buffer to copy from
+    * @param region the region of pixels to copy
+    */
+   void copy(AccumulationBuffer other, Tile region) {
+      for (int i = region.y(); i < region.y() + region.height(); ++i) {
+         int index = i * nX + region.x();
+         System.arraycopy(other.sums, 3 * index, sums, 3 * index, 3 * region.width());
+         System.arraycopy(other.counts, index, counts, index, region.width());
+      }
+   }
+
+   /**
+    * Writes the raw content (sums and counts) of a region of the buffer
+    * @param  out         the data output
+    * @param  region      the region of pixels to write
+    * @throws IOException in case of output failure
+    */
+   void write(DataOutput out, Tile region) throws IOException {
+      for (int i = region.y(); i < region.y() + region.height(); ++i)
+         for (int j = region.x(); j < region.x() + region.width(); ++j) {
+            int index = i * nX + j;
+            out.writeFloat(sums[3 * index]);
+            out.writeFloat(sums[3 * index + 1]);
+            out.writeFloat(sums[3 * index + 2]);
+            out.writeInt(counts[index]);
+         }
+   }
+
+   /**
+    * Reads the raw content (sums and counts) of a region of the buffer, as
+    * written by {@link #write(DataOutput, Tile)}
+    * @param  in          the data input
+    * @param  region      the region of pixels to read
+    * @throws IOException in case of input failure
+    */
+   void read(DataInput in, Tile region) throws IOException {
+      for (int i = region.y(); i < region.y() + region.height(); ++i)
+         for (int j = region.x(); j < region.x() + region.width(); ++j) {
+            int index = i * nX + j;
+            sums[3 * index]     = in.readFloat();
+            sums[3 * index + 1] = in.readFloat();
+            sums[3 * index + 2] = in.readFloat();
+            counts[index]       = in.readInt();
+         }
+   }
+
+   /**
+    * Writes the current averaged image of a region into the image writer
+    * @param imageWriter the image writer to write the pixels into
+    * @param region      the region of pixels to write
+    */
+   void resolve(ImageWriter imageWriter, Tile region) {
+      for (int i = region.y(); i < region.y() + region.height(); ++i)
+         for (int j = region.x(); j < region.x() + region.width(); ++j)
+            imageWriter.writePixel(j, i, get(j, i));
+   }
+}
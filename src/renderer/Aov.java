@@ -0,0 +1,32 @@
+package renderer;
+
+/**
+ * Arbitrary output variables - auxiliary per pixel buffers recorded during the
+ * render beside the colors, e.g. as guides of denoising and edge detection, or
+ * for diagnostics of the render cost
+ * @author Eitan Lafair
+ */
+public enum Aov {
+   /** Distance from the camera to the first hit (infinity where nothing is hit) */
+   DEPTH("depth"),
+   /** Normal at the first hit, facing the camera (zero where nothing is hit) */
+   NORMAL("normal"),
+   /**
+    * Identity of the first hit geometry - 0 for the background, the geometries
+    * numbered from 1 by their first appearance in the image rows
+    */
+   OBJECT_ID("id"),
+   /** Amount of camera rays traced for the pixel */
+   SAMPLE_COUNT("samples"),
+   /** Render time of the pixel in nanoseconds, including all its secondary rays */
+   RAY_COST("cost");
+
+   /** Suffix of the buffer file name */
+   final String suffix;
+
+   /**
+    * Constructs an output variable
+    * @param suffix the suffix of the buffer file name
+    */
+   Aov(String suffix) { this.suffix = suffix; }
+}
@@ -0,0 +1,228 @@
+package renderer;
+
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import geometries.Intersectable;
+import primitives.Color;
+import primitives.CounterRng;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Buffers of the arbitrary output variables of a render (see {@link Aov}).
+ * Every pixel rendered while the buffers are attached to the camera is
+ * recorded: its camera rays are counted, its render time is measured, and the
+ * first hit of its first camera ray gives its depth, normal and geometry.
+ * Distinct pixels may be recorded by different threads concurrently.<br/>
+ * The buffers are written as files of the images directory, one per output
+ * variable - PFM files keep the raw values (a scalar in all the 3 channels),
+ * 8 bit formats get a visualization of the values.
+ * @author Eitan Lafair
+ */
+final class AovBuffers {
+   /** Recording state of the pixel rendered by the current thread */
+   private static final class PixelState {
+      /** First hit of the first camera ray of the pixel */
+      final HitRecord hit = new HitRecord();
+      /** Whether the first camera ray of the pixel is traced yet */
+      boolean         hitRecorded;
+      /** Amount of camera rays traced for the pixel */
+      int             samples;
+   }
+
+   /** Recording state of the pixel rendered by each thread */
+   private static final ThreadLocal<PixelState> PIXEL = ThreadLocal.withInitial(PixelState::new);
+
+   /** Image width */
+   private final int             nX;
+   /** Image height */
+   private final int             nY;
+   /** The recorded output variables */
+   private final Set<Aov>        aovs;
+   /** Depths of the first hits */
+   private final float[]         depths;
+   /** Normals of the first hits, 3 floats per pixel */
+   private final float[]         normals;
+   /** Geometries of the first hits */
+   private final Intersectable[] geometries;
+   /** Amounts of camera rays */
+   private final int[]           samples;
+   /** Render times in nanoseconds */
+   private final long[]          costs;
+
+   /**
+    * Constructs buffers of output variables
+    * @param nX   image width
+    * @param nY   image height
+    * @param aovs the output variables to record
+    */
+   AovBuffers(int nX, int nY, Set<Aov> aovs) {
+      this.nX    = nX;
+      this.nY    = nY;
+      this.aovs  = EnumSet.copyOf(aovs);
+      int size = nX * nY;
+      depths     = aovs.contains(Aov.DEPTH) ? new float[size] : null;
+      normals    = aovs.contains(Aov.NORMAL) ? new float[3 * size] : null;
+      geometries = aovs.contains(Aov.OBJECT_ID) ? new Intersectable[size] : null;
+      samples    = aovs.contains(Aov.SAMPLE_COUNT) ? new int[size] : null;
+      costs      = aovs.contains(Aov.RAY_COST) ? new long[size] : null;
+      clear(new Tile(0, 0, nX, nY));
+   }
+
+   /**
+    * Resets the buffers in a region, before it is rendered
+    * @param region the region
+    */
+   void clear(Tile region) {
+      for (int i = region.y(); i < region.y() + region.height(); ++i)
+         for (int j = region.x(); j < region.x() + region.width(); ++j) {
+            int p = i * nX + j;
+            if (depths != null) depths[p] = Float.POSITIVE_INFINITY;
+            if (normals != null) normals[3 * p] = normals[3 * p + 1] = normals[3 * p + 2] = 0;
+            if (geometries != null) geometries[p] = null;
+            if (samples != null) samples[p] = 0;
+            if (costs != null) costs[p] = 0;
+         }
+   }
+
+   /**
+    * Renders a pixel and records it. The camera rays of the rendering must be
+    * traced by {@link #trace(RayTracerBase, Ray, long, HitRecord)}. A pixel
+    * rendered several times (e.g. by progressive passes) accumulates its rays and
+    * time, and its hit is taken from its latest rendering.
+    * @param j      pixel column
+    * @param i      pixel row
+    * @param render the rendering of the pixel
+    */
+   void record(int j, int i, Runnable render) {
+      PixelState state = PIXEL.get();
+      state.hitRecorded = false;
+      state.samples     = 0;
+      long start = System.nanoTime();
+      render.run();
+      long time = System.nanoTime() - start;
+
+      int p = i * nX + j;
+      if (samples != null) samples[p] += state.samples;
+      if (costs != null) costs[p] += time;
+      if (!state.hitRecorded) return; // All the rays of the pixel were traced by its neighbors
+      HitRecord hit = state.hit;
+      if (depths != null) depths[p] = (float) hit.distance;
+      if (geometries != null) geometries[p] = hit.geometry;
+      if (normals != null) {
+         Vector n = hit.normal;
+         normals[3 * p]     = n == null ? 0 : (float) n.dotProduct(Vector.AXIS_X);
+         normals[3 * p + 1] = n == null ? 0 : (float) n.dotProduct(Vector.AXIS_Y);
+         normals[3 * p + 2] = n == null ? 0 : (float) n.dotProduct(Vector.AXIS_Z);
+      }
+   }
+
+   /**
+    * Traces a camera ray of the pixel recorded by the current thread
+    * @param  tracer the ray tracer
+    * @param  ray    the camera ray
+    * @param  seed   the random key of the ray
+    * @param  hit    record of the first hit to be filled, or null
+    * @return        the color of the ray
+    */
+   static Color trace(RayTracerBase tracer, Ray ray, long seed, HitRecord hit) {
+      PixelState state = PIXEL.get();
+      state.samples++;
+      if (state.hitRecorded) return hit == null ? tracer.traceRay(ray, seed) : tracer.traceRay(ray, seed, hit);
+      state.hitRecorded = true;
+      Color color = tracer.traceRay(ray, seed, state.hit);
+      if (hit != null) hit.set(state.hit.geometry, state.hit.distance, state.hit.normal);
+      return color;
+   }
+
+   /**
+    * The raw values of an output variable, 3 floats per pixel (a scalar value is
+    * repeated in the 3)
+    * @param  aov the output variable
+    * @return     the values, row by row
+    * @throws IllegalArgumentException if the output variable is not recorded
+    */
+   float[] values(Aov aov) {
+      if (!aovs.contains(aov)) throw new IllegalArgumentException("Output variable " + aov + " is not recorded");
+      float[] values = new float[3 * nX * nY];
+      if (aov == Aov.NORMAL) {
+         System.arraycopy(normals, 0, values, 0, values.length);
+         return values;
+      }
+      // Object ids by the first appearance in the image rows - independent of the render order
+      Map<Intersectable, Integer> ids = new IdentityHashMap<>();
+      for (int p = 0; p < nX * nY; ++p) {
+         float value = switch (aov) {
+            case DEPTH -> depths[p];
+            case OBJECT_ID -> geometries[p] == null ? 0 : ids.computeIfAbsent(geometries[p], g -> ids.size() + 1);
+            case SAMPLE_COUNT -> samples[p];
+            default -> costs[p];
+         };
+         values[3 * p] = values[3 * p + 1] = values[3 * p + 2] = value;
+      }
+      return values;
+   }
+
+   /**
+    * Visualizes the values of an output variable in the displayable range
+    * (0..255): nearer depths are brighter, normal components are mapped from
+    * [-1,1], objects get distinct colors, and counts and costs are scaled by
+    * their maximum
+    * @param  aov    the output variable
+    * @param  values the raw values
+    * @return        the visualized values, in place
+    */
+   private float[] visualize(Aov aov, float[] values) {
+      switch (aov) {
+         case NORMAL -> {
+            for (int i = 0; i < values.length; ++i) values[i] = (values[i] + 1) * 127.5f;
+         }
+         case OBJECT_ID -> {
+            for (int i = 0; i < values.length; i += 3) {
+               int id    = (int) values[i];
+               int color = id == 0 ? 0 : (int) CounterRng.bits(id, 0) | 0x404040; // Not too dark
+               values[i]     = color >> 16 & 0xFF;
+               values[i + 1] = color >> 8 & 0xFF;
+               values[i + 2] = color & 0xFF;
+            }
+         }
+         case DEPTH -> {
+            float min = Float.POSITIVE_INFINITY, max = 0;
+            for (float value : values)
+               if (value != Float.POSITIVE_INFINITY) {
+                  min = Math.min(min, value);
+                  max = Math.max(max, value);
+               }
+            float range = max > min ? max - min : 1;
+            for (int i = 0; i < values.length; ++i)
+               values[i] = values[i] == Float.POSITIVE_INFINITY ? 0 : 255 - 191 * (values[i] - min) / range;
+         }
+         default -> {
+            float max = 0;
+            for (float value : values) max = Math.max(max, value);
+            if (max > 0) for (int i = 0; i < values.length; ++i) values[i] = 255 * values[i] / max;
+         }
+      }
+      return values;
+   }
+
+   /**
+    * Writes the recorded output variables as files of the images directory,
+    * named by the base name and the output variable suffix (e.g. render_depth)
+    * @param baseName the base of the file names
+    * @param format   the file format
+    */
+   void write(String baseName, ImageFormat format) {
+      for (Aov aov : aovs) {
+         float[] values = values(aov);
+         if (format != ImageFormat.PFM) visualize(aov, values);
+         try (StreamingImageWriter writer = new StreamingImageWriter(baseName + '_' + aov.suffix, format, nX, nY,
+                                                                     ToneMapping.CLAMP, 1, false)) {
+            writer.writeBand(values, nY);
+         }
+      }
+   }
+}
@@ -4,6 +4,7 @@ import primitives.Point;
 import primitives.Vector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static primitives.Util.isZero;
@@ -17,9 +18,36 @@ public class BlackBoard {
 
     /**
      * Enum representing the sampling shape: either full rectangle or inner circle (ellipse).
+     * The shapes are regular grid samplers - every area gets the same pattern.
      */
-    public enum Shape {
-        RECTANGLE, CIRCLE
+    public enum Shape implements Sampler {
+        RECTANGLE, CIRCLE;
+
+        @Override
+        public int sampleCount(int samplesPerDim) {
+            return SamplePattern.of(samplesPerDim, this).size();
+        }
+
+        @Override
+        public int generate(int samplesPerDim, long key, double[] uv) {
+            SamplePattern pattern = SamplePattern.of(samplesPerDim, this);
+            for (int s = 0; s < pattern.size(); s++) {
+                uv[2 * s] = pattern.u(pattern.cell(s));
+                uv[2 * s + 1] = pattern.v(pattern.cell(s));
+            }
+            return pattern.size();
+        }
+
+        @Override
+        public int[] progressiveOrder(int samplesPerDim) {
+            SamplePattern pattern = SamplePattern.of(samplesPerDim, this);
+            int[] sampleOfCell = new int[samplesPerDim * samplesPerDim];
+            for (int s = 0; s < pattern.size(); s++) sampleOfCell[pattern.cell(s)] = s;
+            int[] order = new BlackBoard(Point.ZERO, Vector.AXIS_X, Vector.AXIS_Y, 1, 1, samplesPerDim, this)
+                    .progressiveOrder();
+            for (int k = 0; k < order.length; k++) order[k] = sampleOfCell[order[k]]; // Cells to samples
+            return order;
+        }
     }
 
     // Center point of the blackboard
@@ -70,6 +98,27 @@ public class BlackBoard {
     public List<Point> generateSamplePoints() {
         List<Point> samples = new ArrayList<>();
 
+        // Loop through the grid of sub-cells
+        for (int i = 0; i < samplesPerDim; i++) {
+            for (int j = 0; j < samplesPerDim; j++) {
+                // If shape is CIRCLE, cells outside the ellipse produce no sample
+                Point sample = getSamplePoint(i * samplesPerDim + j);
+                if (sample != null) samples.add(sample);
+            }
+        }
+
+        return samples;
+    }
+
+    /**
+     * Returns the sample point of a single grid cell (stratum).
+     * Cells are numbered row by row: {@code cell = i * samplesPerDim + j}.
+     *
+     * @param cell the index of the grid cell
+     * @return the sample point centered in the cell, or {@code null} if the
+     * cell lies outside the sampling shape
+     */
+    public Point getSamplePoint(int cell) {
         // Calculate cell width/height for each sub-region in the grid
         double cellWidth = width / samplesPerDim;
         double cellHeight = height / samplesPerDim;
@@ -78,35 +127,77 @@ public class BlackBoard {
         double halfWidth = width / 2.0;
         double halfHeight = height / 2.0;
 
-        // Loop through the grid of sub-cells
-        for (int i = 0; i < samplesPerDim; i++) {
-            for (int j = 0; j < samplesPerDim; j++) {
-
-                // Compute local offset u (horizontal) and v (vertical)
-                // Center the sample within each cell
-                double u = (i + 0.5) * cellWidth - halfWidth;
-                double v = (j + 0.5) * cellHeight - halfHeight;
-
-                // If shape is CIRCLE, discard sample points outside ellipse
-                if (shape == Shape.CIRCLE &&
-                        (u * u) / (halfWidth * halfWidth) + (v * v) / (halfHeight * halfHeight) > 1.0)
-                    continue;
-
-                // Scale direction vectors by u and v, skipping zeros for efficiency
-                Vector rightScaled = isZero(u) ? null : right.scale(u);
-                Vector upScaled = isZero(v) ? null : up.scale(v);
+        // Compute local offset u (horizontal) and v (vertical)
+        // Center the sample within each cell
+        double u = (cell / samplesPerDim + 0.5) * cellWidth - halfWidth;
+        double v = (cell % samplesPerDim + 0.5) * cellHeight - halfHeight;
+
+        // If shape is CIRCLE, discard sample points outside ellipse
+        if (shape == Shape.CIRCLE &&
+                (u * u) / (halfWidth * halfWidth) + (v * v) / (halfHeight * halfHeight) > 1.0)
+            return null;
+
+        // Scale direction vectors by u and v, skipping zeros for efficiency
+        Vector rightScaled = isZero(u) ? null : right.scale(u);
+        Vector upScaled = isZero(v) ? null : up.scale(v);
+
+        // Start from center and apply scaled offsets
+        Point sample = center;
+        if (rightScaled != null) sample = sample.add(rightScaled);
+        if (upScaled != null) sample = sample.add(upScaled);
+        return sample;
+    }
 
-                // Start from center and apply scaled offsets
-                Point sample = center;
-                if (rightScaled != null) sample = sample.add(rightScaled);
-                if (upScaled != null) sample = sample.add(upScaled);
+    /**
+     * Returns the cells of the sampling shape in progressive order: every prefix
+     * of the order covers the area as evenly as possible, so that a progressive
+     * renderer which adds one cell per pass converges from a coarse preview to the
+     * full grid. The order is built greedily - starting from the cell nearest to
+     * the center, each next cell is the one farthest from all the cells chosen so far.
+     *
+     * @return the indexes of the cells inside the shape, in progressive order
+     */
+    public int[] progressiveOrder() {
+        int total = samplesPerDim * samplesPerDim;
+        double half = (samplesPerDim - 1) / 2.0;
+
+        // Collect the cells inside the shape (normalized ellipse test as above)
+        int[] cells = new int[total];
+        int size = 0;
+        for (int cell = 0; cell < total; cell++) {
+            double u = (cell / samplesPerDim - half) / samplesPerDim;
+            double v = (cell % samplesPerDim - half) / samplesPerDim;
+            if (shape != Shape.CIRCLE || u * u + v * v <= 0.25) cells[size++] = cell;
+        }
 
-                // Add the computed sample to the list
-                samples.add(sample);
+        // Distance of each remaining cell to the nearest chosen one
+        double[] nearest = new double[size];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        int[] order = new int[size];
+        boolean[] used = new boolean[size];
+        for (int k = 0; k < size; k++) {
+            int best = -1;
+            double bestScore = -1;
+            for (int c = 0; c < size; c++) {
+                if (used[c]) continue;
+                double du = cells[c] / samplesPerDim - half;
+                double dv = cells[c] % samplesPerDim - half;
+                // First pick is the most central cell, then the farthest from chosen cells
+                double score = k == 0 ? -(du * du + dv * dv) : nearest[c];
+                if (best < 0 || score > bestScore) {
+                    best = c;
+                    bestScore = score;
+                }
+            }
+            used[best] = true;
+            order[k] = cells[best];
+            for (int c = 0; c < size; c++) {
+                double du = cells[c] / samplesPerDim - cells[best] / samplesPerDim;
+                double dv = cells[c] % samplesPerDim - cells[best] % samplesPerDim;
+                nearest[c] = Math.min(nearest[c], du * du + dv * dv);
             }
         }
-
-        return samples;
+        return order;
     }
 
     /**
@@ -1,10 +1,22 @@
 package renderer;
 
+import geometries.Intersectable;
 import primitives.*;
 import primitives.Vector;
 import scene.Scene;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 import java.util.stream.*;
 import static primitives.Util.alignZero;
 
@@ -14,7 +26,9 @@ import static primitives.Util.alignZero;
  *
  * @author Eitan Lafair
  */
-public class Camera implements Cloneable {
+public class Camera implements Cloneable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Vector vT0; // Direction vector from camera to view plane
     private Vector vUp; // Up direction vector
     private Vector vRight; // Right direction vector
@@ -24,7 +38,7 @@ public class Camera implements Cloneable {
     private double width = 0.0; // View plane width
     private double distance = 0.0; // Distance from camera to view plane
 
-    private ImageWriter imageWriter; // Responsible for writing image files
+    private transient ImageWriter imageWriter; // Responsible for writing image files
     private RayTracerBase rayTracer; // Ray tracer for rendering
     private int nX = 1; // Image resolution X
     private int nY = 1; // Image resolution Y
@@ -34,18 +48,47 @@ public class Camera implements Cloneable {
 
     private boolean useAntiAliasing = false; // Whether anti-aliasing is enabled
     private int samplesPerDim = 5; // Number of samples per pixel dimension for anti-aliasing
-    private BlackBoard.Shape aaShape = BlackBoard.Shape.RECTANGLE; // Shape of anti-aliasing sampling area
+    private Sampler aaShape = BlackBoard.Shape.RECTANGLE; // Sampler (shape) of anti-aliasing sampling area
+    /** Per-thread cache of the adaptive super sampling lattice samples of the tile in progress */
+    private static final ThreadLocal<Map<Long, Color>> ASS_SAMPLES = ThreadLocal.withInitial(HashMap::new);
+    /** Random stream of a lattice sample, apart from the streams of the pixels and their samples */
+    private static final long LATTICE_STREAM = -1;
+    /** Per-thread buffer of the sample offsets of a pixel */
+    private static final ThreadLocal<double[]> SAMPLE_OFFSETS = ThreadLocal.withInitial(() -> new double[0]);
 
     // Additional fields for multithreading and progress
     private int threadsCount = 0;
     private boolean printProgress = false; // Whether to print progress
     private static long printInterval = 100L; // Interval for printing progress
-    private PixelManager pixelManager; // Pixel manager for multithreading
+    private transient PixelManager pixelManager; // Pixel manager for multithreading
+    private transient AccumulationBuffer accumulation; // Sample accumulation buffer for progressive rendering
+    private Tile cropWindow = null; // Region of the image to be rendered, null for the full frame
+    private int tileSize = 32; // Edge size of render tiles (checkpoint granularity)
+    private String checkpointName = null; // Checkpoint file name, null if checkpoints are disabled
+    private double checkpointInterval = 60; // Interval between checkpoints, in seconds
 
     private boolean useAdaptiveSuperSampling = false;
     private int adaptiveMaxDepth = 3; //
     private double adaptiveThreshold = 0.15; //
 
+    private boolean useVarianceSampling = false; // Whether variance driven adaptive sampling is enabled
+    private double varianceTolerance = 1; // Luminance confidence interval at which a pixel is converged
+    private int varianceMinSamples = 4; // Samples of every pixel before its variance is trusted
+    private double sampleBudget = 0; // Average samples per pixel of the frame, 0 for no budget
+
+    private boolean useEdgeSampling = false; // Whether only edge pixels found by a pre-pass are supersampled
+    private double edgeDepthThreshold = 0.05; // Relative depth difference of neighbor pixels at an edge
+    private double edgeNormalThreshold = 0.9; // Cosine of normals angle of neighbor pixels below which is an edge
+    private transient int edgePixels; // Amount of edge pixels supersampled by the last edge sampling render
+
+    private transient AovBuffers aovBuffers = null; // Output variables of the rendered pixels, null if disabled
+
+    private int resamplingCandidates = 0; // Light candidates of a pixel for light resampling, 0 if disabled
+    private int resamplingNeighbors = 4; // Neighbor pixels whose reservoirs are reused by a pixel
+    private static final int RESAMPLING_RADIUS = 5; // Distance in pixels of the reused neighbors
+    private static final double RESAMPLING_DEPTH = 0.1; // Relative depth difference of a reused neighbor
+    private static final double RESAMPLING_NORMAL_COS = 0.9; // Minimal cosine of normals of a reused neighbor
+
     /**
      * Enables or disables Adaptive Super Sampling (ASS) feature.
      */
@@ -87,13 +130,196 @@ public class Camera implements Cloneable {
     }
 
     /**
-     * Sets the sampling shape for Anti-Aliasing grid.
+     * Sets the sampler for Anti-Aliasing - a regular grid shape
+     * ({@link BlackBoard.Shape}) or a randomized sampler ({@link StochasticSampler}).
      */
-    public Camera setAntiAliasingShape(BlackBoard.Shape shape) {
+    public Camera setAntiAliasingShape(Sampler shape) {
         this.aaShape = shape; // Store the desired sampling shape (e.g., square, random, circular)
         return this;
     }
 
+    /**
+     * Enables or disables edge sampling: a pre-pass traces one ray per pixel and
+     * records the geometry, the depth and the normal of its hit, then only the
+     * pixels at discontinuities (a different geometry, a depth step or a crease
+     * relative to a neighbor pixel) are supersampled - by adaptive super sampling
+     * if enabled, otherwise by anti-aliasing. Edge sampling cannot be combined
+     * with variance sampling or checkpoints - {@link #renderImage()} throws
+     * IllegalStateException when either is set too.
+     */
+    public Camera enableEdgeSampling(boolean enable) {
+        this.useEdgeSampling = enable; // Store the flag to enable or disable edge sampling
+        return this;
+    }
+
+    /**
+     * Sets the discontinuity thresholds of edge sampling: the relative depth
+     * difference of neighbor pixels and the cosine of the angle between their
+     * normals, below which they are at an edge.
+     */
+    public Camera setEdgeThresholds(double depth, double normalCos) {
+        if (depth <= 0) throw new IllegalArgumentException("Edge depth threshold must be positive");
+        if (normalCos < -1 || normalCos > 1) throw new IllegalArgumentException("Edge normal threshold must be a cosine");
+        this.edgeDepthThreshold = depth;
+        this.edgeNormalThreshold = normalCos;
+        return this;
+    }
+
+    /**
+     * Enables or disables variance driven adaptive sampling. Each pixel is
+     * sampled by the anti-aliasing sampler, one sample after another (up to all
+     * the anti-aliasing samples), until the 95% confidence interval of its mean
+     * luminance is below the tolerance. Replaces anti-aliasing and adaptive super
+     * sampling in {@link #renderImage()}. Variance sampling renders cannot be
+     * checkpointed - {@link #renderImage()} throws IllegalStateException when a
+     * checkpoint is set too.
+     */
+    public Camera enableVarianceSampling(boolean enable) {
+        this.useVarianceSampling = enable; // Store the flag to enable or disable variance sampling
+        return this;
+    }
+
+    /**
+     * Sets the luminance tolerance of variance driven adaptive sampling - the half
+     * width of the 95% confidence interval of a converged pixel, in color units.
+     */
+    public Camera setVarianceTolerance(double tolerance) {
+        if (tolerance <= 0) throw new IllegalArgumentException("Variance tolerance must be positive");
+        this.varianceTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Sets the amount of samples every pixel gets in variance driven adaptive
+     * sampling before its variance is trusted.
+     */
+    public Camera setVarianceMinSamples(int samples) {
+        if (samples < 2) throw new IllegalArgumentException("At least 2 samples are needed for variance");
+        this.varianceMinSamples = samples;
+        return this;
+    }
+
+    /**
+     * Sets the frame-wide ray budget of variance driven adaptive sampling, as the
+     * average amount of samples per pixel (0 - no budget). After the minimal
+     * samples of all the pixels, the rest of the budget goes to the noisiest
+     * pixels first.
+     */
+    public Camera setSampleBudget(double samplesPerPixel) {
+        if (samplesPerPixel < 0) throw new IllegalArgumentException("Sample budget must not be negative");
+        this.sampleBudget = samplesPerPixel;
+        return this;
+    }
+
+    /**
+     * Sets the tone mapping of the image - the mapping of the high dynamic range
+     * rendered colors into the displayable range when the image is written.
+     * The default is clamping with no exposure correction and no sRGB encoding.
+     *
+     * @param toneMapping the tone mapping operator
+     * @param exposure    exposure correction in stops (0 - none)
+     * @param srgb        whether to encode the image colors by sRGB gamma
+     * @return the camera itself
+     */
+    public Camera setToneMapping(ToneMapping toneMapping, double exposure, boolean srgb) {
+        imageWriter.setToneMapping(toneMapping, exposure, srgb);
+        return this;
+    }
+
+    /**
+     * Enables light resampling - direct lighting from many lights by a shadow ray
+     * per pixel. Each pixel draws light candidates uniformly for its primary hit
+     * and keeps one of them in a weighted reservoir, by the unshadowed luminance
+     * of the candidates; the reservoir is then combined with the reservoirs of a
+     * few random nearby pixels of similar depth and normal, and the pixel is
+     * shaded by a shadow ray to the kept light only. The passes run tile by tile
+     * in parallel. A single ray is cast through each pixel center (replacing
+     * anti-aliasing and adaptive super sampling); reflections and refractions are
+     * shaded as usual. Light resampling cannot be combined with variance sampling,
+     * edge sampling or checkpoints - {@link #renderImage()} throws
+     * IllegalStateException when any of them is set too.
+     *
+     * @param candidates light candidates of a pixel, 0 - disabled
+     * @param neighbors  neighbor pixels reused by a pixel, 0 - no spatial reuse
+     * @return the camera itself
+     */
+    public Camera setLightResampling(int candidates, int neighbors) {
+        if (candidates < 0) throw new IllegalArgumentException("Light candidates must not be negative");
+        if (neighbors < 0) throw new IllegalArgumentException("Reused neighbors must not be negative");
+        this.resamplingCandidates = candidates;
+        this.resamplingNeighbors = neighbors;
+        return this;
+    }
+
+    /**
+     * Enables recording of arbitrary output variables (depth, normal, object id,
+     * sample count, render cost) of the rendered pixels, beside their colors -
+     * e.g. for denoising, or to see where the render time goes. The first hit of
+     * the first camera ray of each pixel gives its depth, normal and object.
+     * Without arguments the recording is disabled.
+     *
+     * @param aovs the output variables to record
+     * @return the camera itself
+     */
+    public Camera enableAovs(Aov... aovs) {
+        this.aovBuffers = aovs.length == 0 ? null : new AovBuffers(nX, nY, EnumSet.copyOf(Arrays.asList(aovs)));
+        return this;
+    }
+
+    /**
+     * Writes the recorded output variables of the image, a file per variable
+     * named by the base name and the variable (e.g. render_depth.pfm). PFM files
+     * keep the raw values, 8 bit formats get a visualization of them.
+     *
+     * @param baseName the base of the file names in the images directory
+     * @param format   the file format
+     * @return the camera itself
+     */
+    public Camera writeAovs(String baseName, ImageFormat format) {
+        if (aovBuffers == null) throw new IllegalStateException("Output variables are not enabled");
+        aovBuffers.write(baseName, format);
+        return this;
+    }
+
+    /**
+     * The output variable buffers of the rendered pixels
+     *
+     * @return the buffers, null if disabled
+     */
+    AovBuffers getAovBuffers() {
+        return aovBuffers;
+    }
+
+    /**
+     * Sets the edge size of the tiles the rendered region is divided into.
+     */
+    public Camera setTileSize(int tileSize) {
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("Tile size must be positive"); // Validate input
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * Enables checkpoints of long renders: the completed tiles are periodically
+     * persisted by a background thread into a checkpoint file (in the images
+     * directory), and an interrupted render resumes from it, skipping the
+     * completed tiles - if it has the same checkpoint name, resolution, region,
+     * scene, camera and sampling settings. Progressive renders are checkpointed
+     * after every pass and resume after the last saved pass. The checkpoint
+     * file is deleted when the render completes.
+     *
+     * @param name     the checkpoint file name, null to disable checkpoints
+     * @param interval the interval between checkpoints, in seconds
+     */
+    public Camera setCheckpoint(String name, double interval) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("interval parameter must be positive"); // Validate input
+        this.checkpointName = name;
+        this.checkpointInterval = interval;
+        return this;
+    }
+
     /**
      * Sets the number of threads to use for multithreaded rendering.
      * -2 = auto mode, -1 = single-threaded, any positive number = fixed thread count
@@ -192,96 +418,148 @@ public class Camera implements Cloneable {
         return new Ray(p0, vIJ); // Construct ray through the pixel
     }
 
-    private Color castRayAA(int j, int i, Point pointCenter, double rX, double rY) {
-        Point pixelCenter = pointCenter; // Start from the center of the view plane
-
-        double xJ = (j - (nX - 1) / 2d) * rX; // Calculate horizontal offset for pixel
-        double yI = -(i - (nY - 1) / 2d) * rY; // Calculate vertical offset for pixel
-
-        if (!Util.isZero(xJ)) pixelCenter = pixelCenter.add(vRight.scale(xJ)); // Shift horizontally if needed
-        if (!Util.isZero(yI)) pixelCenter = pixelCenter.add(vUp.scale(yI)); // Shift vertically if needed
+    /**
+     * Generates the anti-aliasing sample offsets of a pixel into the buffer of
+     * the current thread
+     *
+     * @param j pixel column
+     * @param i pixel row
+     * @return the offsets (see {@link Sampler#generate(int, long, double[])}),
+     * valid until the next call by the same thread
+     */
+    private double[] sampleOffsets(int j, int i) {
+        double[] uv = SAMPLE_OFFSETS.get();
+        int length = 2 * aaShape.sampleCount(samplesPerDim);
+        if (uv.length < length) SAMPLE_OFFSETS.set(uv = new double[length]);
+        aaShape.generate(samplesPerDim, CounterRng.pixelKey(j, i), uv);
+        return uv;
+    }
 
-        BlackBoard blackboard = new BlackBoard(
-                pixelCenter, // Pixel center
-                vRight,      // Horizontal axis
-                vUp,         // Vertical axis
-                rX,          // Pixel width
-                rY,          // Pixel height
-                samplesPerDim, // Samples per dimension
-                aaShape      // Sampling shape
-        );
+    /**
+     * Traces a camera ray, recorded in the output variable buffers if enabled.
+     *
+     * @param ray  the camera ray
+     * @param seed the random key of the ray
+     * @param hit  record of the first hit to be filled, or null
+     * @return the color of the ray
+     */
+    private Color traceSample(Ray ray, long seed, HitRecord hit) {
+        if (aovBuffers != null) return AovBuffers.trace(rayTracer, ray, seed, hit);
+        return hit == null ? rayTracer.traceRay(ray, seed) : rayTracer.traceRay(ray, seed, hit);
+    }
 
-        var samplePoints = blackboard.generateSamplePoints(); // Generate all sample points in the pixel
+    /**
+     * Casts the anti-aliasing rays of a pixel and averages their colors. The
+     * sample directions are the pixel direction plus the sampler offsets scaled
+     * by the pixel size.
+     */
+    private Color castRayAA(int j, int i, Point pointCenter, double rX, double rY) {
+        int count = aaShape.sampleCount(samplesPerDim);
+        double[] uv = sampleOffsets(j, i); // Offsets of the pixel samples
+        Vector toCenter = getCenterOfPixel(j, i, pointCenter, rX, rY).subtract(p0); // Direction to the pixel center
+        long pixelKey = CounterRng.pixelKey(j, i); // Random key of the pixel
         Color finalColor = Color.BLACK; // Initialize color accumulator
 
-        for (Point sample : samplePoints) {
-            Vector dir = sample.subtract(p0); // Create direction vector from camera to sample
-            if (dir.lengthSquared() == 0) continue; // Skip if vector is zero (invalid ray)
-
-            Ray ray = new Ray(p0, dir); // Construct ray toward sample point
-            finalColor = finalColor.add(rayTracer.traceRay(ray)); // Accumulate color from ray
+        for (int s = 0; s < count; s++) {
+            Vector dir = toCenter.addScaled(vRight, uv[2 * s] * rX, vUp, uv[2 * s + 1] * rY);
+            finalColor = finalColor.add(traceSample(new Ray(p0, dir), CounterRng.key(pixelKey, s), null));
         }
 
-        pixelManager.pixelDone(); // Mark pixel as completed
-        return finalColor.reduce(samplePoints.size()); // Return averaged color
+        return finalColor.reduce(count); // Return averaged color
+    }
+
+    /**
+     * Casts a single anti-aliasing ray of a pixel.
+     * Used by progressive rendering, where each pass adds one sample per pixel.
+     */
+    private Color castRayStratum(int j, int i, int sample, Point pointCenter, double rX, double rY) {
+        double[] uv = sampleOffsets(j, i); // Same offsets as the anti-aliasing of the pixel
+        Vector dir = getCenterOfPixel(j, i, pointCenter, rX, rY).subtract(p0) // Direction to the sample
+                .addScaled(vRight, uv[2 * sample] * rX, vUp, uv[2 * sample + 1] * rY);
+        long seed = CounterRng.key(CounterRng.pixelKey(j, i), sample); // Same key as the sample of anti-aliasing
+        return traceSample(new Ray(p0, dir), seed, null); // Trace ray toward the sample
     }
 
     /**
      * Casts a ray through a pixel and returns the resulting color.
      */
     private Color castRay(int j, int i, Point pointCenter, double rX, double rY) {
-        Ray ray = constructRay(this.imageWriter.nX(), this.imageWriter.nY(), j, i); // Build ray for pixel
-        pixelManager.pixelDone(); // Mark pixel as completed
-        return this.rayTracer.traceRay(ray); // Trace ray and return color
+        Ray ray = constructRay(nX, nY, j, i); // Build ray for pixel
+        return traceSample(ray, CounterRng.pixelKey(j, i), null); // Trace ray and return color
     }
 
     /**
-     * Render image using multi-threading by parallel streaming
-     *
-     * @return the camera object itself
+     * Computes the color of a pixel according to the enabled sampling mode
+     * (adaptive super sampling, anti-aliasing or a single ray).
      */
-    private Camera renderImageStream() {
-        final double rX = width / nX; // Pixel width
-        final double rY = height / nY; // Pixel height
-        final Point pointCenter = p0.add(vT0.scale(distance)); // Calculate center of view plane
-
-        IntStream.range(0, nY * nX).parallel().forEach(idx -> { // Parallel loop over all pixels
-            int i = idx / nX; // Row index
-            int j = idx % nX; // Column index
-
-            Point center = getCenterOfPixel(j, i, pointCenter, rX, rY); // Compute pixel center
+    private Color tracePixel(int j, int i, Point pointCenter, double rX, double rY) {
+        if (useAdaptiveSuperSampling) {
+            int unit = 2 << adaptiveMaxDepth; // Lattice points per pixel edge
+            return castRayASS(j * unit + unit / 2, i * unit + unit / 2, unit / 2, adaptiveMaxDepth,
+                    pointCenter.subtract(p0), rX / unit, rY / unit); // Use adaptive super sampling
+        }
+        return useAntiAliasing
+                ? castRayAA(j, i, pointCenter, rX, rY) // Use anti-aliasing
+                : castRay(j, i, pointCenter, rX, rY); // Use regular ray casting
+    }
 
-            Color color = useAdaptiveSuperSampling
-                    ? castRayASS(center, vRight, vUp, rX, rY, adaptiveMaxDepth) // Use adaptive super sampling
-                    : (useAntiAliasing
-                    ? castRayAA(j, i, pointCenter, rX, rY) // Use anti-aliasing
-                    : castRay(j, i, pointCenter, rX, rY)); // Use regular ray casting
+    /**
+     * Work to be done for a single pixel by the rendering loops
+     */
+    @FunctionalInterface
+    private interface PixelAction {
+        /**
+         * Renders a pixel
+         *
+         * @param j pixel column
+         * @param i pixel row
+         */
+        void render(int j, int i);
+    }
 
-            this.imageWriter.writePixel(j, i, color); // Write pixel color to image
+    /**
+     * Run a pixel action over a region of pixels using multi-threading by parallel streaming
+     *
+     * @param region the region of pixels to render
+     * @param action the work to be done for each pixel
+     */
+    private void renderImageStream(Tile region, PixelAction action) {
+        IntStream.range(0, region.size()).parallel().forEach(idx -> { // Parallel loop over all pixels
+            int i = region.y() + idx / region.width(); // Row index
+            int j = region.x() + idx % region.width(); // Column index
+            action.render(j, i);
+            pixelManager.pixelDone(); // Mark pixel as completed
         });
-        return this;
     }
 
-    private Color castRayASS(Point center, Vector vRight, Vector vUp, double width, double height, int depth) {
+    /**
+     * Adaptive super sampling of a square area of a pixel. All the samples lie on
+     * a lattice of the image, of 2^(depth+1) points per pixel edge: the corners
+     * of the areas and the centers of the deepest ones. Lattice coordinates are
+     * counted from the top left corner of the image, rows downwards. Corners are
+     * shared by adjacent areas and pixels, so the traced samples are cached (per
+     * tile, see {@link #renderTiles}) and each lattice point is traced once.
+     *
+     * @param x            lattice column of the area center
+     * @param y            lattice row of the area center
+     * @param half         half of the area edge, in lattice units
+     * @param depth        remaining subdivision depth
+     * @param toViewCenter vector from the camera to the view plane center
+     * @param sX           lattice unit width on the view plane
+     * @param sY           lattice unit height on the view plane
+     * @return the color of the area
+     */
+    private Color castRayASS(int x, int y, int half, int depth, Vector toViewCenter, double sX, double sY) {
         if (depth == 0) {
-            return rayTracer.traceRay(new Ray(p0, center.subtract(p0))); // Base case: shoot a ray to center
+            return traceLatticeSample(x, y, toViewCenter, sX, sY); // Base case: shoot a ray to center
         }
 
-        double halfW = width / 2; // Half width for subdivision
-        double halfH = height / 2; // Half height for subdivision
-
-        // Compute corner points of the pixel
-        Point p1 = center.add(vRight.scale(-halfW)).add(vUp.scale(halfH));   // top-left
-        Point p2 = center.add(vRight.scale(halfW)).add(vUp.scale(halfH));    // top-right
-        Point p3 = center.add(vRight.scale(halfW)).add(vUp.scale(-halfH));   // bottom-right
-        Point p4 = center.add(vRight.scale(-halfW)).add(vUp.scale(-halfH));  // bottom-left
-
         // Cast rays to the 4 corners and center
-        Color c1 = rayTracer.traceRay(new Ray(p0, p1.subtract(p0)));
-        Color c2 = rayTracer.traceRay(new Ray(p0, p2.subtract(p0)));
-        Color c3 = rayTracer.traceRay(new Ray(p0, p3.subtract(p0)));
-        Color c4 = rayTracer.traceRay(new Ray(p0, p4.subtract(p0)));
-        Color centerColor = rayTracer.traceRay(new Ray(p0, center.subtract(p0)));
+        Color c1 = traceLatticeSample(x - half, y - half, toViewCenter, sX, sY); // top-left
+        Color c2 = traceLatticeSample(x + half, y - half, toViewCenter, sX, sY); // top-right
+        Color c3 = traceLatticeSample(x + half, y + half, toViewCenter, sX, sY); // bottom-right
+        Color c4 = traceLatticeSample(x - half, y + half, toViewCenter, sX, sY); // bottom-left
+        Color centerColor = traceLatticeSample(x, y, toViewCenter, sX, sY);
 
         // Calculate average color
         Color avg = c1.add(c2).add(c3).add(c4).add(centerColor).reduce(5);
@@ -292,50 +570,63 @@ public class Camera implements Cloneable {
         }
 
         // Subdivide and recurse into 4 quadrants
-        Color cTL = castRayASS(p1.add(center.subtract(p1).scale(0.5)), vRight, vUp, halfW, halfH, depth - 1); // Top-left
-        Color cTR = castRayASS(p2.add(center.subtract(p2).scale(0.5)), vRight, vUp, halfW, halfH, depth - 1); // Top-right
-        Color cBR = castRayASS(p3.add(center.subtract(p3).scale(0.5)), vRight, vUp, halfW, halfH, depth - 1); // Bottom-right
-        Color cBL = castRayASS(p4.add(center.subtract(p4).scale(0.5)), vRight, vUp, halfW, halfH, depth - 1); // Bottom-left
+        int quarter = half / 2;
+        Color cTL = castRayASS(x - quarter, y - quarter, quarter, depth - 1, toViewCenter, sX, sY); // Top-left
+        Color cTR = castRayASS(x + quarter, y - quarter, quarter, depth - 1, toViewCenter, sX, sY); // Top-right
+        Color cBR = castRayASS(x + quarter, y + quarter, quarter, depth - 1, toViewCenter, sX, sY); // Bottom-right
+        Color cBL = castRayASS(x - quarter, y + quarter, quarter, depth - 1, toViewCenter, sX, sY); // Bottom-left
 
         return cTL.add(cTR).add(cBR).add(cBL).reduce(4); // Return average of 4 quadrant colors
     }
 
+    /**
+     * Traces the ray of an adaptive super sampling lattice point, or returns its
+     * color if it was already traced in the current tile
+     *
+     * @param x            lattice column
+     * @param y            lattice row
+     * @param toViewCenter vector from the camera to the view plane center
+     * @param sX           lattice unit width on the view plane
+     * @param sY           lattice unit height on the view plane
+     * @return the color of the sample
+     */
+    private Color traceLatticeSample(int x, int y, Vector toViewCenter, double sX, double sY) {
+        Map<Long, Color> samples = ASS_SAMPLES.get();
+        Long key = (long) x << 32 | (y & 0xFFFFFFFFL);
+        Color color = samples.get(key);
+        if (color == null) {
+            int unit = 2 << adaptiveMaxDepth;
+            Vector dir = toViewCenter.addScaled(vRight, (x - nX * unit / 2d) * sX, vUp, -(y - nY * unit / 2d) * sY);
+            color = traceSample(new Ray(p0, dir), CounterRng.key(CounterRng.pixelKey(x, y), LATTICE_STREAM), null);
+            samples.put(key, color);
+        }
+        return color;
+    }
+
 
     /**
-     * Render image without multi-threading
+     * Run a pixel action over a region of pixels without multi-threading
      *
-     * @return the camera object itself
+     * @param region the region of pixels to render
+     * @param action the work to be done for each pixel
      */
-    private Camera renderImageNoThreads() {
-        final double rX = width / nX; // Width of each pixel
-        final double rY = height / nY; // Height of each pixel
-        final Point pointCenter = p0.add(vT0.scale(distance)); // Center of view plane
-
-        // Loop over all rows and columns (pixels)
-        for (int i = 0; i < this.imageWriter.nY(); i++) {
-            for (int j = 0; j < this.imageWriter.nX(); j++) {
-                Point center = getCenterOfPixel(j, i, pointCenter, rX, rY); // Compute pixel center
-                Color color = useAdaptiveSuperSampling
-                        ? castRayASS(center, vRight, vUp, rX, rY, adaptiveMaxDepth) // Use ASS
-                        : (useAntiAliasing
-                        ? castRayAA(j, i, pointCenter, rX, rY) // Use AA
-                        : castRay(j, i, pointCenter, rX, rY)); // Regular casting
-                this.imageWriter.writePixel(j, i, color); // Write pixel color
+    private void renderImageNoThreads(Tile region, PixelAction action) {
+        // Loop over all rows and columns (pixels) of the region
+        for (int i = region.y(); i < region.y() + region.height(); i++) {
+            for (int j = region.x(); j < region.x() + region.width(); j++) {
+                action.render(j, i);
+                pixelManager.pixelDone(); // Mark pixel as completed
             }
         }
-        return this;
     }
 
     /**
-     * Render image using multi-threading by creating and running raw threads
+     * Run a pixel action over the pixels of the pixel manager using multi-threading
+     * by creating and running raw threads
      *
-     * @return the camera object itself
+     * @param action the work to be done for each pixel
      */
-    private Camera renderImageRawThreads() {
-        final double rX = width / nX; // Pixel width
-        final double rY = height / nY; // Pixel height
-        final Point pointCenter = p0.add(vT0.scale(distance)); // Center of view plane
-
+    private void renderImageRawThreads(PixelAction action) {
         var threads = new LinkedList<Thread>(); // Thread list
 
         // Create a thread for each worker
@@ -343,13 +634,8 @@ public class Camera implements Cloneable {
             threads.add(new Thread(() -> {
                 PixelManager.Pixel pixel;
                 while ((pixel = pixelManager.nextPixel()) != null) { // Get next pixel
-                    int j = pixel.col();
-                    int i = pixel.row();
-                    Point center = getCenterOfPixel(j, i, pointCenter, rX, rY); // Pixel center
-                    Color color = useAdaptiveSuperSampling
-                            ? castRayASS(center, vRight, vUp, rX, rY, adaptiveMaxDepth)
-                            : (useAntiAliasing ? castRayAA(j, i, pointCenter, rX, rY) : castRay(j, i, pointCenter, rX, rY));
-                    imageWriter.writePixel(j, i, color); // Write pixel color
+                    action.render(pixel.col(), pixel.row());
+                    pixelManager.pixelDone(); // Mark pixel as completed
                 }
             }));
         }
@@ -362,23 +648,612 @@ public class Camera implements Cloneable {
             for (var thread : threads) thread.join();
         } catch (InterruptedException ignored) {
         }
+    }
 
-        return this;
+    /**
+     * Run a pixel action over a region of pixels tile by tile: each tile is
+     * rendered by a single thread, pixel after pixel, with the adaptive super
+     * sampling lattice cache of the thread dedicated to the tile
+     *
+     * @param region the region of pixels to render
+     * @param action the work to be done for each pixel
+     */
+    private void renderTiles(Tile region, PixelAction action) {
+        forEachTile(region.split(tileSize), tile -> {
+            try {
+                for (int i = tile.y(); i < tile.y() + tile.height(); i++)
+                    for (int j = tile.x(); j < tile.x() + tile.width(); j++) {
+                        action.render(j, i);
+                        pixelManager.pixelDone(); // Mark pixel as completed
+                    }
+            } finally {
+                ASS_SAMPLES.get().clear(); // Samples of the tile are not needed anymore
+            }
+        });
+    }
+
+    /**
+     * Runs the rendering of tiles according to the multithreading setting -
+     * each tile is rendered by a single thread
+     *
+     * @param tiles      the tiles (regions, or any other units of the work)
+     * @param renderTile the rendering of a tile
+     * @param <T>        the type of the tiles
+     */
+    private <T> void forEachTile(List<T> tiles, Consumer<T> renderTile) {
+        switch (threadsCount) {
+            case 0 -> tiles.forEach(renderTile); // Single-threaded rendering
+            case -1 -> tiles.parallelStream().forEach(renderTile); // Parallel stream
+            default -> { // Raw threads taking the tiles in order
+                var next = new AtomicInteger();
+                var threads = new LinkedList<Thread>();
+                for (int t = 0; t < threadsCount; t++)
+                    threads.add(new Thread(() -> {
+                        for (int k; (k = next.getAndIncrement()) < tiles.size(); )
+                            renderTile.accept(tiles.get(k));
+                    }));
+                for (var thread : threads) thread.start();
+                try {
+                    for (var thread : threads) thread.join();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps a pixel action by the recording of the output variables of the pixel,
+     * if enabled
+     *
+     * @param action the work to be done for each pixel
+     * @return the recorded action
+     */
+    private PixelAction recorded(PixelAction action) {
+        AovBuffers buffers = aovBuffers;
+        return buffers == null ? action : (j, i) -> buffers.record(j, i, () -> action.render(j, i));
+    }
+
+    /**
+     * Runs a pixel action over a region of pixels of the image according to the
+     * multithreading setting
+     *
+     * @param region the region of pixels to render
+     * @param action the work to be done for each pixel
+     */
+    private void renderPixels(Tile region, PixelAction action) {
+        pixelManager = new PixelManager(region, printInterval); // Initialize pixel manager
+        action = recorded(action);
+        if (useAdaptiveSuperSampling) {
+            renderTiles(region, action); // Pixels of a tile share their lattice samples
+            return;
+        }
+        switch (threadsCount) {
+            case 0 -> renderImageNoThreads(region, action); // Single-threaded rendering
+            case -1 -> renderImageStream(region, action); // Parallel stream
+            default -> renderImageRawThreads(action); // Raw threads
+        }
+    }
+
+    /**
+     * The region to be rendered - the crop window if it is set, otherwise the full frame
+     */
+    Tile renderRegion() {
+        return cropWindow != null ? cropWindow : new Tile(0, 0, nX, nY);
     }
 
     /**
      * This function renders image's pixel color map from the scene
-     * included in the ray tracer object
+     * included in the ray tracer object. If a crop window is set, only its
+     * pixels are rendered.
      *
      * @return the camera object itself
      */
     public Camera renderImage() {
-        pixelManager = new PixelManager(nY, nX, printInterval); // Initialize pixel manager
-        return switch (threadsCount) {
-            case 0 -> renderImageNoThreads(); // Single-threaded rendering
-            case -1 -> renderImageStream(); // Parallel stream
-            default -> renderImageRawThreads(); // Raw threads
+        return renderImage(renderRegion());
+    }
+
+    /**
+     * Renders only a region of the image, keeping the full-frame camera geometry:
+     * every traced pixel gets exactly the rays it gets in a full render, and the
+     * pixels outside the region keep their current content in the image.
+     *
+     * @param region the region of pixels to render
+     * @return the camera object itself
+     * @throws IllegalStateException if rendering modes which cannot be combined are enabled
+     */
+    public Camera renderImage(Tile region) {
+        if (!region.fitsIn(nX, nY))
+            throw new IllegalArgumentException("Render region must be inside the image");
+        checkRenderModes();
+
+        final double rX = width / nX; // Pixel width
+        final double rY = height / nY; // Pixel height
+        final Point pointCenter = p0.add(vT0.scale(distance)); // Calculate center of view plane
+        if (aovBuffers != null) aovBuffers.clear(region);
+
+        if (resamplingCandidates > 0) return renderImageResampled(region);
+        if (useVarianceSampling) return renderImageVariance(region, pointCenter, rX, rY);
+        if (useEdgeSampling) return renderImageEdges(region, pointCenter, rX, rY);
+        if (checkpointName != null) return renderImageCheckpointed(region, pointCenter, rX, rY);
+        if (rayTracer instanceof WavefrontRayTracer wavefront)
+            return renderImageWavefront(region, wavefront, pointCenter, rX, rY);
+        renderPixels(region, (j, i) -> imageWriter.writePixel(j, i, tracePixel(j, i, pointCenter, rX, rY)));
+        return this;
+    }
+
+    /**
+     * Checks that the enabled rendering modes can be combined by
+     * {@link #renderImage(Tile)}
+     *
+     * @throws IllegalStateException if modes which cannot be combined are enabled
+     */
+    private void checkRenderModes() {
+        if (useVarianceSampling && checkpointName != null)
+            throw new IllegalStateException("Variance sampling cannot be checkpointed");
+        if (useEdgeSampling && (useVarianceSampling || checkpointName != null))
+            throw new IllegalStateException("Edge sampling cannot be combined with variance sampling or checkpoints");
+        if (resamplingCandidates > 0 && (useVarianceSampling || useEdgeSampling || checkpointName != null))
+            throw new IllegalStateException(
+                    "Light resampling cannot be combined with variance sampling, edge sampling or checkpoints");
+        if (rayTracer instanceof WavefrontRayTracer && (aovBuffers != null || useAdaptiveSuperSampling))
+            throw new IllegalStateException(
+                    "The wavefront ray tracer cannot record output variables or use adaptive super sampling");
+    }
+
+    /**
+     * Checks that the enabled rendering modes are supported by the rendering of
+     * independent tiles ({@link #renderTile(Tile)}) - anti-aliasing and adaptive
+     * super sampling only; variance sampling, edge sampling and light resampling
+     * need the whole region, checkpoints are not kept and the wavefront ray
+     * tracer is not used
+     *
+     * @throws IllegalStateException if a mode which is not supported is enabled
+     */
+    void checkTileRenderModes() {
+        checkRenderModes();
+        if (useVarianceSampling || useEdgeSampling || resamplingCandidates > 0 || checkpointName != null
+                || rayTracer instanceof WavefrontRayTracer)
+            throw new IllegalStateException("Tile rendering supports only anti-aliasing and adaptive super sampling");
+    }
+
+    /**
+     * Renders a region tile by tile with a wavefront ray tracer: the camera rays
+     * of a tile (all the anti-aliasing samples of its pixels, if enabled) are
+     * generated into a ray queue and traced together, stage by stage. The rays
+     * and their random keys are those of {@link #castRay} and {@link #castRayAA}.
+     *
+     * @param region the region of pixels to render
+     * @param tracer the wavefront ray tracer
+     * @return the camera object itself
+     */
+    private Camera renderImageWavefront(Tile region, WavefrontRayTracer tracer, Point pointCenter,
+                                        double rX, double rY) {
+        pixelManager = new PixelManager(region, printInterval);
+        int count = useAntiAliasing ? aaShape.sampleCount(samplesPerDim) : 1; // Samples per pixel
+        forEachTile(region.split(tileSize), tile -> {
+            RayQueue queue = new RayQueue(tile.size() * count);
+            for (int i = tile.y(); i < tile.y() + tile.height(); i++)
+                for (int j = tile.x(); j < tile.x() + tile.width(); j++) {
+                    int pixel = (i - tile.y()) * tile.width() + j - tile.x();
+                    long pixelKey = CounterRng.pixelKey(j, i);
+                    if (!useAntiAliasing) {
+                        queue.add(constructRay(nX, nY, j, i), pixel, SimpleRayTracer.MAX_CALC_COLOR_LEVEL, pixelKey,
+                                1, 1, 1);
+                        continue;
+                    }
+                    double[] uv = sampleOffsets(j, i);
+                    Vector toCenter = getCenterOfPixel(j, i, pointCenter, rX, rY).subtract(p0);
+                    for (int s = 0; s < count; s++)
+                        queue.add(new Ray(p0, toCenter.addScaled(vRight, uv[2 * s] * rX, vUp, uv[2 * s + 1] * rY)),
+                                pixel, SimpleRayTracer.MAX_CALC_COLOR_LEVEL, CounterRng.key(pixelKey, s), 1, 1, 1);
+                }
+
+            double[] rgb = new double[3 * tile.size()];
+            tracer.trace(queue, rgb);
+            for (int i = tile.y(); i < tile.y() + tile.height(); i++)
+                for (int j = tile.x(); j < tile.x() + tile.width(); j++) {
+                    int pixel = 3 * ((i - tile.y()) * tile.width() + j - tile.x());
+                    imageWriter.writePixel(j, i, new Color(rgb[pixel], rgb[pixel + 1], rgb[pixel + 2]).reduce(count));
+                    pixelManager.pixelDone(); // Mark pixel as completed
+                }
+        });
+        return this;
+    }
+
+    /**
+     * Renders the image (the crop window if set, otherwise the full frame)
+     * straight into an image file, band of rows after band of rows. Each band is
+     * encoded and flushed to the file as soon as it is rendered, so only a band
+     * is kept in memory - for images too large for the heap. The pixels are
+     * sampled as by {@link #renderImage()} with anti-aliasing or adaptive super
+     * sampling, and 8 bit formats are tone mapped by the camera tone mapping.
+     *
+     * @param imageName  the file name (without extension) in the images directory
+     * @param format     the file format
+     * @param bandHeight amount of rows in a band
+     * @return the camera itself
+     * @throws IllegalStateException if a rendering mode which is not supported
+     *                               tile by tile is enabled (see {@link #checkTileRenderModes()})
+     */
+    public Camera renderImageStreaming(String imageName, ImageFormat format, int bandHeight) {
+        if (bandHeight <= 0) throw new IllegalArgumentException("Band height must be positive");
+        checkTileRenderModes();
+        Tile region = renderRegion();
+        try (StreamingImageWriter writer = imageWriter.stream(imageName, format, region.width(), region.height())) {
+            for (int y = region.y(); y < region.y() + region.height(); y += bandHeight) {
+                Tile band = new Tile(region.x(), y, region.width(), Math.min(bandHeight, region.y() + region.height() - y));
+                writer.writeBand(renderTile(band), band.height());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Renders the image (the crop window if set, otherwise the full frame) tile
+     * by tile into a memory mapped frame buffer file - a PFM image of the full
+     * frame in the images directory. The file is written in place, in random
+     * tile order, with no image buffer on the heap.
+     *
+     * @param imageName the file name (without extension) in the images directory
+     * @return the camera itself
+     * @throws IllegalStateException if a rendering mode which is not supported
+     *                               tile by tile is enabled (see {@link #checkTileRenderModes()})
+     */
+    public Camera renderImageMapped(String imageName) {
+        checkTileRenderModes();
+        try (MappedFrameBuffer frameBuffer = new MappedFrameBuffer(imageName, nX, nY)) {
+            for (Tile tile : renderRegion().split(tileSize))
+                frameBuffer.writeTile(tile, renderTile(tile));
+        }
+        return this;
+    }
+
+    /**
+     * Renders a region of the image by edge sampling (see
+     * {@link #enableEdgeSampling(boolean)})
+     */
+    private Camera renderImageEdges(Tile region, Point pointCenter, double rX, double rY) {
+        // Pre-pass - a single ray per pixel, recording its first hit
+        Intersectable[] geometries = new Intersectable[nX * nY];
+        double[] depths = new double[nX * nY];
+        Vector[] normals = new Vector[nX * nY];
+        renderPixels(region, (j, i) -> {
+            HitRecord hit = new HitRecord();
+            Color color = traceSample(constructRay(nX, nY, j, i), CounterRng.pixelKey(j, i), hit);
+            imageWriter.writePixel(j, i, color);
+            geometries[i * nX + j] = hit.geometry;
+            depths[i * nX + j] = hit.distance;
+            normals[i * nX + j] = hit.normal;
+        });
+
+        // Flag the pixels which differ from a neighbor pixel of the region
+        boolean[] edges = new boolean[nX * nY];
+        int flagged = 0;
+        for (int i = region.y(); i < region.y() + region.height(); i++)
+            for (int j = region.x(); j < region.x() + region.width(); j++) {
+                int p = i * nX + j;
+                boolean right = j + 1 < region.x() + region.width() && isEdge(p, p + 1, geometries, depths, normals);
+                boolean down = i + 1 < region.y() + region.height() && isEdge(p, p + nX, geometries, depths, normals);
+                if (right) edges[p] = edges[p + 1] = true;
+                if (down) edges[p] = edges[p + nX] = true;
+            }
+        for (boolean edge : edges) if (edge) flagged++;
+        edgePixels = flagged;
+
+        // Supersample the flagged pixels only
+        renderPixels(region, (j, i) -> {
+            if (edges[i * nX + j])
+                imageWriter.writePixel(j, i, useAdaptiveSuperSampling
+                        ? tracePixel(j, i, pointCenter, rX, rY) // Adaptive super sampling
+                        : castRayAA(j, i, pointCenter, rX, rY)); // Anti-aliasing
+        });
+        return this;
+    }
+
+    /**
+     * Renders a region of the image by light resampling (see
+     * {@link #setLightResampling(int, int)}): candidates, spatial reuse and shading
+     * passes, each over the tiles of the region in parallel. The random numbers of
+     * a pixel are keyed by the pixel, so the image does not depend on threading.
+     */
+    private Camera renderImageResampled(Tile region) {
+        if (!(rayTracer instanceof SimpleRayTracer tracer))
+            throw new IllegalStateException("Light resampling needs the simple ray tracer");
+        LightReservoir[] initial = new LightReservoir[nX * nY];
+        LightReservoir[] reused = new LightReservoir[nX * nY];
+
+        pixelManager = new PixelManager(region, printInterval);
+        renderTiles(region, recorded((j, i) -> initial[i * nX + j] =
+                tracer.sampleLights(constructRay(nX, nY, j, i), CounterRng.pixelKey(j, i), resamplingCandidates)));
+        pixelManager = new PixelManager(region, printInterval);
+        renderTiles(region, recorded((j, i) -> reused[i * nX + j] = reuseReservoirs(tracer, initial, region, j, i)));
+        pixelManager = new PixelManager(region, printInterval);
+        renderTiles(region, recorded((j, i) ->
+                imageWriter.writePixel(j, i, tracer.shadeResampled(reused[i * nX + j]))));
+        return this;
+    }
+
+    /**
+     * Combines the reservoir of a pixel with the reservoirs of random neighbor
+     * pixels of the region whose hits are similar (by depth and normal)
+     *
+     * @param tracer     the ray tracer of the target function
+     * @param reservoirs the reservoirs of the pixels
+     * @param region     the rendered region
+     * @param j          pixel column
+     * @param i          pixel row
+     * @return the combined reservoir
+     */
+    private LightReservoir reuseReservoirs(SimpleRayTracer tracer, LightReservoir[] reservoirs, Tile region,
+                                           int j, int i) {
+        LightReservoir own = reservoirs[i * nX + j];
+        if (own.intersection == null || resamplingNeighbors == 0) return own;
+        long key = CounterRng.key(CounterRng.pixelKey(j, i), 4); // Random stream of the reuse
+        LightReservoir combined = new LightReservoir(own.intersection, own.distance);
+        combined.merge(own, own.target, CounterRng.uniform(key, 0));
+        Vector normal = own.intersection.normalAtPoint;
+        for (int n = 0; n < resamplingNeighbors; n++) {
+            int x = j + (int) Math.round(CounterRng.uniform(key, 3 * n + 1, -RESAMPLING_RADIUS, RESAMPLING_RADIUS));
+            int y = i + (int) Math.round(CounterRng.uniform(key, 3 * n + 2, -RESAMPLING_RADIUS, RESAMPLING_RADIUS));
+            if (x == j && y == i || x < region.x() || y < region.y()
+                    || x >= region.x() + region.width() || y >= region.y() + region.height()) continue;
+            LightReservoir neighbor = reservoirs[y * nX + x];
+            if (neighbor.intersection == null || neighbor.count == 0
+                    || Math.abs(neighbor.distance - own.distance) > RESAMPLING_DEPTH * own.distance
+                    || neighbor.intersection.normalAtPoint.dotProduct(normal) < RESAMPLING_NORMAL_COS)
+                continue; // Another surface - its lights are not relevant
+            combined.merge(neighbor, tracer.lightTarget(own.intersection, neighbor.light),
+                    CounterRng.uniform(key, 3 * n + 3));
+        }
+        return combined.finish();
+    }
+
+    /**
+     * Checks whether there is a geometric discontinuity between the first hits of
+     * two pixels
+     *
+     * @param a          index of the first pixel
+     * @param b          index of the second pixel
+     * @param geometries hit geometry of each pixel, null for a miss
+     * @param depths     hit distance of each pixel
+     * @param normals    hit normal of each pixel
+     * @return true if the pixels are at an edge
+     */
+    private boolean isEdge(int a, int b, Intersectable[] geometries, double[] depths, Vector[] normals) {
+        if (geometries[a] != geometries[b]) return true; // Silhouette or another object
+        if (geometries[a] == null) return false; // Both miss the scene
+        if (Math.abs(depths[a] - depths[b]) > edgeDepthThreshold * Math.min(depths[a], depths[b]))
+            return true; // Depth step (e.g. a self occluding surface)
+        return normals[a] != null && normals[b] != null
+                && normals[a].dotProduct(normals[b]) < edgeNormalThreshold; // Crease
+    }
+
+    /**
+     * Amount of edge pixels supersampled by the last edge sampling render
+     *
+     * @return the amount of pixels
+     */
+    int getEdgePixelCount() {
+        return edgePixels;
+    }
+
+    /**
+     * Renders a region of the image by variance driven adaptive sampling (see
+     * {@link #enableVarianceSampling(boolean)}). All the pixels get the minimal
+     * samples first, then the samples are added in rounds of one sample for each
+     * pixel which is not converged yet, noisiest first, until all the pixels are
+     * converged or the budget is spent. The sample of each pixel and each round
+     * depend only on the pixel history, so the image does not depend on threading.
+     */
+    private Camera renderImageVariance(Tile region, Point pointCenter, double rX, double rY) {
+        int[] order = aaShape.progressiveOrder(samplesPerDim); // Samples of a pixel, best spread first
+        int minSamples = Math.min(varianceMinSamples, order.length);
+        long budget = sampleBudget == 0 ? (long) order.length * region.size()
+                : Math.max((long) Math.ceil(sampleBudget * region.size()), (long) minSamples * region.size());
+        accumulation = new AccumulationBuffer(nX, nY);
+        VarianceBuffer variance = new VarianceBuffer(nX, nY);
+        PixelAction addSample = (j, i) -> {
+            Color color = castRayStratum(j, i, order[variance.count(j, i)], pointCenter, rX, rY);
+            accumulation.add(j, i, color);
+            variance.add(j, i, color);
         };
+
+        renderPixels(region, (j, i) -> {
+            for (int s = 0; s < minSamples; s++) addSample.render(j, i);
+        });
+        long spent = (long) minSamples * region.size();
+
+        while (spent < budget) {
+            // Pixels which are not converged, noisiest first (ties by position)
+            int[] active = IntStream.range(0, region.size())
+                    .map(idx -> (region.y() + idx / region.width()) * nX + region.x() + idx % region.width())
+                    .filter(p -> variance.count(p % nX, p / nX) < order.length
+                            && variance.error(p % nX, p / nX) > varianceTolerance)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer p) -> -variance.error(p % nX, p / nX)))
+                    .limit(budget - spent)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            if (active.length == 0) break; // All the pixels are converged
+            PixelAction round = recorded(addSample);
+            int chunk = tileSize * tileSize; // Each thread takes the pixels of a tile area at once
+            forEachTile(IntStream.iterate(0, k -> k < active.length, k -> k + chunk).boxed().toList(), start -> {
+                for (int k = start; k < Math.min(start + chunk, active.length); k++)
+                    round.render(active[k] % nX, active[k] / nX);
+            });
+            spent += active.length;
+        }
+
+        accumulation.resolve(imageWriter, region);
+        return this;
+    }
+
+    /**
+     * Fingerprint of the render - a hash of the serialized ray tracer (with its
+     * scene), the camera geometry and the sampling settings
+     *
+     * @return the fingerprint, or 0 if the ray tracer cannot be serialized
+     */
+    long fingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (var out = new ObjectOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+                out.writeObject(rayTracer);
+                out.writeObject(new Object[] { p0, vT0, vUp, vRight, aaShape });
+                out.writeObject(new double[] { width, height, distance, adaptiveThreshold, varianceTolerance,
+                        sampleBudget, edgeDepthThreshold, edgeNormalThreshold });
+                out.writeObject(new int[] { samplesPerDim, adaptiveMaxDepth, varianceMinSamples,
+                        resamplingCandidates, resamplingNeighbors });
+                out.writeObject(new boolean[] { useAntiAliasing, useAdaptiveSuperSampling, useVarianceSampling,
+                        useEdgeSampling });
+            }
+            long fingerprint = ByteBuffer.wrap(digest.digest()).getLong();
+            return fingerprint == 0 ? 1 : fingerprint;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return 0; // Not serializable - the render cannot be identified
+        }
+    }
+
+    /**
+     * Renders a region of the image with checkpoints: the tiles completed in a
+     * previous (interrupted) render are restored from the checkpoint and skipped,
+     * and the completed tiles are persisted periodically during the render.
+     */
+    private Camera renderImageCheckpointed(Tile region, Point pointCenter, double rX, double rY) {
+        RenderCheckpoint checkpoint = new RenderCheckpoint(checkpointName, nX, nY, region, tileSize, fingerprint());
+        accumulation = new AccumulationBuffer(nX, nY);
+        if (checkpoint.restore(accumulation, false))
+            accumulation.resolve(imageWriter, region); // Restored tiles, the rest is rendered below
+
+        checkpoint.start(accumulation, checkpointInterval);
+        boolean completed = false;
+        try {
+            renderPixels(region, (j, i) -> {
+                if (checkpoint.isDone(j, i)) return; // Completed in the previous render
+                Color color = tracePixel(j, i, pointCenter, rX, rY);
+                accumulation.add(j, i, color);
+                imageWriter.writePixel(j, i, color);
+                checkpoint.pixelDone(j, i); // After the pixel is stored - it may be persisted
+            });
+            completed = true;
+        } finally {
+            checkpoint.finish(accumulation, completed); // Final checkpoint, or deletion if completed
+        }
+        return this;
+    }
+
+    /**
+     * Renders a tile of pixels into an array of colors, used by distributed
+     * rendering workers which hold no image of their own
+     *
+     * @param tile the tile to render
+     * @return the pixel colors of the tile, row by row, 3 floats (R, G, B) per pixel
+     */
+    float[] renderTile(Tile tile) {
+        if (!tile.fitsIn(nX, nY))
+            throw new IllegalArgumentException("Tile must be inside the image");
+
+        final double rX = width / nX; // Pixel width
+        final double rY = height / nY; // Pixel height
+        final Point pointCenter = p0.add(vT0.scale(distance)); // Calculate center of view plane
+
+        if (aovBuffers != null) aovBuffers.clear(tile);
+        float[] pixels = new float[3 * tile.size()];
+        renderPixels(tile, (j, i) -> {
+            Double3 rgb = tracePixel(j, i, pointCenter, rX, rY).getRgb();
+            int index = 3 * ((i - tile.y()) * tile.width() + j - tile.x());
+            pixels[index] = ImageWriter.toFloat(rgb.d1()); // Rounded as the image frame buffer
+            pixels[index + 1] = ImageWriter.toFloat(rgb.d2());
+            pixels[index + 2] = ImageWriter.toFloat(rgb.d3());
+        });
+        return pixels;
+    }
+
+    /**
+     * Writes the pixel colors of a rendered tile into the image
+     *
+     * @param tile   the rendered tile
+     * @param pixels the pixel colors as returned by {@link #renderTile(Tile)}
+     */
+    void writeTile(Tile tile, float[] pixels) {
+        for (int i = 0; i < tile.height(); i++) {
+            for (int j = 0; j < tile.width(); j++) {
+                int index = 3 * (i * tile.width() + j);
+                imageWriter.writePixel(tile.x() + j, tile.y() + i,
+                        new Color(pixels[index], pixels[index + 1], pixels[index + 2]));
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of passes of a progressive render - the amount of
+     * anti-aliasing strata in a pixel (1 if anti-aliasing is disabled)
+     *
+     * @return the amount of progressive passes
+     */
+    public int getProgressivePassCount() {
+        return progressiveOrder().length;
+    }
+
+    /**
+     * The strata of a pixel in the order they are added by progressive rendering
+     */
+    private int[] progressiveOrder() {
+        if (!useAntiAliasing) return new int[]{-1}; // Single pass of regular ray casting
+        return aaShape.progressiveOrder(samplesPerDim);
+    }
+
+    /**
+     * Renders the image progressively: each pass adds one more anti-aliasing
+     * stratum (sample) to every pixel in a float accumulation buffer, and the
+     * averaged image is written into the image writer after every pass. The
+     * strata are added in an order which keeps every intermediate image evenly
+     * sampled, so the first pass is a quick preview and the last pass equals
+     * the full anti-aliased render. Only the crop window is rendered if it is set.<br/>
+     * The callback is invoked after each pass with the number of passes done
+     * (starting at 1); it may write or inspect the image (e.g. by
+     * {@link #writeToImage(String)}) and returns whether to continue rendering.
+     * Adaptive super sampling is not used in progressive mode. With checkpoints
+     * enabled, a render resumes after the last checkpointed pass (the callback is
+     * called for the remaining passes only).
+     *
+     * @param afterPass called after each pass, returns false to stop early
+     * @return the camera object itself
+     */
+    public Camera renderImageProgressive(IntPredicate afterPass) {
+        final double rX = width / nX; // Pixel width
+        final double rY = height / nY; // Pixel height
+        final Point pointCenter = p0.add(vT0.scale(distance)); // Calculate center of view plane
+
+        final Tile region = renderRegion();
+        int[] strata = progressiveOrder();
+        accumulation = new AccumulationBuffer(nX, nY);
+        if (aovBuffers != null) aovBuffers.clear(region);
+
+        RenderCheckpoint checkpoint = checkpointName == null ? null
+                : new RenderCheckpoint(checkpointName, nX, nY, region, tileSize, fingerprint());
+        int firstPass = 0;
+        if (checkpoint != null && checkpoint.restore(accumulation, true)) {
+            firstPass = checkpoint.passes(); // Resume after the last saved pass
+            accumulation.resolve(imageWriter, region);
+        }
+
+        boolean completed = firstPass == strata.length;
+        try {
+            for (int pass = firstPass; pass < strata.length; pass++) {
+                final int cell = strata[pass];
+                renderPixels(region, (j, i) -> accumulation.add(j, i, cell < 0
+                        ? castRay(j, i, pointCenter, rX, rY) // No anti-aliasing - the only pass
+                        : castRayStratum(j, i, cell, pointCenter, rX, rY)));
+                accumulation.resolve(imageWriter, region); // Snapshot of the current averaged image
+                if (checkpoint != null) checkpoint.savePass(accumulation.copy(), pass + 1);
+                if (!afterPass.test(pass + 1)) break;
+                completed = pass + 1 == strata.length;
+            }
+        } finally {
+            if (checkpoint != null) checkpoint.finish(null, completed); // Wait for the pending checkpoint
+        }
+        return this;
     }
 
     /**
@@ -397,12 +1272,44 @@ public class Camera implements Cloneable {
 
     /**
      * Writes the rendered image to file.
+     * With a crop window the full frame is written - the rendered region
+     * composited over the rest of the image.
      */
     public Camera writeToImage(String filename) {
         imageWriter.writeToImage(filename); // Save image to file
         return this;
     }
 
+    /**
+     * Writes only the crop window of the rendered image to file
+     * (the full frame if no crop window is set).
+     */
+    public Camera writeCropToImage(String filename) {
+        imageWriter.writeToImage(filename, renderRegion()); // Save the region to file
+        return this;
+    }
+
+    /**
+     * Loads a previously written image (of the same resolution) into the image,
+     * so that a crop window render is composited over it.
+     */
+    public Camera loadImage(String filename) {
+        imageWriter.readImage(filename); // Load image from file
+        return this;
+    }
+
+    /**
+     * Sets the crop window - the region of pixels to be rendered.
+     *
+     * @param cropWindow the region to render, or null to render the full frame
+     */
+    public Camera setCropWindow(Tile cropWindow) {
+        if (cropWindow != null && !cropWindow.fitsIn(nX, nY))
+            throw new IllegalArgumentException("Crop window must be inside the image");
+        this.cropWindow = cropWindow;
+        return this;
+    }
+
     /**
      * Builder class for constructing a Camera using fluent API.
      */
@@ -470,9 +1377,21 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        public Builder setCropWindow(int x, int y, int width, int height) {
+            camera.cropWindow = new Tile(x, y, width, height); // Validated against resolution on build
+            return this;
+        }
+
+        public Builder setRayTracer(RayTracerBase rayTracer) {
+            camera.rayTracer = rayTracer; // Set a custom ray tracer
+            return this;
+        }
+
         public Builder setRayTracer(Scene scene, RayTracerType type) {
             if (type == RayTracerType.SIMPLE) {
                 camera.rayTracer = new SimpleRayTracer(scene); // Set simple ray tracer
+            } else if (type == RayTracerType.WAVEFRONT) {
+                camera.rayTracer = new WavefrontRayTracer(scene); // Set wavefront ray tracer
             } else {
                 camera.rayTracer = null;
             }
@@ -498,6 +1417,8 @@ public class Camera implements Cloneable {
                 throw new IllegalStateException("View plane distance must be set");
             if (camera.nX <= 0 || camera.nY <= 0)
                 throw new IllegalStateException("Resolution must be positive");
+            if (camera.cropWindow != null && !camera.cropWindow.fitsIn(camera.nX, camera.nY))
+                throw new IllegalStateException("Crop window must be inside the image");
 
             camera.imageWriter = new ImageWriter(camera.nX, camera.nY); // Init image writer
 
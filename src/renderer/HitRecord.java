@@ -0,0 +1,41 @@
+package renderer;
+
+import geometries.Intersectable;
+import primitives.Vector;
+
+/**
+ * Record of the first hit of a traced ray - the geometry identity, the depth
+ * and the (viewer facing) normal of the closest intersection. Filled by the ray
+ * tracer on request, e.g. for detecting geometric discontinuities between
+ * pixels.
+ *
+ * @author Eitan Lafair
+ */
+public final class HitRecord {
+    /** The hit geometry, null if the ray missed the scene */
+    public Intersectable geometry;
+    /** Distance from the ray head to the hit point */
+    public double distance;
+    /** Normal at the hit point, facing the ray head */
+    public Vector normal;
+
+    /**
+     * Records a hit
+     *
+     * @param geometry the hit geometry
+     * @param distance distance from the ray head to the hit point
+     * @param normal   normal at the hit point, facing the ray head
+     */
+    public void set(Intersectable geometry, double distance, Vector normal) {
+        this.geometry = geometry;
+        this.distance = distance;
+        this.normal = normal;
+    }
+
+    /**
+     * Records a miss
+     */
+    public void clear() {
+        set(null, Double.POSITIVE_INFINITY, null);
+    }
+}
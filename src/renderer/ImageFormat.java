@@ -0,0 +1,23 @@
+package renderer;
+
+/**
+ * Image file formats of the streamed image output
+ * @author Eitan Lafair
+ */
+public enum ImageFormat {
+   /** PNG - tone mapped 8 bit RGB, compressed */
+   PNG("png"),
+   /** Binary PPM (P6) - tone mapped 8 bit RGB, uncompressed */
+   PPM("ppm"),
+   /** PFM - high dynamic range 32 bit float RGB, uncompressed */
+   PFM("pfm");
+
+   /** File name extension */
+   final String extension;
+
+   /**
+    * Constructs a format
+    * @param extension the file name extension
+    */
+   ImageFormat(String extension) { this.extension = extension; }
+}
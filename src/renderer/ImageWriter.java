@@ -2,16 +2,22 @@ package renderer;
 
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
 import primitives.Color;
+import primitives.Double3;
 
 /**
  * Image writer class combines accumulation of pixel color matrix and finally
  * producing a non-optimized jpeg image from this matrix. The class although is
  * responsible of holding image related parameters of View Plane - pixel matrix
- * size and resolution
+ * size and resolution.<br/>
+ * The pixel colors are kept in high dynamic range, as floats, and are tone
+ * mapped into the image raster by a separate (parallel) pass when the image is
+ * produced
  * @author Dan
  */
 final class ImageWriter {
@@ -26,8 +32,19 @@ final class ImageWriter {
     */
    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
 
-   /** Image generation buffer (the matrix of the pixels) */
-   private final BufferedImage image;
+   /**
+    * High dynamic range pixel colors, 3 floats (R, G, B) per pixel, row by row,
+    * allocated on demand (a streamed render never allocates it)
+    */
+   private volatile float[]    pixels      = null;
+   /** Tone mapped pixels (0xRRGGBB, row by row), allocated on demand */
+   private int[]               raster      = null;
+   /** Tone mapping operator */
+   private ToneMapping         toneMapping = ToneMapping.CLAMP;
+   /** Exposure scale of the colors before tone mapping (2^exposure stops) */
+   private double              exposure    = 1;
+   /** Whether the tone mapped colors are sRGB encoded (gamma) */
+   private boolean             srgb        = false;
 
    // ***************** Constructors ********************** //
    /**
@@ -39,7 +56,6 @@ final class ImageWriter {
       this.nX = nX;
       this.nY = nY;
 
-      image   = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
    }
 
    // ***************** Getters ********************** //
@@ -55,22 +71,96 @@ final class ImageWriter {
     */
    int nX() { return nX; }
 
+   /**
+    * The pixel colors buffer, allocated on first use
+    * @return the pixel colors
+    */
+   private float[] pixels() {
+      float[] buffer = pixels;
+      if (buffer == null)
+         synchronized (this) {
+            if ((buffer = pixels) == null) pixels = buffer = new float[3 * nX * nY];
+         }
+      return buffer;
+   }
+
+   // ***************** Setters ********************** //
+   /**
+    * Sets the tone mapping of the produced images
+    * @param toneMapping the tone mapping operator
+    * @param exposure    exposure correction in stops (0 - none)
+    * @param srgb        whether to encode the tone mapped colors by sRGB gamma
+    */
+   void setToneMapping(ToneMapping toneMapping, double exposure, boolean srgb) {
+      this.toneMapping = toneMapping;
+      this.exposure    = Math.pow(2, exposure);
+      this.srgb        = srgb;
+   }
+
    // ***************** Operations ******************** //
 
    /**
-    * Function writeToImage produces unoptimized png file of the image according
-    * to pixel color matrix in the directory of the project
+    * Function writeToImage produces png file of the image according to pixel
+    * color matrix in the directory of the project, encoded in parallel (see
+    * {@link PngEncoder})
     * @param imageName the name of png file
     */
    void writeToImage(String imageName) {
+      writeToImage(imageName, new Tile(0, 0, nX, nY));
+   }
+
+   /**
+    * Function writeToImage produces png file of a region of the image (e.g. the
+    * crop window of a render) in the directory of the project
+    * @param imageName the name of png file
+    * @param region    the region of the image to write
+    */
+   void writeToImage(String imageName, Tile region) {
       try {
-         File file = new File(FOLDER_PATH + '/' + imageName + ".png");
-         ImageIO.write(image, "png", file);
+         PngEncoder.write(Path.of(FOLDER_PATH, imageName + ".png"), toneMap(region), nX, region);
       } catch (IOException e) {
          throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
       }
    }
 
+   /**
+    * Function readImage loads a png file from the directory of the project into
+    * the pixel color matrix, e.g. for compositing a partial render over it
+    * @param imageName the name of png file
+    */
+   void readImage(String imageName) {
+      BufferedImage loaded;
+      try {
+         loaded = ImageIO.read(new File(FOLDER_PATH + '/' + imageName + ".png"));
+      } catch (IOException e) {
+         throw new IllegalStateException("I/O error - may be missing file in " + FOLDER_PATH, e);
+      }
+      if (loaded == null || loaded.getWidth() != nX || loaded.getHeight() != nY)
+         throw new IllegalArgumentException("Image " + imageName + " does not match the resolution");
+      float[] pixels = pixels();
+      for (int y = 0; y < nY; ++y)
+         for (int x = 0; x < nX; ++x) {
+            int rgb   = loaded.getRGB(x, y);
+            int index = 3 * (y * nX + x);
+            pixels[index]     = (rgb >> 16) & 0xFF;
+            pixels[index + 1] = (rgb >> 8) & 0xFF;
+            pixels[index + 2] = rgb & 0xFF;
+         }
+   }
+
+   /**
+    * Function stream creates a streaming writer of an image file in the
+    * directory of the project, with the tone mapping of this image writer
+    * @param  imageName the name of the file (without extension)
+    * @param  format    the file format
+    * @param  width     the image width
+    * @param  height    the image height
+    * @return           the streaming writer
+    */
+   StreamingImageWriter stream(String imageName, ImageFormat format, int width, int height) {
+      return new StreamingImageWriter(imageName, format, width, height, toneMapping, exposure, srgb);
+   }
+
    /**
     * The function writePixel writes a color of a specific pixel into pixel color
     * matrix
@@ -78,6 +168,59 @@ final class ImageWriter {
     * @param yIndex Y axis index of the pixel
     * @param color  final color of the pixel
     */
-   void writePixel(int xIndex, int yIndex, Color color) { image.setRGB(xIndex, yIndex, color.getColor().getRGB()); }
+   void writePixel(int xIndex, int yIndex, Color color) {
+      float[] pixels = pixels();
+      int     index  = 3 * (yIndex * nX + xIndex);
+      Double3 rgb    = color.getRgb();
+      pixels[index]     = toFloat(rgb.d1());
+      pixels[index + 1] = toFloat(rgb.d2());
+      pixels[index + 2] = toFloat(rgb.d3());
+   }
+
+   /**
+    * The function getPixel reads the high dynamic range color of a pixel
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the color of the pixel
+    */
+   Color getPixel(int xIndex, int yIndex) {
+      float[] pixels = pixels();
+      int     index  = 3 * (yIndex * nX + xIndex);
+      return new Color(pixels[index], pixels[index + 1], pixels[index + 2]);
+   }
+
+   /**
+    * Converts a color component to float, rounding down - so that the integer
+    * part is kept exactly and the clamp tone mapping gives the same 8 bit value
+    * as the double component
+    * @param  value the component
+    * @return       the largest float not above the component
+    */
+   static float toFloat(double value) {
+      float f = (float) value;
+      return f > value ? Math.nextDown(f) : f;
+   }
+
+   /**
+    * Tone maps a region of the pixel colors into the raster, row by row in
+    * parallel
+    * @param  region the region to tone map
+    * @return        the raster
+    */
+   private int[] toneMap(Tile region) {
+      if (raster == null) raster = new int[nX * nY];
+      int[]   raster = this.raster;
+      float[] pixels = pixels();
+      IntStream.range(region.y(), region.y() + region.height()).parallel().forEach(y -> {
+         for (int x = region.x(); x < region.x() + region.width(); ++x) {
+            int index = y * nX + x;
+            raster[index] = toneMapping.toByte(pixels[3 * index], exposure, srgb) << 16
+                            | toneMapping.toByte(pixels[3 * index + 1], exposure, srgb) << 8
+                            | toneMapping.toByte(pixels[3 * index + 2], exposure, srgb);
+         }
+      });
+      return raster;
+   }
+
 
 }
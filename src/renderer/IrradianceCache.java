@@ -0,0 +1,196 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Irradiance cache - sparse records of the indirect diffuse irradiance of the
+ * scene (see {@link SimpleRayTracer#setIndirectDiffuse(int, IrradianceCache)}),
+ * interpolated at the shading points between them (Ward's irradiance caching).
+ * A record is valid around its point up to a radius proportional to the
+ * harmonic mean distance of the geometries it sees, and for similar normals;
+ * it is extrapolated by its translational gradient.<br/>
+ * The records are kept in an octree whose nodes are created and filled by
+ * lock-free atomic operations, so rendering threads insert records
+ * concurrently. The records depend only on the scene, so a cache may be reused
+ * by the tracers of all the frames of a static scene (with moving cameras).
+ *
+ * @author Eitan Lafair
+ */
+public final class IrradianceCache {
+    /** Half size of the root node of the octree */
+    private static final double ROOT_SIZE = 1e5;
+    /** Maximal depth of the octree */
+    private static final int MAX_DEPTH = 24;
+
+    /**
+     * Irradiance record
+     *
+     * @param point      the position
+     * @param normal     the surface normal
+     * @param irradiance the irradiance (over pi - the reflected radiance of a white surface)
+     * @param radius     the validity radius - the clamped harmonic mean distance
+     * @param gradient   the translational gradient - 3 vectors (by X, Y, Z) of
+     *                   the color components
+     */
+    record Record(Point point, Vector normal, Color irradiance, double radius, double[] gradient) {
+    }
+
+    /**
+     * Node of the octree - a cube of the space, with the records whose
+     * influence overlaps it and is about its size
+     */
+    private static final class Node {
+        /** The center of the cube */
+        final double x, y, z;
+        /** Half of the edge of the cube */
+        final double half;
+        /** The children octants, created on demand */
+        final AtomicReferenceArray<Node> children = new AtomicReferenceArray<>(8);
+        /** The records of the node */
+        final Queue<Record> records = new ConcurrentLinkedQueue<>();
+
+        Node(double x, double y, double z, double half) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.half = half;
+        }
+
+        /** Index of the child octant containing a point */
+        int octant(double px, double py, double pz) {
+            return (px >= x ? 1 : 0) | (py >= y ? 2 : 0) | (pz >= z ? 4 : 0);
+        }
+
+        /** The child of an octant, created if missing */
+        Node child(int octant) {
+            Node child = children.get(octant);
+            if (child != null) return child;
+            double q = half / 2;
+            child = new Node(x + ((octant & 1) != 0 ? q : -q), y + ((octant & 2) != 0 ? q : -q),
+                    z + ((octant & 4) != 0 ? q : -q), q);
+            return children.compareAndSet(octant, null, child) ? child : children.get(octant);
+        }
+    }
+
+    /** Interpolation accuracy - the maximal error of a record (Ward's a) */
+    private final double accuracy;
+    /** Minimal distance of records */
+    private final double minSpacing;
+    /** Maximal distance of records */
+    private final double maxSpacing;
+    /** The root of the octree */
+    private final Node root = new Node(0, 0, 0, ROOT_SIZE);
+    /** Amount of records */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructs an empty cache
+     *
+     * @param accuracy   interpolation accuracy (typically 0.1 - 0.3), smaller is denser
+     * @param minSpacing minimal distance between records (near geometries)
+     * @param maxSpacing maximal distance between records (in open spaces)
+     */
+    public IrradianceCache(double accuracy, double minSpacing, double maxSpacing) {
+        if (accuracy <= 0) throw new IllegalArgumentException("Irradiance cache accuracy must be positive");
+        if (minSpacing <= 0 || maxSpacing < minSpacing)
+            throw new IllegalArgumentException("Irradiance cache spacing must be a positive range");
+        this.accuracy = accuracy;
+        this.minSpacing = minSpacing;
+        this.maxSpacing = maxSpacing;
+    }
+
+    /**
+     * Returns the amount of records
+     *
+     * @return the amount of records
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Adds a record computed at a point
+     *
+     * @param point      the position
+     * @param normal     the surface normal
+     * @param irradiance the irradiance
+     * @param distance   the harmonic mean distance of the geometries seen from the point
+     * @param gradient   the translational gradient (see {@link Record#gradient})
+     */
+    void add(Point point, Vector normal, Color irradiance, double distance, double[] gradient) {
+        double radius = Math.max(minSpacing / accuracy, Math.min(maxSpacing / accuracy, distance));
+        // Limit the extrapolation by the gradient to the magnitude of the irradiance
+        double[] rgb = { irradiance.getRgb().d1(), irradiance.getRgb().d2(), irradiance.getRgb().d3() };
+        for (int c = 0; c < 3; c++) {
+            double g = Math.sqrt(gradient[3 * c] * gradient[3 * c] + gradient[3 * c + 1] * gradient[3 * c + 1]
+                    + gradient[3 * c + 2] * gradient[3 * c + 2]);
+            if (g * radius > rgb[c] && g > 0) radius = Math.max(minSpacing / accuracy, rgb[c] / g);
+        }
+        Record record = new Record(point, normal, irradiance, radius, gradient);
+
+        double influence = accuracy * radius; // Distance where the weight of the record drops to 1/accuracy
+        insert(root, record, influence, 0);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Inserts a record into the nodes of about its influence size which overlap
+     * its influence
+     */
+    private void insert(Node node, Record record, double influence, int depth) {
+        if (node.half <= 2 * influence || depth == MAX_DEPTH) {
+            node.records.add(record);
+            return;
+        }
+        Point p = record.point;
+        for (int octant = 0; octant < 8; octant++) {
+            // Overlap of the octant and the influence box
+            boolean xHigh = (octant & 1) != 0, yHigh = (octant & 2) != 0, zHigh = (octant & 4) != 0;
+            if (xHigh ? p.getX() + influence < node.x : p.getX() - influence >= node.x) continue;
+            if (yHigh ? p.getY() + influence < node.y : p.getY() - influence >= node.y) continue;
+            if (zHigh ? p.getZ() + influence < node.z : p.getZ() - influence >= node.z) continue;
+            insert(node.child(octant), record, influence, depth + 1);
+        }
+    }
+
+    /**
+     * Interpolates the irradiance at a point from the valid records
+     *
+     * @param point  the point
+     * @param normal the surface normal
+     * @return the irradiance, or null if no record is valid at the point
+     */
+    Color lookup(Point point, Vector normal) {
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        double weights = 0, r = 0, g = 0, b = 0;
+        for (Node node = root; node != null; node = node.children.get(node.octant(px, py, pz)))
+            for (Record record : node.records) {
+                double cos = normal.dotProduct(record.normal);
+                if (cos <= 0) continue; // Opposite side
+                double dx = px - record.point.getX(), dy = py - record.point.getY(), dz = pz - record.point.getZ();
+                // A point in front of the record sees geometries the record does not
+                double front = (dx * (normal.dotProduct(Vector.AXIS_X) + record.normal.dotProduct(Vector.AXIS_X))
+                        + dy * (normal.dotProduct(Vector.AXIS_Y) + record.normal.dotProduct(Vector.AXIS_Y))
+                        + dz * (normal.dotProduct(Vector.AXIS_Z) + record.normal.dotProduct(Vector.AXIS_Z))) / 2;
+                if (front < -0.05 * record.radius) continue;
+                double error = Math.sqrt(dx * dx + dy * dy + dz * dz) / record.radius
+                        + Math.sqrt(Math.max(0, 1 - cos));
+                if (error >= accuracy) continue; // The weight 1/error is below 1/accuracy
+                double weight = error < 1e-9 ? 1e9 : 1 / error;
+                double[] gradient = record.gradient;
+                weights += weight;
+                r += weight * (record.irradiance.getRgb().d1() + dx * gradient[0] + dy * gradient[1] + dz * gradient[2]);
+                g += weight * (record.irradiance.getRgb().d2() + dx * gradient[3] + dy * gradient[4] + dz * gradient[5]);
+                b += weight * (record.irradiance.getRgb().d3() + dx * gradient[6] + dy * gradient[7] + dz * gradient[8]);
+            }
+        if (weights == 0) return null;
+        return new Color(Math.max(0, r / weights), Math.max(0, g / weights), Math.max(0, b / weights));
+    }
+}
@@ -0,0 +1,79 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.LightSource;
+
+/**
+ * Weighted reservoir of light candidates of a primary hit, for resampled
+ * importance sampling of the direct light (see
+ * {@link Camera#setLightResampling(int, int)}). The reservoir streams
+ * candidates, weighted by the ratio of their target function (the unshadowed
+ * luminance of their light at the hit) to the probability they were drawn by,
+ * keeping a single light with probability proportional to its weight. A
+ * reservoir is merged into the reservoir of a neighbor pixel as one candidate
+ * which stands for all its candidates.<br/>
+ * Each reservoir is expected to be updated by a single thread.
+ * @author Eitan Lafair
+ */
+final class LightReservoir {
+   /** The primary hit (with its shading vectors set), null for a miss */
+   final Intersection intersection;
+   /** Distance of the hit from the camera */
+   final double       distance;
+   /** The kept light, null if no candidate has weight yet */
+   LightSource        light;
+   /** Target function of the kept light at the hit */
+   double             target;
+   /** Sum of the weights of the candidates */
+   double             weightSum;
+   /** Amount of candidates the reservoir stands for */
+   int                count;
+   /** Weight of the kept light - the inverse of its effective probability */
+   double             lightWeight;
+
+   /**
+    * Constructs an empty reservoir of a hit
+    * @param intersection the primary hit, null for a miss
+    * @param distance     distance of the hit from the camera
+    */
+   LightReservoir(Intersection intersection, double distance) {
+      this.intersection = intersection;
+      this.distance     = distance;
+   }
+
+   /**
+    * Streams a candidate into the reservoir
+    * @param candidate       the candidate light
+    * @param weight          resampling weight of the candidate
+    * @param candidateTarget target function of the candidate at the hit
+    * @param samples         amount of candidates it stands for
+    * @param u               uniform random number in [0,1) of the candidate
+    */
+   void add(LightSource candidate, double weight, double candidateTarget, int samples, double u) {
+      weightSum += weight;
+      count     += samples;
+      if (weight > 0 && u * weightSum < weight) {
+         light  = candidate;
+         target = candidateTarget;
+      }
+   }
+
+   /**
+    * Merges another reservoir as a single candidate
+    * @param other           the merged reservoir
+    * @param candidateTarget target function of its light at the hit of this reservoir
+    * @param u               uniform random number in [0,1) of the merge
+    */
+   void merge(LightReservoir other, double candidateTarget, double u) {
+      add(other.light, candidateTarget * other.lightWeight * other.count, candidateTarget, other.count, u);
+   }
+
+   /**
+    * Computes the weight of the kept light, after all the candidates are streamed
+    * @return the reservoir itself
+    */
+   LightReservoir finish() {
+      lightWeight = target > 0 ? weightSum / (count * target) : 0;
+      return this;
+   }
+}
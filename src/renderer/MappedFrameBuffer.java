@@ -0,0 +1,118 @@
+package renderer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped high dynamic range frame buffer. The buffer is a PFM image file
+ * (32 bit float RGB, rows stored bottom to top) mapped into memory, so tiles
+ * may be rendered into it in any order while the resident memory is managed by
+ * the operating system - an image much larger than the heap may be rendered,
+ * and the file is a complete PFM image when the render is done. Large files are
+ * mapped in segments of whole rows.<br/>
+ * Distinct pixels may be written by different threads concurrently.
+ * @author Eitan Lafair
+ */
+final class MappedFrameBuffer implements Closeable {
+   /**
+    * Directory path for the image file generation - relative to the user
+    * directory
+    */
+   private static final String       FOLDER_PATH  = System.getProperty("user.dir") + "/images";
+   /** Maximal size of a mapped segment */
+   private static final long         SEGMENT_SIZE = 1L << 30;
+
+   /** Image width */
+   private final int                 nX;
+   /** Image height */
+   private final int                 nY;
+   /** Amount of rows in a segment */
+   private final int                 segmentRows;
+   /** The mapped segments, in file order (bottom rows first) */
+   private final MappedByteBuffer[]  segments;
+
+   /**
+    * Creates (or truncates) the PFM file of the frame buffer and maps it
+    * @param  imageName the file name (without extension) in the images directory
+    * @param  nX        image width
+    * @param  nY        image height
+    * @throws UncheckedIOException in case of I/O error
+    */
+   MappedFrameBuffer(String imageName, int nX, int nY) {
+      this.nX = nX;
+      this.nY = nY;
+      long rowSize = 12L * nX;
+      segmentRows = (int) Math.max(1, Math.min(nY, SEGMENT_SIZE / rowSize));
+      segments    = new MappedByteBuffer[(nY + segmentRows - 1) / segmentRows];
+      Path file = Path.of(FOLDER_PATH, imageName + ".pfm");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                  StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+         byte[] header = ("PF\n" + nX + ' ' + nY + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII);
+         channel.write(ByteBuffer.wrap(header), 0);
+         for (int s = 0; s < segments.length; ++s) {
+            int rows = Math.min(segmentRows, nY - s * segmentRows);
+            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, header.length + s * segmentRows * rowSize,
+                                      rows * rowSize); // The mapping stays valid after the channel is closed
+            segments[s].order(ByteOrder.LITTLE_ENDIAN);
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException("I/O error - may be missing directory " + FOLDER_PATH, e);
+      }
+   }
+
+   /**
+    * Byte position of a pixel in its segment
+    * @param  fileRow the row in file order
+    * @param  x       the pixel column
+    * @return         the position
+    */
+   private int position(int fileRow, int x) {
+      return (int) (((long) (fileRow % segmentRows) * nX + x) * 12);
+   }
+
+   /**
+    * Writes the colors of a tile
+    * @param tile   the tile
+    * @param pixels the colors, 3 floats (R, G, B) per pixel, row by row
+    */
+   void writeTile(Tile tile, float[] pixels) {
+      for (int y = 0; y < tile.height(); ++y) {
+         int              fileRow = nY - 1 - (tile.y() + y);
+         MappedByteBuffer segment = segments[fileRow / segmentRows];
+         int              start   = position(fileRow, tile.x());
+         for (int i = 0; i < 3 * tile.width(); ++i)
+            segment.putFloat(start + 4 * i, pixels[3 * y * tile.width() + i]);
+      }
+   }
+
+   /**
+    * Reads the colors of a tile
+    * @param  tile the tile
+    * @return      the colors, 3 floats (R, G, B) per pixel, row by row
+    */
+   float[] readTile(Tile tile) {
+      float[] pixels = new float[3 * tile.size()];
+      for (int y = 0; y < tile.height(); ++y) {
+         int              fileRow = nY - 1 - (tile.y() + y);
+         MappedByteBuffer segment = segments[fileRow / segmentRows];
+         int              start   = position(fileRow, tile.x());
+         for (int i = 0; i < 3 * tile.width(); ++i)
+            pixels[3 * y * tile.width() + i] = segment.getFloat(start + 4 * i);
+      }
+      return pixels;
+   }
+
+   /** Flushes the frame buffer to the file */
+   @Override
+   public void close() {
+      for (MappedByteBuffer segment : segments) segment.force();
+   }
+}
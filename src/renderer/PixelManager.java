@@ -22,6 +22,10 @@ class PixelManager {
     private int                 maxRows       = 0;
     /** Maximum columns of pixels */
     private int                 maxCols       = 0;
+    /** Row of the first pixel of the rendered region */
+    private int                 firstRow      = 0;
+    /** Column of the first pixel of the rendered region */
+    private int                 firstCol      = 0;
     /** Total amount of pixels in the generated image */
     private long                totalPixels   = 0l;
 
@@ -68,6 +72,18 @@ class PixelManager {
         if (print) System.out.printf(PRINT_FORMAT, 0d);
     }
 
+    /**
+     * Initialize pixel manager data for multi-threading over a region of the image
+     * @param region   the region of pixels to be rendered
+     * @param interval print time interval in seconds, 0 if printing is not
+     *                 required
+     */
+    PixelManager(Tile region, double... interval) {
+        this(region.height(), region.width(), interval);
+        firstRow = region.y();
+        firstCol = region.x();
+    }
+
     /**
      * Function for thread-safe manipulating of main follow up Pixel object - this
      * function is critical section for all the threads, and the pixel manager data
@@ -81,12 +97,12 @@ class PixelManager {
 
             ++cCol;
             if (cCol < maxCols)
-                return new Pixel(cRow, cCol);
+                return new Pixel(firstCol + cCol, firstRow + cRow);
 
             cCol = 0;
             ++cRow;
             if (cRow < maxRows)
-                return new Pixel(cRow, cCol);
+                return new Pixel(firstCol + cCol, firstRow + cRow);
         }
         return null;
     }
@@ -0,0 +1,91 @@
+package renderer;
+
+import java.util.Arrays;
+
+import primitives.Ray;
+
+/**
+ * Queue of rays of a wavefront (see {@link WavefrontRayTracer}) - the rays of
+ * a stage with their per ray state in parallel arrays: the sample the ray
+ * contributes to, its remaining depth, its random key and its attenuation
+ * along the ray tree (by color components). The arrays grow on demand.<br/>
+ * Each queue is expected to be used by a single thread.
+ * @author Eitan Lafair
+ */
+final class RayQueue {
+   /** The rays */
+   Ray[]    rays;
+   /** The index of the sample each ray contributes to */
+   int[]    targets;
+   /** The remaining depth of each ray */
+   int[]    levels;
+   /** The random key of each ray */
+   long[]   seeds;
+   /** The red attenuation of each ray */
+   double[] kr;
+   /** The green attenuation of each ray */
+   double[] kg;
+   /** The blue attenuation of each ray */
+   double[] kb;
+   /** Amount of rays */
+   int      size;
+
+   /**
+    * Constructs an empty queue
+    * @param capacity the initial capacity
+    */
+   RayQueue(int capacity) {
+      capacity = Math.max(1, capacity);
+      rays     = new Ray[capacity];
+      targets  = new int[capacity];
+      levels   = new int[capacity];
+      seeds    = new long[capacity];
+      kr       = new double[capacity];
+      kg       = new double[capacity];
+      kb       = new double[capacity];
+   }
+
+   /**
+    * Adds a ray
+    * @param ray    the ray
+    * @param target the index of the sample it contributes to
+    * @param level  the remaining depth
+    * @param seed   the random key
+    * @param r      the red attenuation
+    * @param g      the green attenuation
+    * @param b      the blue attenuation
+    */
+   void add(Ray ray, int target, int level, long seed, double r, double g, double b) {
+      if (size == rays.length) grow();
+      rays[size]    = ray;
+      targets[size] = target;
+      levels[size]  = level;
+      seeds[size]   = seed;
+      kr[size]      = r;
+      kg[size]      = g;
+      kb[size]      = b;
+      size++;
+   }
+
+   /**
+    * Removes all the rays, releasing them
+    */
+   void clear() {
+      Arrays.fill(rays, 0, size, null);
+      size = 0;
+   }
+
+   /**
+    * Doubles the capacity
+    */
+   private void grow() {
+      int capacity = rays.length * 2;
+      rays    = Arrays.copyOf(rays, capacity);
+      targets = Arrays.copyOf(targets, capacity);
+      levels  = Arrays.copyOf(levels, capacity);
+      seeds   = Arrays.copyOf(seeds, capacity);
+      kr      = Arrays.copyOf(kr, capacity);
+      kg      = Arrays.copyOf(kg, capacity);
+      kb      = Arrays.copyOf(kb, capacity);
+   }
+}
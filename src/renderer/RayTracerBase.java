@@ -4,11 +4,14 @@ import primitives.Color;
 import primitives.Ray;
 import scene.Scene;
 
+import java.io.Serializable;
+
 /**
  * A base class for ray tracers.
  * @author  Eitan Lafair
  */
-public abstract class RayTracerBase {
+public abstract class RayTracerBase implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * The 3D scene to render
@@ -30,4 +33,30 @@ public abstract class RayTracerBase {
      * @return the color seen by the ray
      */
     public abstract Color traceRay(Ray ray);
+
+    /**
+     * Traces a ray of a sample with a random key, so that any stochastic effect
+     * of the tracer draws its random numbers by the key (see
+     * {@link primitives.CounterRng}) and the result does not depend on the
+     * rendering thread. Tracers without stochastic effects ignore the key.
+     * @param ray  the ray to trace
+     * @param seed the random key of the sample
+     * @return the color seen by the ray
+     */
+    public Color traceRay(Ray ray, long seed) {
+        return traceRay(ray);
+    }
+
+    /**
+     * Traces a ray of a sample and records its first hit. Tracers which do not
+     * report hits record a miss.
+     * @param ray  the ray to trace
+     * @param seed the random key of the sample
+     * @param hit  receives the first hit of the ray
+     * @return the color seen by the ray
+     */
+    public Color traceRay(Ray ray, long seed, HitRecord hit) {
+        hit.clear();
+        return traceRay(ray, seed);
+    }
 }
@@ -7,5 +7,13 @@ public enum RayTracerType {
    /** Simple (basic) ray tracer */
    SIMPLE,
    /** Ray tracer using regular grid */
-   GRID
+   GRID,
+   /**
+    * Wavefront ray tracer - traces the rays of a tile stage by stage. It does not
+    * support output variables and adaptive super sampling (rendering with them
+    * throws IllegalStateException); the variance sampling, edge sampling, light
+    * resampling, checkpointed and progressive renders trace ray by ray, as the
+    * simple ray tracer
+    */
+   WAVEFRONT
 }
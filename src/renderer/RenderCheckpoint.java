@@ -0,0 +1,282 @@
+package renderer;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checkpoint of a long render. The render region is divided into tiles and the
+ * checkpoint follows the completion of each tile. The completed tiles (or, in
+ * progressive rendering, the whole accumulation buffer with the amount of
+ * completed passes) are persisted into a compact (gzip compressed) checkpoint
+ * file by a background writer thread, so that a crashed render may be resumed
+ * without re-rendering the completed tiles.<br/>
+ * The file is written atomically - into a temporary file that is then renamed
+ * over the checkpoint file - so a crash while writing never corrupts the last
+ * checkpoint. The header of the file holds a fingerprint of the scene, the
+ * camera and the sampling settings, so a checkpoint is restored only into the
+ * same render, and the file is deleted when the render completes.
+ *
+ * @author Eitan Lafair
+ */
+final class RenderCheckpoint {
+    /**
+     * Directory path for the checkpoint file - relative to the user directory
+     * (the directory of the generated images)
+     */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+    /** Checkpoint file identifier */
+    private static final int MAGIC = 0x52434B50; // "RCKP"
+    /** Checkpoint file format version */
+    private static final int VERSION = 2;
+
+    /** The checkpoint file */
+    private final Path file;
+    /** The image resolution */
+    private final int nX, nY;
+    /** The rendered region */
+    private final Tile region;
+    /** Tile edge size */
+    private final int tileSize;
+    /** Fingerprint of the scene, camera and sampling settings, 0 if unknown */
+    private final long fingerprint;
+    /** The tiles of the region, row by row */
+    private final List<Tile> tiles;
+    /** Amount of tiles in a row of tiles */
+    private final int tilesPerRow;
+    /** Amount of pixels not rendered yet in each tile (0 - the tile is completed) */
+    private final AtomicIntegerArray remaining;
+    /** Amount of completed progressive passes, 0 for a regular render */
+    private volatile int passes = 0;
+    /** Background writer of the checkpoint file */
+    private ScheduledExecutorService writer;
+    /** Failure of the background writer, if any */
+    private volatile IOException failure = null;
+
+    /**
+     * Constructs an empty checkpoint of a render
+     *
+     * @param name     the checkpoint file name (in the images directory)
+     * @param nX       horizontal resolution of the image
+     * @param nY       vertical resolution of the image
+     * @param region   the rendered region
+     * @param tileSize    tile edge size
+     * @param fingerprint fingerprint of the scene, camera and sampling settings,
+     *                    0 if unknown - such a checkpoint is never restored
+     */
+    RenderCheckpoint(String name, int nX, int nY, Tile region, int tileSize, long fingerprint) {
+        this.file = Path.of(FOLDER_PATH, name + ".ckpt");
+        this.nX = nX;
+        this.nY = nY;
+        this.region = region;
+        this.tileSize = tileSize;
+        this.fingerprint = fingerprint;
+        tiles = region.split(tileSize);
+        tilesPerRow = (region.width() + tileSize - 1) / tileSize;
+        remaining = new AtomicIntegerArray(tiles.size());
+        for (int t = 0; t < tiles.size(); ++t) remaining.set(t, tiles.get(t).size());
+    }
+
+    /**
+     * Index of the tile of a pixel
+     *
+     * @param x pixel column
+     * @param y pixel row
+     * @return the tile index
+     */
+    private int tileOf(int x, int y) {
+        return (y - region.y()) / tileSize * tilesPerRow + (x - region.x()) / tileSize;
+    }
+
+    /**
+     * Checks whether the tile of a pixel is completed
+     *
+     * @param x pixel column
+     * @param y pixel row
+     * @return true if the tile of the pixel is completed
+     */
+    boolean isDone(int x, int y) {
+        return remaining.get(tileOf(x, y)) == 0;
+    }
+
+    /**
+     * Marks a pixel as rendered. Must be called after the pixel is stored in the
+     * accumulation buffer, the tile is completed with its last pixel.
+     *
+     * @param x pixel column
+     * @param y pixel row
+     */
+    void pixelDone(int x, int y) {
+        remaining.decrementAndGet(tileOf(x, y));
+    }
+
+    /**
+     * Amount of completed progressive passes in the restored checkpoint
+     *
+     * @return the amount of passes, 0 for a regular render
+     */
+    int passes() {
+        return passes;
+    }
+
+    /**
+     * Restores the checkpoint file, if it exists and belongs to a render of the
+     * same resolution, region, tile size, mode and fingerprint, into an
+     * accumulation buffer.
+     * The restored tiles are marked as completed.
+     *
+     * @param buffer      the accumulation buffer to restore into
+     * @param progressive whether the render is progressive
+     * @return true if the checkpoint was restored
+     */
+    boolean restore(AccumulationBuffer buffer, boolean progressive) {
+        if (fingerprint == 0 || !Files.exists(file)) return false;
+        try (var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readInt() != nX || in.readInt() != nY
+                    || !new Tile(in.readInt(), in.readInt(), in.readInt(), in.readInt()).equals(region)
+                    || in.readInt() != tileSize || in.readLong() != fingerprint)
+                return false; // A checkpoint of another render
+            int restoredPasses = in.readInt();
+            if (progressive != restoredPasses > 0) return false;
+
+            // Read into a scratch buffer - a truncated or corrupt file leaves the buffer untouched
+            byte[] done = new byte[(tiles.size() + 7) / 8];
+            in.readFully(done);
+            AccumulationBuffer scratch = new AccumulationBuffer(nX, nY);
+            for (int t = 0; t < tiles.size(); ++t)
+                if ((done[t / 8] & (1 << (t % 8))) != 0) scratch.read(in, tiles.get(t));
+            if (in.read() != -1) return false; // Trailing data (and the compressed stream checksum is verified)
+
+            for (int t = 0; t < tiles.size(); ++t)
+                if ((done[t / 8] & (1 << (t % 8))) != 0) {
+                    buffer.copy(scratch, tiles.get(t));
+                    remaining.set(t, 0);
+                }
+            passes = restoredPasses;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false; // Unreadable checkpoint - render from scratch
+        }
+    }
+
+    /**
+     * Starts persisting the completed tiles of a regular render periodically by
+     * the background writer thread
+     *
+     * @param buffer   the accumulation buffer of the render
+     * @param interval the interval between checkpoints, in seconds
+     */
+    void start(AccumulationBuffer buffer, double interval) {
+        long millis = Math.max(1L, (long) (interval * 1000));
+        writer().scheduleWithFixedDelay(() -> save(buffer, 0), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Persists a snapshot of the accumulation buffer of a progressive render after
+     * a completed pass, by the background writer thread
+     *
+     * @param snapshot  a copy of the accumulation buffer after the pass
+     * @param passCount the amount of completed passes
+     */
+    void savePass(AccumulationBuffer snapshot, int passCount) {
+        for (int t = 0; t < tiles.size(); ++t) remaining.set(t, 0); // All the tiles are in the snapshot
+        writer().execute(() -> save(snapshot, passCount));
+    }
+
+    /**
+     * Stops the periodic checkpoints and waits until all the pending writes are
+     * done. The checkpoint file of a completed render is deleted, an interrupted
+     * regular render writes its final checkpoint.
+     *
+     * @param  buffer                the accumulation buffer of a regular render,
+     *                               null for a progressive render
+     * @param  completed             whether the render is completed
+     * @throws UncheckedIOException if writing a checkpoint failed
+     */
+    void finish(AccumulationBuffer buffer, boolean completed) {
+        if (writer != null) {
+            if (buffer != null && !completed) writer.execute(() -> save(buffer, 0));
+            writer.shutdown(); // Cancels the periodic checkpoints, keeps the final one
+            try {
+                writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        if (completed) {
+            try {
+                Files.deleteIfExists(file); // Nothing to resume
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null)
+            throw new UncheckedIOException("Failed writing render checkpoint " + file, failure);
+    }
+
+    /**
+     * The background writer thread (daemon - it never keeps the JVM alive)
+     */
+    private ScheduledExecutorService writer() {
+        if (writer == null) {
+            var executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+            writer = executor;
+        }
+        return writer;
+    }
+
+    /**
+     * Writes the checkpoint file - into a temporary file which is then atomically
+     * renamed over the checkpoint file
+     *
+     * @param buffer    the accumulation buffer
+     * @param passCount the amount of completed progressive passes, 0 for a regular render
+     */
+    private void save(AccumulationBuffer buffer, int passCount) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        // Tiles completed later than this point are left to the next checkpoint
+        byte[] done = new byte[(tiles.size() + 7) / 8];
+        for (int t = 0; t < tiles.size(); ++t)
+            if (remaining.get(t) == 0) done[t / 8] |= (byte) (1 << (t % 8));
+
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(nX);
+                out.writeInt(nY);
+                out.writeInt(region.x());
+                out.writeInt(region.y());
+                out.writeInt(region.width());
+                out.writeInt(region.height());
+                out.writeInt(tileSize);
+                out.writeLong(fingerprint);
+                out.writeInt(passCount);
+                out.write(done);
+                for (int t = 0; t < tiles.size(); ++t)
+                    if ((done[t / 8] & (1 << (t % 8))) != 0) buffer.write(out, tiles.get(t));
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) { // File system without atomic rename
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            failure = e; // Reported when the render finishes
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package renderer;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinator of distributed rendering over several worker processes on the
+ * local machine. The coordinator splits the render region of a camera (the
+ * crop window or the full frame) into tiles, starts {@link RenderWorker} JVMs
+ * which connect back over loopback sockets, sends them the serialized camera
+ * and hands out tiles on request. The returned tile pixels are assembled into
+ * the camera image. When a worker dies, its tile in progress is given to
+ * another worker. Per-worker throughput is available after the render.
+ *
+ * @author Eitan Lafair
+ */
+public class RenderCoordinator {
+    /** Default tile edge size in pixels */
+    private static final int DEFAULT_TILE_SIZE = 32;
+    /** Default time a worker may take to render a tile, in milliseconds */
+    private static final int DEFAULT_TILE_TIMEOUT = 600_000;
+    /** Time to wait for the workers to connect, in milliseconds */
+    private static final int CONNECT_TIMEOUT = 60_000;
+    /** Interval of checking for render completion or dead workers while waiting, in milliseconds */
+    private static final int POLL_INTERVAL = 50;
+
+    /** Camera (with the scene) to render */
+    private final Camera camera;
+    /** Amount of worker processes */
+    private final int workersCount;
+    /** Tile edge size in pixels */
+    private int tileSize = DEFAULT_TILE_SIZE;
+    /** Time a worker may take to render a tile, in milliseconds */
+    private int tileTimeout = DEFAULT_TILE_TIMEOUT;
+    /** Additional JVM options of the worker processes (e.g. heap size) */
+    private final List<String> jvmOptions = new LinkedList<>();
+    /** Class path of the worker processes, null to derive it from the current JVM */
+    private String classPath = null;
+    /** Main class of the worker processes */
+    private Class<?> workerClass = RenderWorker.class;
+    /** Statistics of the workers of the last render */
+    private List<WorkerStats> workerStats = List.of();
+
+    /** Tiles waiting for a worker */
+    private BlockingQueue<Tile> pending;
+    /** Amount of tiles not rendered yet (pending or in progress) */
+    private AtomicInteger remaining;
+
+    /**
+     * Throughput statistics of a worker process
+     *
+     * @param worker the worker id
+     * @param tiles  amount of tiles rendered by the worker
+     * @param pixels amount of pixels rendered by the worker
+     * @param millis time the worker was connected, in milliseconds
+     * @param failed whether the worker died before the render was completed
+     */
+    public record WorkerStats(int worker, int tiles, long pixels, long millis, boolean failed) {
+        /**
+         * Rendering throughput of the worker
+         *
+         * @return pixels per second
+         */
+        public double pixelsPerSecond() {
+            return millis == 0 ? 0 : pixels * 1000d / millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("worker %d: %d tiles, %d pixels in %d ms (%.0f pixels/s)%s",
+                    worker, tiles, pixels, millis, pixelsPerSecond(), failed ? " - FAILED" : "");
+        }
+    }
+
+    /**
+     * Constructs a coordinator for rendering the image of a camera
+     *
+     * @param camera  the camera to render, its image receives the result
+     * @param workers amount of worker processes to start
+     */
+    public RenderCoordinator(Camera camera, int workers) {
+        if (workers <= 0) throw new IllegalArgumentException("Amount of workers must be positive");
+        this.camera = camera;
+        this.workersCount = workers;
+    }
+
+    /**
+     * Sets the edge size of the tiles handed to the workers
+     *
+     * @param tileSize tile edge size in pixels
+     * @return the coordinator itself
+     */
+    public RenderCoordinator setTileSize(int tileSize) {
+        if (tileSize <= 0) throw new IllegalArgumentException("Tile size must be positive");
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * Sets the time a worker may take to render a tile (or to answer at all). A
+     * worker which does not return its tile in time is considered dead - it is
+     * disconnected and its tile is given to another worker
+     *
+     * @param seconds the timeout of a tile, in seconds
+     * @return the coordinator itself
+     */
+    public RenderCoordinator setTileTimeout(double seconds) {
+        if (seconds <= 0) throw new IllegalArgumentException("Tile timeout must be positive");
+        this.tileTimeout = (int) Math.min(Math.ceil(seconds * 1000), Integer.MAX_VALUE);
+        return this;
+    }
+
+    /**
+     * Sets additional JVM options of the worker processes
+     *
+     * @param options the JVM options, e.g. "-Xmx2g"
+     * @return the coordinator itself
+     */
+    public RenderCoordinator setJvmOptions(String... options) {
+        jvmOptions.clear();
+        Collections.addAll(jvmOptions, options);
+        return this;
+    }
+
+    /**
+     * Sets the class path of the worker processes. By default it is the location
+     * of the renderer classes, followed by the class path of the class loaders
+     * of the current thread and of the current JVM - it must be set when the
+     * classes of the scene are loaded from elsewhere
+     *
+     * @param classPath the class path of the workers
+     * @return the coordinator itself
+     */
+    public RenderCoordinator setClassPath(String classPath) {
+        this.classPath = classPath;
+        return this;
+    }
+
+    /**
+     * Sets the main class of the worker processes, e.g. a worker which injects
+     * faults for testing. The class must run {@link RenderWorker#run} with its
+     * arguments
+     *
+     * @param workerClass the main class of the workers
+     * @return the coordinator itself
+     */
+    RenderCoordinator setWorkerClass(Class<?> workerClass) {
+        this.workerClass = workerClass;
+        return this;
+    }
+
+    /**
+     * Returns the statistics of the workers of the last render
+     *
+     * @return statistics per worker, ordered by worker id
+     */
+    public List<WorkerStats> getWorkerStats() {
+        return workerStats;
+    }
+
+    /**
+     * Renders the image of the camera by the worker processes
+     *
+     * @return the camera, with the rendered image
+     * @throws IllegalStateException if the workers could not be started or all of
+     *                               them died before the render was completed, with
+     *                               the error output of the workers, or if a
+     *                               rendering mode of the camera is not supported
+     *                               tile by tile
+     */
+    public Camera render() {
+        camera.checkTileRenderModes(); // Before any worker is started
+        pending = new LinkedBlockingQueue<>(camera.renderRegion().split(tileSize));
+        remaining = new AtomicInteger(pending.size());
+
+        List<Process> processes = new LinkedList<>();
+        List<File> errorLogs = new LinkedList<>();
+        List<WorkerHandler> handlers = new LinkedList<>();
+        try {
+            try (ServerSocket server = new ServerSocket(0, workersCount, InetAddress.getLoopbackAddress())) {
+                server.setSoTimeout(POLL_INTERVAL);
+                String workerClassPath = classPath != null ? classPath : defaultClassPath(workerClass);
+                for (int id = 0; id < workersCount; ++id) {
+                    File errorLog = File.createTempFile("render-worker-" + id + "-", ".log");
+                    errorLogs.add(errorLog);
+                    processes.add(startWorker(id, server.getLocalPort(), workerClassPath, errorLog));
+                }
+
+                long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+                while (handlers.size() < workersCount && remaining.get() > 0) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (SocketTimeoutException e) {
+                        // Render with the workers that did connect, once no other can connect
+                        if (System.currentTimeMillis() > deadline || !connecting(processes, handlers)) break;
+                        continue;
+                    }
+                    var handler = new WorkerHandler(socket);
+                    handlers.add(handler);
+                    handler.start();
+                }
+                if (handlers.isEmpty())
+                    throw new IllegalStateException("No render worker connected to the coordinator"
+                            + workerErrors(errorLogs));
+
+                for (var handler : handlers) handler.join();
+            } catch (IOException e) {
+                throw new IllegalStateException("Distributed rendering I/O error", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Distributed rendering interrupted", e);
+            } finally {
+                for (var process : processes) process.destroy(); // Finished workers have exited already
+            }
+
+            workerStats = handlers.stream()
+                    .map(WorkerHandler::stats)
+                    .sorted(Comparator.comparingInt(WorkerStats::worker))
+                    .toList();
+            if (remaining.get() > 0)
+                throw new IllegalStateException("All render workers failed, " + remaining.get() + " tiles left"
+                        + workerErrors(errorLogs));
+            return camera;
+        } finally {
+            for (var errorLog : errorLogs) errorLog.delete();
+        }
+    }
+
+    /**
+     * Checks whether workers which are not connected yet may still connect -
+     * whether more worker processes are alive than connected workers
+     *
+     * @param processes the worker processes
+     * @param handlers  the handlers of the connected workers
+     * @return true if a worker may still connect
+     */
+    private static boolean connecting(List<Process> processes, List<WorkerHandler> handlers) {
+        return processes.stream().filter(Process::isAlive).count() > handlers.stream().filter(Thread::isAlive).count();
+    }
+
+    /**
+     * Reads the error output of the workers, for the message of a failed render
+     *
+     * @param errorLogs the files of the error output of the workers
+     * @return the error output of each worker which wrote any, on separate lines
+     */
+    private static String workerErrors(List<File> errorLogs) {
+        StringBuilder errors = new StringBuilder();
+        int id = 0;
+        for (var errorLog : errorLogs) {
+            try {
+                String error = Files.readString(errorLog.toPath()).strip();
+                if (!error.isEmpty()) errors.append("\nworker ").append(id).append(": ").append(error);
+            } catch (IOException e) {
+                // The output of the worker is lost, the render failure is reported anyway
+            }
+            ++id;
+        }
+        return errors.toString();
+    }
+
+    /**
+     * Derives the class path of the worker processes from the current JVM - the
+     * locations of the renderer classes and of the worker class, the locations of the class loaders of the
+     * current thread (e.g. a test launcher given its own class path) and the
+     * class path of the JVM
+     *
+     * @param workerClass the main class of the workers
+     * @return the class path
+     */
+    private static String defaultClassPath(Class<?> workerClass) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> type : List.of(RenderWorker.class, workerClass)) {
+            CodeSource source = type.getProtectionDomain().getCodeSource();
+            if (source != null) addLocation(entries, source.getLocation());
+        }
+        for (var loader = Thread.currentThread().getContextClassLoader(); loader != null; loader = loader.getParent())
+            if (loader instanceof URLClassLoader urlLoader)
+                for (URL url : urlLoader.getURLs()) addLocation(entries, url);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+            if (!entry.isEmpty()) entries.add(entry);
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Adds a local class location to a class path
+     *
+     * @param entries  the class path entries
+     * @param location the location of classes, ignored unless it is a local file
+     */
+    private static void addLocation(Set<String> entries, URL location) {
+        if (location == null || !"file".equals(location.getProtocol())) return;
+        try {
+            entries.add(Path.of(location.toURI()).toString());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            // Not a class path entry
+        }
+    }
+
+    /**
+     * Starts a worker process
+     *
+     * @param id        the worker id
+     * @param port      the port of the coordinator
+     * @param classPath the class path of the worker
+     * @param errorLog  the file receiving the error output of the worker
+     * @return the worker process
+     * @throws IOException if the process could not be started
+     */
+    private Process startWorker(int id, int port, String classPath, File errorLog) throws IOException {
+        List<String> command = new LinkedList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        Collections.addAll(command, "-cp", classPath,
+                workerClass.getName(), InetAddress.getLoopbackAddress().getHostAddress(),
+                Integer.toString(port), Integer.toString(id));
+        return new ProcessBuilder(command).inheritIO().redirectError(errorLog).start();
+    }
+
+    /**
+     * Takes the next tile to render, waiting while tiles of other workers are in
+     * progress since they may be returned to the queue if their worker dies
+     *
+     * @return the next tile, or null if all the tiles are rendered
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private Tile nextTile() throws InterruptedException {
+        while (remaining.get() > 0) {
+            Tile tile = pending.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (tile != null) return tile;
+        }
+        return null;
+    }
+
+    /**
+     * Thread serving a single worker connection
+     */
+    private class WorkerHandler extends Thread {
+        /** The connection to the worker */
+        private final Socket socket;
+        /** The worker id, as introduced by the worker */
+        private int worker = -1;
+        /** Amount of tiles rendered by the worker */
+        private int tiles = 0;
+        /** Amount of pixels rendered by the worker */
+        private long pixels = 0;
+        /** Time the worker was connected, in milliseconds */
+        private long millis = 0;
+        /** Whether the worker died */
+        private boolean failed = false;
+
+        /**
+         * Constructs a handler for a worker connection
+         *
+         * @param socket the connection to the worker
+         */
+        WorkerHandler(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Statistics of the worker, valid after the handler has finished
+         *
+         * @return the worker statistics
+         */
+        WorkerStats stats() {
+            return new WorkerStats(worker, tiles, pixels, millis, failed);
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            Tile inProgress = null;
+            try (socket) {
+                socket.setSoTimeout(tileTimeout); // A stuck worker is handled as a dead one
+                var out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.flush();
+                var in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+                worker = in.readInt();
+                out.writeObject(camera); // The scene is sent once, with the camera
+                out.reset();
+
+                while ((inProgress = nextTile()) != null) {
+                    out.writeObject(inProgress);
+                    out.flush();
+                    camera.writeTile(inProgress, (float[]) in.readObject());
+                    ++tiles;
+                    pixels += inProgress.size();
+                    inProgress = null;
+                    remaining.decrementAndGet();
+                }
+                out.writeObject(null); // No more tiles - the worker exits
+                out.flush();
+            } catch (IOException | ClassNotFoundException | ClassCastException | InterruptedException e) {
+                failed = true;
+                if (inProgress != null) pending.add(inProgress); // Reassign the tile to another worker
+            }
+            millis = System.currentTimeMillis() - start;
+        }
+    }
+}
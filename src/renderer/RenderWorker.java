@@ -0,0 +1,68 @@
+package renderer;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.function.IntConsumer;
+
+/**
+ * Worker process of distributed rendering. The worker is started by a
+ * {@link RenderCoordinator} as a separate JVM, connects back to it over a local
+ * socket and receives the serialized camera (with its scene) once. Then it
+ * repeatedly receives a tile, renders it and streams back the tile pixels,
+ * until the coordinator sends no more tiles.
+ *
+ * @author Eitan Lafair
+ */
+public final class RenderWorker {
+    /** Don't let anyone instantiate this class. */
+    private RenderWorker() {
+    }
+
+    /**
+     * Worker process entry point
+     *
+     * @param args coordinator host, coordinator port and worker id
+     * @throws IOException            in case of communication failure
+     * @throws ClassNotFoundException in case of a protocol mismatch
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        run(args, tiles -> {
+        });
+    }
+
+    /**
+     * Runs a worker - connects to the coordinator and renders the tiles it
+     * sends until there are no more tiles
+     *
+     * @param args       coordinator host, coordinator port and worker id
+     * @param beforeTile called before rendering each tile with the amount of
+     *                   tiles rendered so far (e.g. for injecting faults in tests)
+     * @throws IOException            in case of communication failure
+     * @throws ClassNotFoundException in case of a protocol mismatch
+     */
+    static void run(String[] args, IntConsumer beforeTile) throws IOException, ClassNotFoundException {
+        if (args.length < 3)
+            throw new IllegalArgumentException("Usage: RenderWorker <host> <port> <worker id>");
+        int port = Integer.parseInt(args[1]);
+        int workerId = Integer.parseInt(args[2]);
+
+        try (Socket socket = new Socket(args[0], port)) {
+            var out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(workerId); // Introduce the worker to the coordinator
+            out.flush();
+            var in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            Camera camera = (Camera) in.readObject(); // The scene is received once, with the camera
+            camera.setDebugPrint(0); // The standard output is not used by the worker
+
+            int tiles = 0;
+            Tile tile;
+            while ((tile = (Tile) in.readObject()) != null) { // Null tile - no more work
+                beforeTile.accept(tiles++);
+                out.writeObject(camera.renderTile(tile));
+                out.flush();
+                out.reset(); // Pixel arrays are not referenced again
+            }
+        }
+    }
+}
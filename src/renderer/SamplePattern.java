@@ -0,0 +1,108 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed sample offsets of a pixel sampling pattern. The pattern of a
+ * {@link BlackBoard} depends only on its shape and density, not on the pixel,
+ * so it is computed once and shared (cached per shape and density) by all the
+ * pixels: a sample direction is the pixel direction plus the offsets scaled by
+ * the pixel size, with no per-sample points or blackboards.
+ *
+ * @author Eitan Lafair
+ */
+final class SamplePattern {
+    /** Cached patterns by shape and density */
+    private static final Map<Key, SamplePattern> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Cache key of a pattern
+     *
+     * @param samplesPerDim samples per axis
+     * @param shape         sampling shape
+     */
+    private record Key(int samplesPerDim, BlackBoard.Shape shape) {
+    }
+
+    /** Horizontal offset of each grid cell, as a fraction of the pixel width */
+    private final double[] u;
+    /** Vertical offset of each grid cell, as a fraction of the pixel height */
+    private final double[] v;
+    /** The grid cells inside the sampling shape, row by row */
+    private final int[] cells;
+
+    /**
+     * Computes the pattern of a blackboard - cell centers of a grid, clipped to
+     * the inscribed ellipse for {@link BlackBoard.Shape#CIRCLE}
+     *
+     * @param samplesPerDim samples per axis
+     * @param shape         sampling shape
+     */
+    private SamplePattern(int samplesPerDim, BlackBoard.Shape shape) {
+        int total = samplesPerDim * samplesPerDim;
+        u = new double[total];
+        v = new double[total];
+        int[] inside = new int[total];
+        int size = 0;
+        for (int cell = 0; cell < total; cell++) {
+            // Same cell numbering as BlackBoard#getSamplePoint
+            u[cell] = (cell / samplesPerDim + 0.5) / samplesPerDim - 0.5;
+            v[cell] = (cell % samplesPerDim + 0.5) / samplesPerDim - 0.5;
+            if (shape != BlackBoard.Shape.CIRCLE || u[cell] * u[cell] + v[cell] * v[cell] <= 0.25)
+                inside[size++] = cell;
+        }
+        cells = Arrays.copyOf(inside, size);
+    }
+
+    /**
+     * Returns the (shared) pattern of a shape and density
+     *
+     * @param samplesPerDim samples per axis
+     * @param shape         sampling shape
+     * @return the pattern
+     */
+    static SamplePattern of(int samplesPerDim, BlackBoard.Shape shape) {
+        return CACHE.computeIfAbsent(new Key(samplesPerDim, shape), k -> new SamplePattern(k.samplesPerDim, k.shape));
+    }
+
+    /**
+     * Amount of samples inside the shape
+     *
+     * @return the amount of samples
+     */
+    int size() {
+        return cells.length;
+    }
+
+    /**
+     * Grid cell of a sample
+     *
+     * @param sample the sample index, in [0, size)
+     * @return the cell index
+     */
+    int cell(int sample) {
+        return cells[sample];
+    }
+
+    /**
+     * Horizontal offset of a grid cell center
+     *
+     * @param cell the cell index
+     * @return the offset, as a fraction of the pixel width, in (-0.5, 0.5)
+     */
+    double u(int cell) {
+        return u[cell];
+    }
+
+    /**
+     * Vertical offset of a grid cell center
+     *
+     * @param cell the cell index
+     * @return the offset, as a fraction of the pixel height, in (-0.5, 0.5)
+     */
+    double v(int cell) {
+        return v[cell];
+    }
+}
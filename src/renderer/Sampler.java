@@ -0,0 +1,50 @@
+package renderer;
+
+import java.io.Serializable;
+import java.util.stream.IntStream;
+
+/**
+ * Strategy of distributing samples over a unit square area, e.g. anti-aliasing
+ * rays over a pixel (or, later, shadow rays over an area light or glossy rays
+ * over a cone section). Samples are given as offsets from the area center, as
+ * fractions of the area width and height. Randomized samplers decorrelate their
+ * patterns between areas by a random key (see {@link primitives.CounterRng}),
+ * so the same key always gives the same samples, regardless of the thread.
+ *
+ * @author Eitan Lafair
+ */
+public interface Sampler extends Serializable {
+    /**
+     * Amount of samples generated for a sampling density
+     *
+     * @param samplesPerDim samples per axis of the equivalent regular grid
+     * @return the amount of samples
+     */
+    default int sampleCount(int samplesPerDim) {
+        return samplesPerDim * samplesPerDim;
+    }
+
+    /**
+     * Generates the sample offsets of an area
+     *
+     * @param samplesPerDim samples per axis of the equivalent regular grid
+     * @param key           random key of the area
+     * @param uv            receives the offsets, interleaved: horizontal offset
+     *                      of sample k at {@code 2k} and vertical offset at
+     *                      {@code 2k+1}, each in [-0.5, 0.5). Its length must be
+     *                      at least twice the {@link #sampleCount(int)}
+     * @return the amount of generated samples
+     */
+    int generate(int samplesPerDim, long key, double[] uv);
+
+    /**
+     * Order of the samples for progressive rendering (one sample per pass), such
+     * that every prefix covers the area as evenly as possible
+     *
+     * @param samplesPerDim samples per axis of the equivalent regular grid
+     * @return the sample indexes in progressive order
+     */
+    default int[] progressiveOrder(int samplesPerDim) {
+        return IntStream.range(0, sampleCount(samplesPerDim)).toArray();
+    }
+}
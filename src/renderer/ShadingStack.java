@@ -0,0 +1,114 @@
+package renderer;
+
+import java.util.Arrays;
+
+import geometries.Intersectable.Intersection;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Ray;
+
+/**
+ * Work stack of the shading of a ray tree - the reflection and refraction
+ * rays of the global effects, with the state of each pending shading point,
+ * in parallel arrays which grow on demand and are reused by all the rays of a
+ * thread. An entry is a secondary ray with its attenuation and its remaining
+ * depth, and after it is traced - its hit, its local color and the global
+ * color accumulated so far from its children. The stack is evaluated depth
+ * first, so the children of an entry are pushed and completed in the order of
+ * the recursive evaluation, and their colors are accumulated in that order.<br/>
+ * Each stack is expected to be used by a single thread.
+ * @author Eitan Lafair
+ */
+final class ShadingStack {
+   /** Stage of an entry whose ray is not traced yet */
+   static final byte TRACE      = 0;
+   /** Stage of an entry whose hit is not shaded yet */
+   static final byte SHADE      = 1;
+   /** Stage of an entry whose global effects are not started yet */
+   static final byte GLOBALS    = 2;
+   /** Stage of an entry whose reflection ray is not pushed yet */
+   static final byte REFLECTION = 3;
+   /** Stage of an entry whose refraction ray is not pushed yet */
+   static final byte REFRACTION = 4;
+   /** Stage of an entry whose children are all completed */
+   static final byte DONE       = 5;
+
+   /** Initial capacity - the entries of a ray tree of the default depth */
+   private static final int CAPACITY = 16;
+
+   /** The secondary ray of each entry, null for a root */
+   Ray[]          rays          = new Ray[CAPACITY];
+   /** The hit of each entry, once traced */
+   Intersection[] intersections = new Intersection[CAPACITY];
+   /** The remaining depth of each entry */
+   int[]          levels        = new int[CAPACITY];
+   /** The attenuation of each entry along the tree */
+   Double3[]      ks            = new Double3[CAPACITY];
+   /** The coefficient of the effect of each entry on its parent, null for a root */
+   Double3[]      effects       = new Double3[CAPACITY];
+   /** The random key of each entry */
+   long[]         seeds         = new long[CAPACITY];
+   /** The local color of the hit of each entry */
+   Color[]        locals        = new Color[CAPACITY];
+   /** The global color accumulated for each entry */
+   Color[]        colors        = new Color[CAPACITY];
+   /** The stage of each entry */
+   byte[]         stages        = new byte[CAPACITY];
+   /** Amount of entries */
+   int            size;
+
+   /**
+    * Pushes an entry
+    * @param  ray          the secondary ray, null for a root
+    * @param  intersection the hit of a root, null for a secondary ray
+    * @param  level        the remaining depth
+    * @param  k            the attenuation along the tree
+    * @param  effect       the coefficient of the effect on the parent, null for a root
+    * @param  seed         the random key
+    * @param  stage        the first stage
+    * @return              the index of the entry
+    */
+   int push(Ray ray, Intersection intersection, int level, Double3 k, Double3 effect, long seed, byte stage) {
+      if (size == stages.length) grow();
+      int top = size++;
+      rays[top]          = ray;
+      intersections[top] = intersection;
+      levels[top]        = level;
+      ks[top]            = k;
+      effects[top]       = effect;
+      seeds[top]         = seed;
+      locals[top]        = Color.BLACK;
+      colors[top]        = Color.BLACK;
+      stages[top]        = stage;
+      return top;
+   }
+
+   /**
+    * Pops the top entry, releasing its references
+    */
+   void pop() {
+      int top = --size;
+      rays[top]          = null;
+      intersections[top] = null;
+      ks[top]            = null;
+      effects[top]       = null;
+      locals[top]        = null;
+      colors[top]        = null;
+   }
+
+   /**
+    * Doubles the capacity
+    */
+   private void grow() {
+      int capacity = stages.length * 2;
+      rays          = Arrays.copyOf(rays, capacity);
+      intersections = Arrays.copyOf(intersections, capacity);
+      levels        = Arrays.copyOf(levels, capacity);
+      ks            = Arrays.copyOf(ks, capacity);
+      effects       = Arrays.copyOf(effects, capacity);
+      seeds         = Arrays.copyOf(seeds, capacity);
+      locals        = Arrays.copyOf(locals, capacity);
+      colors        = Arrays.copyOf(colors, capacity);
+      stages        = Arrays.copyOf(stages, capacity);
+   }
+}
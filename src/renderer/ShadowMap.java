@@ -0,0 +1,141 @@
+package renderer;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import geometries.Geometries;
+import geometries.Intersectable.Intersection;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.SpotLight;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Shadow map of a directional or a spot light - the distance from the light to
+ * the first opaque geometry along the ray of each texel, rendered once, rows
+ * in parallel. A directional light casts parallel rays over a square area
+ * across its direction (orthographic projection), a spot light casts rays from
+ * its position over a square frustum around its direction (perspective
+ * projection). The visibility of a point is filtered by percentage closer
+ * filtering over the 3x3 texels around its projection. Transparent geometries
+ * cast no shadow in the map.
+ * @author Eitan Lafair
+ */
+final class ShadowMap {
+   /** Distance of the ray heads of a directional light behind the covered area */
+   private static final double FAR      = 1e5;
+   /** Depth bias, in texel sizes at the point, against self shadowing */
+   private static final double BIAS     = 1.5;
+   /** Radius of the percentage closer filter, in texels */
+   private static final int    PCF      = 1;
+
+   /** Amount of texels along each axis */
+   private final int      n;
+   /** Depth of each texel, row by row - infinity where no geometry is hit */
+   private final double[] depths;
+   /** Whether the projection is orthographic (a directional light) */
+   private final boolean  orthographic;
+   /** Origin - the center of the area (orthographic) or the light position */
+   private final Point    origin;
+   /** Direction of the light */
+   private final Vector   axis;
+   /** Horizontal axis of the map */
+   private final Vector   right;
+   /** Vertical axis of the map */
+   private final Vector   up;
+   /** Half of the area size (orthographic) or tangent of the frustum half angle */
+   private final double   extent;
+
+   /**
+    * Renders the shadow map of a light
+    * @param light      the light - a directional light or a spot light
+    * @param geometries the geometries of the scene
+    * @param kMin       transmission coefficient below which a geometry is opaque
+    */
+   ShadowMap(LightSource light, Geometries geometries, double kMin) {
+      n = light.getShadowMapResolution();
+      if (light instanceof DirectionalLight directional) {
+         orthographic = true;
+         origin       = directional.getShadowMapCenter();
+         axis         = directional.getL(origin);
+         extent       = directional.getShadowMapSize() / 2;
+      } else if (light instanceof SpotLight spot) {
+         orthographic = false;
+         origin       = spot.getPosition();
+         axis         = spot.getDirection();
+         extent       = Math.tan(Math.toRadians(spot.getShadowMapAngle()));
+      } else
+         throw new IllegalArgumentException("Shadow maps are supported for directional and spot lights only");
+      right = axis.crossProduct(Math.abs(axis.dotProduct(Vector.AXIS_X)) < 0.9 ? Vector.AXIS_X : Vector.AXIS_Y)
+            .normalize();
+      up    = right.crossProduct(axis);
+
+      depths = new double[n * n];
+      IntStream.range(0, n).parallel().forEach(b -> {
+         for (int a = 0; a < n; a++)
+            depths[b * n + a] = depth(geometries, texelRay(a, b), kMin);
+      });
+   }
+
+   /**
+    * The ray of the center of a texel
+    */
+   private Ray texelRay(int a, int b) {
+      double x = ((a + 0.5) / n * 2 - 1) * extent;
+      double y = ((b + 0.5) / n * 2 - 1) * extent;
+      if (orthographic) return new Ray(origin.add(axis.scale(-FAR).addScaled(right, x, up, y)), axis);
+      return new Ray(origin, axis.addScaled(right, x, up, y));
+   }
+
+   /**
+    * Distance from the ray head to the closest opaque geometry
+    */
+   private static double depth(Geometries geometries, Ray ray, double kMin) {
+      List<Intersection> intersections = geometries.calculateIntersections(ray);
+      double depth = Double.POSITIVE_INFINITY;
+      if (intersections == null) return depth;
+      for (Intersection intersection : intersections)
+         if (intersection.material.kT.lowerThan(kMin))
+            depth = Math.min(depth, intersection.point.distance(ray.head));
+      return depth;
+   }
+
+   /**
+    * Visibility of the light from a point, filtered over the texels around the
+    * projection of the point
+    * @param  point the point
+    * @return       the fraction of the filter texels which do not occlude the
+    *               point, or -1 if the point is outside the map
+    */
+   double visibility(Point point) {
+      if (point.equals(origin)) return -1;
+      Vector d = point.subtract(origin);
+      double z = d.dotProduct(axis);
+      double x, y, depth, texel;
+      if (orthographic) {
+         x     = d.dotProduct(right) / extent;
+         y     = d.dotProduct(up) / extent;
+         depth = z + FAR;
+         texel = 2 * extent / n;
+      } else {
+         if (z <= 0) return -1; // Behind the light
+         x     = d.dotProduct(right) / (z * extent);
+         y     = d.dotProduct(up) / (z * extent);
+         depth = d.length();
+         texel = 2 * extent * depth / n;
+      }
+      if (x < -1 || x >= 1 || y < -1 || y >= 1) return -1;
+
+      int a = (int) ((x + 1) / 2 * n), b = (int) ((y + 1) / 2 * n);
+      double bias = BIAS * texel + SimpleRayTracer.DELTA;
+      int lit = 0, count = 0;
+      for (int j = Math.max(0, b - PCF); j <= Math.min(n - 1, b + PCF); j++)
+         for (int i = Math.max(0, a - PCF); i <= Math.min(n - 1, a + PCF); i++) {
+            count++;
+            if (depth <= depths[j * n + i] + bias) lit++;
+         }
+      return (double) lit / count;
+   }
+}
@@ -1,11 +1,19 @@
 package renderer;
 
+import geometries.Geometries;
+import geometries.Geometry;
 import geometries.Intersectable.Intersection;
+import lighting.AreaLight;
+import lighting.LightIndex;
 import lighting.LightSource;
+import lighting.LightTree;
 import primitives.*;
 import scene.Scene;
 
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
@@ -15,18 +23,81 @@ import static primitives.Util.isZero;
  * @author: Eitan Lafair
  */
 public class SimpleRayTracer extends RayTracerBase {
+    private static final long serialVersionUID = 1L;
 
     /** Small value used to shift ray start point to avoid self-intersections */
     public static final double DELTA = 0.1;
 
     /** Max recursion depth for color calculation */
-    private static final int MAX_CALC_COLOR_LEVEL = 10;
+    static final int MAX_CALC_COLOR_LEVEL = 10;
 
     /** Minimum coefficient to stop recursion */
-    private static final double MIN_CALC_COLOR_K = 0.00001;
+    static final double MIN_CALC_COLOR_K = 0.00001;
 
     /** Starting coefficient for full light */
-    private static final Double3 INITIAL_K = Double3.ONE;
+    static final Double3 INITIAL_K = Double3.ONE;
+
+    /**
+     * Opaque geometry which blocked the last shadow ray to a light
+     *
+     * @param geometries the scene geometries the occluder belongs to
+     * @param geometry   the occluder
+     */
+    private record Occluder(Geometries geometries, Geometry geometry) {}
+
+    /**
+     * Shadow cache - the last occluder of each light, per thread. Neighbor shading
+     * points usually have their shadow rays blocked by the same geometry, so it is
+     * tested first, before the whole scene.
+     */
+    private static final ThreadLocal<Map<LightSource, Occluder>> LAST_OCCLUDERS =
+            ThreadLocal.withInitial(WeakHashMap::new);
+
+    /** Work stack of the reflection and refraction rays, per thread */
+    private static final ThreadLocal<ShadingStack> SHADING_STACKS = ThreadLocal.withInitial(ShadingStack::new);
+
+    /** Spatial index of the scene lights, built on first use (and rebuilt when lights are added) */
+    private transient volatile LightIndex lightIndex;
+
+    /** Light tree of the scene lights for light sampling, built on first use */
+    private transient volatile LightTree lightTree;
+
+    /** Shadow maps of the lights in shadow map mode, rendered on first use */
+    private transient volatile Map<LightSource, ShadowMap> shadowMaps;
+
+    /** Amount of lights sampled per shading point, 0 for shading by all the lights */
+    private int lightSamples = 0;
+
+    /**
+     * Cell of the ambient occlusion cache - a cube of the space on a geometry
+     *
+     * @param geometry the geometry
+     * @param x        the cell index along the X axis
+     * @param y        the cell index along the Y axis
+     * @param z        the cell index along the Z axis
+     */
+    private record OcclusionCell(Geometry geometry, long x, long y, long z) {}
+
+    /** Amount of ambient occlusion rays per shading point, 0 if ambient occlusion is disabled */
+    private int occlusionSamples = 0;
+
+    /** Distance beyond which geometries do not occlude the ambient light */
+    private double occlusionDistance = 0;
+
+    /** Whether ambient occlusion values are cached per geometry and cell */
+    private boolean occlusionCache = false;
+
+    /** Cached ambient occlusion values, created on first use */
+    private transient volatile Map<OcclusionCell, Double> occlusionValues;
+
+    /** Strata of the elevation of the indirect diffuse rays, 0 if indirect diffuse lighting is disabled */
+    private int indirectThetaStrata = 0;
+
+    /** Strata of the azimuth of the indirect diffuse rays */
+    private int indirectPhiStrata = 0;
+
+    /** Cache of the indirect diffuse irradiance, null for sampling at every shading point */
+    private transient IrradianceCache irradianceCache;
 
     /**
      * Constructs a ray tracer for the given scene
@@ -35,24 +106,142 @@ public class SimpleRayTracer extends RayTracerBase {
         super(scene); // Calls the constructor of RayTracerBase
     }
 
+    /**
+     * Enables stochastic light sampling for scenes with many lights: each shading
+     * point is lit by a few lights sampled from a light tree by their importance
+     * for the point, each weighted by the inverse of its probability, instead of
+     * by all the lights. The estimate is unbiased, and the cost is logarithmic in
+     * the amount of lights. Lights at infinity are always used.
+     *
+     * @param samples amount of lights sampled per shading point, 0 - all the lights
+     * @return the ray tracer itself
+     */
+    public SimpleRayTracer setLightSamples(int samples) {
+        if (samples < 0) throw new IllegalArgumentException("Light samples must not be negative");
+        this.lightSamples = samples;
+        return this;
+    }
+
+    /**
+     * Enables ambient occlusion: the ambient light at a point is scaled by the
+     * fraction of cosine weighted rays over the hemisphere of its normal which
+     * hit no geometry closer than a distance, giving contact shadows. The rays
+     * are bounded any-hit queries. The first quarter of the rays (at least 4) is
+     * traced first - if all of them agree (open or occluded) the rest are skipped.
+     *
+     * @param samples     amount of rays per shading point, 0 - disabled
+     * @param maxDistance distance beyond which geometries do not occlude
+     * @return the ray tracer itself
+     */
+    public SimpleRayTracer setAmbientOcclusion(int samples, double maxDistance) {
+        if (samples < 0) throw new IllegalArgumentException("Ambient occlusion samples must not be negative");
+        if (samples > 0 && maxDistance <= 0)
+            throw new IllegalArgumentException("Ambient occlusion distance must be positive");
+        this.occlusionSamples = samples;
+        this.occlusionDistance = maxDistance;
+        this.occlusionValues = null;
+        return this;
+    }
+
+    /**
+     * Enables or disables the ambient occlusion cache - the occlusion is computed
+     * once per geometry and cell of a quarter of the occlusion distance, and
+     * shared by all the points of the cell. The cache is much faster, but the
+     * value of a cell is taken from whichever of its points is shaded first, so
+     * with multithreading the image may vary slightly between renders.
+     *
+     * @param enable whether to cache the occlusion
+     * @return the ray tracer itself
+     */
+    public SimpleRayTracer enableAmbientOcclusionCache(boolean enable) {
+        this.occlusionCache = enable;
+        this.occlusionValues = null;
+        return this;
+    }
+
+    /**
+     * Enables indirect diffuse lighting (a single bounce): the diffuse surfaces
+     * reflect the direct light of the geometries around them, gathered by
+     * stratified cosine weighted rays over the hemisphere of the normal. With an
+     * irradiance cache the rays are traced at sparse points only, and the
+     * irradiance is interpolated between them.
+     *
+     * @param samples amount of rays of an irradiance sample, 0 - disabled
+     * @param cache   the irradiance cache (may be shared by the tracers of the
+     *                frames of a static scene), or null for no cache
+     * @return the ray tracer itself
+     */
+    public SimpleRayTracer setIndirectDiffuse(int samples, IrradianceCache cache) {
+        if (samples < 0) throw new IllegalArgumentException("Indirect diffuse samples must not be negative");
+        // About pi azimuth strata per elevation stratum
+        this.indirectThetaStrata = samples == 0 ? 0 : Math.max(1, (int) Math.round(Math.sqrt(samples / Math.PI)));
+        this.indirectPhiStrata = samples == 0 ? 0 : Math.max(1, (int) Math.round((double) samples / indirectThetaStrata));
+        this.irradianceCache = cache;
+        return this;
+    }
+
     /**
      * Traces a ray into the scene and returns the resulting color
      */
     @Override
     public Color traceRay(Ray ray) {
+        return traceRay(ray, 0L);
+    }
+
+    /**
+     * Traces a ray of a sample into the scene and returns the resulting color.
+     * The random key of the sample is passed down to the secondary rays.
+     */
+    @Override
+    public Color traceRay(Ray ray, long seed) {
+        return traceRay(ray, seed, null);
+    }
+
+    /**
+     * Traces a ray of a sample into the scene, records its first hit (if a
+     * record is given) and returns the resulting color
+     */
+    @Override
+    public Color traceRay(Ray ray, long seed, HitRecord hit) {
+        if (hit != null) hit.clear(); // Until a hit is found
         var intersections = scene.geometries.calculateIntersections(ray); // Finds intersections with scene geometries
         if (intersections == null) return scene.background; // If no intersection, return background color
 
         Intersection closestIntersection = ray.findClosestIntersection(intersections);
         if (closestIntersection == null) return scene.background;  //
 
-        return calcColor(ray.findClosestIntersection(intersections), ray); // Calculate color at closest intersection
+        closestIntersection.seed = seed;
+        Color color = calcColor(closestIntersection, ray); // Calculate color at closest intersection
+        if (hit != null) // The normal is set (facing the viewer) by the color calculation
+            hit.set(closestIntersection.geometry, closestIntersection.point.distance(ray.head),
+                    closestIntersection.normalAtPoint);
+        return color;
+    }
+
+    /**
+     * The spatial index of the scene lights, up to date with the lights list
+     */
+    private LightIndex lightIndex() {
+        LightIndex index = lightIndex;
+        if (index == null || !index.isFor(scene.lights))
+            lightIndex = index = new LightIndex(scene.lights, MIN_CALC_COLOR_K);
+        return index;
+    }
+
+    /**
+     * The light tree of the scene lights, up to date with the lights list
+     */
+    private LightTree lightTree() {
+        LightTree tree = lightTree;
+        if (tree == null || !tree.isFor(scene.lights))
+            lightTree = tree = new LightTree(scene.lights);
+        return tree;
     }
 
     /**
      * Finds the closest intersection of the given ray
      */
-    private Intersection findClosestIntersection(Ray ray) {
+    Intersection findClosestIntersection(Ray ray) {
         try {
             List<Intersection> intersections = scene.geometries.calculateIntersections(ray); // Get intersections
             if (intersections == null) return null;
@@ -67,51 +256,212 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private Color calcColor(Intersection intersection, Ray ray) {
         if (!preprocessIntersection(intersection, ray.direction)) return Color.BLACK; // Ensure vectors are valid
-        return calcColor(intersection, MAX_CALC_COLOR_LEVEL, INITIAL_K); // Start recursive color calculation
+        return calcColor(intersection, Color.BLACK, ShadingStack.SHADE); // Start the ray tree evaluation
     }
 
     /**
-     * Recursive method for calculating local and global lighting effects
+     * Calculates the color of a hit with the global effects of its ray tree.
+     * The tree is evaluated iteratively, depth first, on the shading stack of
+     * the thread - in the order, and with the same arithmetic, of a recursive
+     * evaluation.
+     *
+     * @param intersection the hit, with its shading vectors set
+     * @param local        the local color of the hit, if it is already shaded
+     * @param stage        {@link ShadingStack#SHADE} to shade the hit, or
+     *                     {@link ShadingStack#GLOBALS} if its local color is given
+     * @return the color of the hit
      */
-    private Color calcColor(Intersection intersection, int level, Double3 k) {
-        if (alignZero(intersection.normalAtPoint.dotProduct(intersection.viewDirection)) == 0)
-            return Color.BLACK; // Skip if view direction is perpendicular
-        Color color = calcColorLocalEffects(intersection); // Local light (diffuse + specular)
-        return level == 1 ? color : color.add(calcGlobalEffects(intersection, level, k)); // Add global effects if needed
+    private Color calcColor(Intersection intersection, Color local, byte stage) {
+        ShadingStack stack = SHADING_STACKS.get();
+        int base = stack.size; // Entries of an evaluation in progress stay below
+        try {
+            int root = stack.push(null, intersection, MAX_CALC_COLOR_LEVEL, INITIAL_K, null, intersection.seed, stage);
+            stack.locals[root] = local;
+            while (true) {
+                int top = stack.size - 1;
+                Color value = advance(stack, top);
+                if (value == null) continue; // The entry is pending, or pushed a child
+                Double3 effect = stack.effects[top];
+                stack.pop();
+                if (stack.size == base) return value;
+                int parent = stack.size - 1; // Accumulate the effect of the child
+                stack.colors[parent] = stack.colors[parent].add(value.scale(effect));
+            }
+        } finally {
+            while (stack.size > base) stack.pop(); // Release the entries if the evaluation failed
+        }
+    }
+
+    /**
+     * Advances the top entry of the shading stack by a stage
+     *
+     * @param stack the shading stack
+     * @param top   the index of the top entry
+     * @return the color of the entry if it is completed, otherwise null
+     */
+    private Color advance(ShadingStack stack, int top) {
+        Intersection intersection = stack.intersections[top];
+        switch (stack.stages[top]) {
+            case ShadingStack.TRACE -> { // Find the hit of a secondary ray
+                Ray ray = stack.rays[top];
+                intersection = findClosestIntersection(ray);
+                if (intersection == null) return Color.BLACK;
+                intersection.seed = stack.seeds[top];
+                if (!preprocessIntersection(intersection, ray.direction)) return Color.BLACK;
+                stack.intersections[top] = intersection;
+                stack.stages[top] = ShadingStack.SHADE;
+                return null;
+            }
+            case ShadingStack.SHADE -> { // Local light (diffuse + specular)
+                if (alignZero(intersection.normalAtPoint.dotProduct(intersection.viewDirection)) == 0)
+                    return Color.BLACK; // Skip if view direction is perpendicular
+                Color local = calcColorLocalEffects(intersection);
+                if (stack.levels[top] == 1) return local; // No global effects at the last level
+                stack.locals[top] = local;
+                stack.stages[top] = ShadingStack.GLOBALS;
+                return null;
+            }
+            case ShadingStack.GLOBALS -> {
+                Color color = calcGlobalEffects(intersection, stack.levels[top], stack.ks[top]);
+                if (color == null) return stack.locals[top]; // Too deep or dim
+                stack.colors[top] = color;
+                stack.stages[top] = ShadingStack.REFLECTION;
+                return null;
+            }
+            case ShadingStack.REFLECTION -> {
+                stack.stages[top] = ShadingStack.REFRACTION;
+                Double3 kR = intersection.material.kR;
+                if (!kR.equals(Double3.ZERO))
+                    stack.push(reflectedRay(intersection), null, stack.levels[top] - 1,
+                            stack.ks[top].product(kR), kR, CounterRng.key(intersection.seed, 0), ShadingStack.TRACE);
+                return null;
+            }
+            case ShadingStack.REFRACTION -> {
+                stack.stages[top] = ShadingStack.DONE;
+                Double3 kT = intersection.material.kT;
+                if (!kT.equals(Double3.ZERO))
+                    stack.push(refractedRay(intersection), null, stack.levels[top] - 1,
+                            stack.ks[top].product(kT), kT, CounterRng.key(intersection.seed, 1), ShadingStack.TRACE);
+                return null;
+            }
+            default -> {
+                return stack.locals[top].add(stack.colors[top]);
+            }
+        }
     }
 
     /**
      * Calculates the local lighting effects (diffuse and specular)
      */
-    private Color calcColorLocalEffects(Intersection intersection) {
+    Color calcColorLocalEffects(Intersection intersection) {
         Color color = intersection.geometry.getEmission(); // Start with emission color
-        for (LightSource lightSource : scene.lights) {
-            if (!setLightSource(intersection, lightSource)) continue; // Prepare light vectors
+        if (lightSamples == 0) {
+            for (LightSource lightSource : lightIndex().lightsAt(intersection.point)) // Lights which may reach the point
+                color = color.add(calcLightEffect(intersection, lightSource));
+            return color;
+        }
+
+        // Light sampling - the lights at infinity, and a few lights of the tree by their importance
+        LightTree tree = lightTree();
+        for (LightSource lightSource : tree.getUnboundedLights())
+            color = color.add(calcLightEffect(intersection, lightSource));
+        long key = CounterRng.key(intersection.seed, 2); // Random stream of the light choices
+        double[] pdf = new double[1];
+        for (int s = 0; s < lightSamples; s++) {
+            LightSource lightSource = tree.sample(intersection.point, CounterRng.uniform(key, s), pdf);
+            if (lightSource != null)
+                color = color.add(calcLightEffect(intersection, lightSource).scale(1 / (lightSamples * pdf[0])));
+        }
+        return color;
+    }
+
+    /**
+     * Calculates the local effect (diffuse and specular) of a light at the
+     * intersection, black if the light does not reach it
+     */
+    private Color calcLightEffect(Intersection intersection, LightSource lightSource) {
+        if (!setLightSource(intersection, lightSource)) return Color.BLACK; // Prepare light vectors
+        Color iL = lightSource.getIntensity(intersection.point);
+        if (iL.getRgb().lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK; // Out of the light range or cone - no shadow ray
 
-            // Compute light transparency to current point
-            Double3 ktr = transparency(intersection, lightSource,
-                    intersection.lightDirection,
-                    intersection.normalAtPoint,
-                    intersection.vnDotProduct);
+        Double3 ktr = lightTransparency(intersection, lightSource); // Compute light transparency to current point
 
-            if (ktr.product(INITIAL_K).lowerThan(MIN_CALC_COLOR_K)) continue; // Skip if too dim
+        if (ktr.product(INITIAL_K).lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK; // Skip if too dim
 
-            // Compute diffuse and specular components
-            Double3 diffuse = calcDiffusive(intersection);
-            Double3 specular = calcSpecular(intersection);
-            Double3 totalEffect = diffuse.add(specular);
+        // Compute diffuse and specular components
+        Double3 diffuse = calcDiffusive(intersection);
+        Double3 specular = calcSpecular(intersection);
+        Double3 totalEffect = diffuse.add(specular);
 
-            // Add contribution from this light source
-            Color iL = lightSource.getIntensity(intersection.point).scale(ktr);
-            color = color.add(iL.scale(totalEffect));
+        return iL.scale(ktr).scale(totalEffect); // Contribution from this light source
+    }
+
+    /**
+     * Traces a primary ray and resamples the lights of its hit: candidates are
+     * drawn uniformly from the lights which may reach the hit, and streamed into
+     * a reservoir by their target function (see {@link #lightTarget}). No shadow
+     * ray is traced.
+     *
+     * @param ray        the primary ray
+     * @param seed       the random key of the sample
+     * @param candidates amount of light candidates
+     * @return the reservoir of the hit
+     */
+    LightReservoir sampleLights(Ray ray, long seed, int candidates) {
+        Intersection intersection = findClosestIntersection(ray);
+        if (intersection == null) return new LightReservoir(null, Double.POSITIVE_INFINITY);
+        intersection.seed = seed;
+        preprocessIntersection(intersection, ray.direction);
+        LightReservoir reservoir = new LightReservoir(intersection, intersection.point.distance(ray.head));
+
+        LightSource[] lights = lightIndex().lightsAt(intersection.point);
+        if (lights.length == 0) return reservoir;
+        long key = CounterRng.key(seed, 3); // Random stream of the candidates
+        for (int s = 0; s < candidates; s++) {
+            LightSource light = lights[(int) (CounterRng.uniform(key, 2 * s) * lights.length)];
+            double target = lightTarget(intersection, light);
+            reservoir.add(light, target * lights.length, target, 1, CounterRng.uniform(key, 2 * s + 1));
         }
-        return color;
+        return reservoir.finish();
+    }
+
+    /**
+     * Target function of light resampling - the luminance of the unshadowed
+     * local effect of a light at a primary hit
+     *
+     * @param intersection the primary hit
+     * @param lightSource  the light, or null
+     * @return the target function value, 0 if the light does not reach the hit
+     */
+    double lightTarget(Intersection intersection, LightSource lightSource) {
+        if (lightSource == null || !setLightSource(intersection, lightSource)) return 0;
+        Color iL = lightSource.getIntensity(intersection.point);
+        return VarianceBuffer.luminance(iL.scale(calcDiffusive(intersection).add(calcSpecular(intersection))));
+    }
+
+    /**
+     * Shades a primary hit by its resampled light - a single shadow ray to the
+     * kept light, weighted by the reservoir, instead of the local effects of all
+     * the lights. The global effects are traced as usual.
+     *
+     * @param reservoir the reservoir of the hit
+     * @return the color of the primary ray
+     */
+    Color shadeResampled(LightReservoir reservoir) {
+        Intersection intersection = reservoir.intersection;
+        if (intersection == null) return scene.background;
+        if (alignZero(intersection.normalAtPoint.dotProduct(intersection.viewDirection)) == 0)
+            return Color.BLACK; // Skip if view direction is perpendicular
+        Color color = intersection.geometry.getEmission();
+        if (reservoir.light != null && reservoir.lightWeight > 0)
+            color = color.add(calcLightEffect(intersection, reservoir.light).scale(reservoir.lightWeight));
+        return calcColor(intersection, color, ShadingStack.GLOBALS);
     }
 
     /**
      * Initializes normal and view direction for the intersection
      */
-    private boolean preprocessIntersection(Intersection intersection, Vector v) {
+    boolean preprocessIntersection(Intersection intersection, Vector v) {
         intersection.viewDirection = v.normalize(); // Normalize view vector
         intersection.normalAtPoint = intersection.geometry.getNormal(intersection.point); // Get surface normal
         intersection.vnDotProduct = alignZero(v.dotProduct(intersection.normalAtPoint)); // Dot product for direction check
@@ -159,30 +509,113 @@ public class SimpleRayTracer extends RayTracerBase {
                 Math.abs(diffuse.d3()));
     }
 
+    /**
+     * Computes how much light of a light source reaches the intersection - by a
+     * soft shadow for an area light, by the shadow map of a light in shadow map
+     * mode (for points inside the map), and by a shadow ray otherwise
+     */
+    private Double3 lightTransparency(Intersection intersection, LightSource lightSource) {
+        if (lightSource instanceof AreaLight areaLight)
+            return softTransparency(intersection, areaLight, intersection.normalAtPoint, intersection.vnDotProduct);
+        if (lightSource.getShadowMapResolution() > 0) {
+            double visibility = shadowMap(lightSource).visibility(intersection.point);
+            if (visibility >= 0) return new Double3(visibility);
+        }
+        return transparency(intersection, lightSource, intersection.lightDirection,
+                intersection.normalAtPoint, intersection.vnDotProduct);
+    }
+
+    /**
+     * The shadow map of a light, rendered on first use
+     */
+    private ShadowMap shadowMap(LightSource lightSource) {
+        Map<LightSource, ShadowMap> maps = shadowMaps;
+        if (maps == null) {
+            synchronized (this) {
+                if ((maps = shadowMaps) == null) shadowMaps = maps = new ConcurrentHashMap<>();
+            }
+        }
+        return maps.computeIfAbsent(lightSource, light -> new ShadowMap(light, scene.geometries, MIN_CALC_COLOR_K));
+    }
+
     /**
      * Computes how much light passes through transparent objects to the point
      */
     private Double3 transparency(Intersection gp, LightSource light, Vector l, Vector n, double nv) {
-        Vector lightDirection = l.scale(-1.0); // Reverse light direction
+        return transparency(gp, light, l.scale(-1.0), light.getDistance(gp.point), n, nv);
+    }
+
+    /**
+     * Computes the soft shadow of an area light - the average transparency
+     * toward its sample points. If the first batch of samples agree (fully lit
+     * or fully occluded) the point is not in the penumbra, and the rest of the
+     * samples are skipped.
+     */
+    private Double3 softTransparency(Intersection gp, AreaLight light, Vector n, double nv) {
+        int total = light.getSampleCount();
+        int batch = light.getShadowBatch();
+        Double3 sum = Double3.ZERO;
+        boolean lit = true, occluded = true;
+        for (int s = 0; s < total; s++) {
+            if (s == batch && (lit || occluded)) return sum.reduce(batch); // No penumbra
+            Point sample = light.getSamplePoint(s);
+            Double3 ktr = transparency(gp, light, sample.subtract(gp.point).normalize(),
+                    sample.distance(gp.point), n, nv);
+            lit &= ktr.equals(Double3.ONE);
+            occluded &= ktr.equals(Double3.ZERO);
+            sum = sum.add(ktr);
+        }
+        return sum.reduce(total);
+    }
+
+    /**
+     * Computes how much light passes through transparent objects from a point on
+     * the light to the point
+     *
+     * @param lightDirection the direction from the point to the light
+     * @param lightDistance  the distance from the point to the light
+     */
+    private Double3 transparency(Intersection gp, LightSource light, Vector lightDirection, double lightDistance,
+                                 Vector n, double nv) {
         Vector delta = n.scale(nv < 0 ? DELTA : -DELTA); // Offset to avoid self-intersection
         Ray lightRay = new Ray(gp.point.add(delta), lightDirection); // Shadow ray
-        List<Intersection> intersections = scene.geometries.calculateIntersections(lightRay);
 
+        // The last occluder of the light blocks the light alone
+        Map<LightSource, Occluder> occluders = LAST_OCCLUDERS.get();
+        Occluder occluder = occluders.get(light);
+        if (occluder != null && occluder.geometries == scene.geometries
+                && blocks(occluder.geometry.calculateIntersections(lightRay), gp.point, lightDistance))
+            return Double3.ZERO;
+
+        List<Intersection> intersections = scene.geometries.calculateIntersections(lightRay);
         if (intersections == null) return Double3.ONE; // Fully transparent
 
         Double3 ktr = Double3.ONE;
         for (Intersection inter : intersections) {
-            double lightDistance = light.getDistance(gp.point); // Distance to light
             double intersectionDistance = inter.point.distance(gp.point); // Distance to obstacle
 
             if (alignZero(intersectionDistance - lightDistance) < 0) {
                 ktr = ktr.product(inter.material.kT); // Multiply transparency
+                if (inter.material.kT.lowerThan(MIN_CALC_COLOR_K)) // Opaque - remember it for the next points
+                    occluders.put(light, new Occluder(scene.geometries, inter.geometry));
                 if (ktr.lowerThan(MIN_CALC_COLOR_K)) return Double3.ZERO; // Stop if too dim
             }
         }
         return ktr; // Final transparency value
     }
 
+    /**
+     * Checks whether intersections of a shadow ray with an occluder block the
+     * light - an opaque intersection before the light
+     */
+    private boolean blocks(List<Intersection> intersections, Point point, double lightDistance) {
+        if (intersections == null) return false;
+        for (Intersection inter : intersections)
+            if (inter.material.kT.lowerThan(MIN_CALC_COLOR_K)
+                    && alignZero(inter.point.distance(point) - lightDistance) < 0) return true;
+        return false;
+    }
+
     /**
      * Calculates the reflection vector
      */
@@ -193,50 +626,199 @@ public class SimpleRayTracer extends RayTracerBase {
     }
 
     /**
-     * Computes global lighting effects (reflection and refraction)
+     * The reflection ray of a hit (its random key is the key of the hit, stream 0)
+     */
+    Ray reflectedRay(Intersection intersection) {
+        Vector v = intersection.viewDirection;
+        Vector n = intersection.normalAtPoint;
+        return new Ray(intersection.point, v.subtract(n.scale(alignZero(n.dotProduct(v)) * 2)), n);
+    }
+
+    /**
+     * The refraction ray of a hit (its random key is the key of the hit, stream 1)
+     */
+    Ray refractedRay(Intersection intersection) {
+        return new Ray(intersection.point, intersection.viewDirection, intersection.normalAtPoint);
+    }
+
+    /**
+     * Computes the global lighting effects which are not traced on the shading
+     * stack (emission, ambient and indirect diffuse) - the start of the global
+     * color, before the reflection and the refraction
+     *
+     * @return the color, or null if the ray tree is too deep or dim for global effects
      */
-    private Color calcGlobalEffects(Intersection intersection, int level, Double3 k) {
+    Color calcGlobalEffects(Intersection intersection, int level, Double3 k) {
         Color color = intersection.geometry.getEmission();
-        if (level == 1 || k.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK; // Stop if too deep or dim
+        if (level == 1 || k.lowerThan(MIN_CALC_COLOR_K)) return null; // Stop if too deep or dim
 
         // Add ambient contribution
         if (scene.ambientLight.getIntensity() != null) {
-            color = color.add(scene.ambientLight.getIntensity().scale(intersection.material.kA));
+            Color ambient = scene.ambientLight.getIntensity().scale(intersection.material.kA);
+            if (occlusionSamples > 0 && !ambient.getRgb().lowerThan(MIN_CALC_COLOR_K))
+                ambient = ambient.scale(ambientOcclusion(intersection)); // Contact shadows
+            color = color.add(ambient);
         }
 
-        Vector v = intersection.viewDirection;
-        Vector n = intersection.normalAtPoint;
-        Point point = intersection.point;
-        double nv = alignZero(n.dotProduct(v));
+        // Add indirect diffuse contribution
+        Double3 kD = intersection.material.kD;
+        if (indirectThetaStrata > 0 && !k.product(kD).lowerThan(MIN_CALC_COLOR_K))
+            color = color.add(indirectDiffuse(intersection).scale(kD));
+        return color;
+    }
 
-        // Handle reflection
-        Double3 kR = intersection.material.kR;
-        if (!kR.equals(Double3.ZERO)) {
-            Vector r = v.subtract(n.scale(nv * 2));
-            Ray reflectedRay = new Ray(point, r, n);
-            color = color.add(calcGlobalEffect(reflectedRay, level, k, kR));
+    /**
+     * Fraction of the ambient light which reaches the intersection, from the
+     * cache if enabled
+     */
+    private double ambientOcclusion(Intersection intersection) {
+        if (!occlusionCache) return traceOcclusion(intersection);
+        Map<OcclusionCell, Double> values = occlusionValues;
+        if (values == null) {
+            synchronized (this) {
+                if ((values = occlusionValues) == null) occlusionValues = values = new ConcurrentHashMap<>();
+            }
         }
+        double cell = occlusionDistance / 4;
+        Point p = intersection.point;
+        OcclusionCell key = new OcclusionCell(intersection.geometry, (long) Math.floor(p.getX() / cell),
+                (long) Math.floor(p.getY() / cell), (long) Math.floor(p.getZ() / cell));
+        Double value = values.get(key);
+        if (value == null) value = values.computeIfAbsent(key, k -> traceOcclusion(intersection));
+        return value;
+    }
 
-        // Handle refraction
-        Double3 kT = intersection.material.kT;
-        if (!kT.equals(Double3.ZERO)) {
-            Ray refractedRay = new Ray(point, v, n);
-            color = color.add(calcGlobalEffect(refractedRay, level, k, kT));
+    /**
+     * Traces the ambient occlusion rays of the intersection - cosine weighted
+     * directions over the hemisphere of the normal, by the random key of the
+     * sample
+     */
+    private double traceOcclusion(Intersection intersection) {
+        Vector n = intersection.normalAtPoint;
+        Vector t = n.crossProduct(Math.abs(n.dotProduct(Vector.AXIS_X)) < 0.9 ? Vector.AXIS_X : Vector.AXIS_Y)
+                .normalize();
+        Vector b = n.crossProduct(t);
+        long key = CounterRng.key(intersection.seed, 5); // Random stream of the occlusion rays
+        int batch = Math.min(occlusionSamples, Math.max(4, occlusionSamples / 4));
+        int open = 0;
+        for (int s = 0; s < occlusionSamples; s++) {
+            if (s == batch && (open == 0 || open == batch)) return (double) open / batch; // All agree
+            double u = CounterRng.uniform(key, 2 * s);
+            double phi = 2 * Math.PI * CounterRng.uniform(key, 2 * s + 1);
+            double r = Math.sqrt(u);
+            Vector direction = n.scale(Math.sqrt(1 - u)).addScaled(t, r * Math.cos(phi), b, r * Math.sin(phi));
+            if (!scene.geometries.hasIntersection(new Ray(intersection.point, direction, n), occlusionDistance))
+                open++;
         }
-
-        return color;
+        return (double) open / occlusionSamples;
     }
 
     /**
-     * Recursive helper for computing color from secondary rays (reflection/refraction)
+     * Irradiance (over pi) at the intersection, from the irradiance cache if a
+     * record is valid there, otherwise sampled (and added to the cache)
      */
-    private Color calcGlobalEffect(Ray secondaryRay, int level, Double3 k, Double3 kEffect) {
-        Intersection intersection = findClosestIntersection(secondaryRay);
-        if (intersection == null) return Color.BLACK;
+    private Color indirectDiffuse(Intersection intersection) {
+        Point point = intersection.point;
+        Vector n = intersection.normalAtPoint;
+        IrradianceCache cache = irradianceCache;
+        if (cache != null) {
+            Color cached = cache.lookup(point, n);
+            if (cached != null) return cached;
+        }
 
-        if (!preprocessIntersection(intersection, secondaryRay.direction)) return Color.BLACK;
+        int m = indirectThetaStrata, nPhi = indirectPhiStrata, count = m * nPhi;
+        Vector t = n.crossProduct(Math.abs(n.dotProduct(Vector.AXIS_X)) < 0.9 ? Vector.AXIS_X : Vector.AXIS_Y)
+                .normalize();
+        Vector b = n.crossProduct(t);
+        long key = CounterRng.key(intersection.seed, 6); // Random stream of the irradiance rays
+        Double3[] radiance = new Double3[count];
+        double[] distances = new double[count];
+        Double3 sum = Double3.ZERO;
+        double inverseDistances = 0;
+        for (int j = 0; j < m; j++)
+            for (int k = 0; k < nPhi; k++) {
+                int s = j * nPhi + k;
+                double u = (j + CounterRng.uniform(key, 2 * s)) / m;
+                double phi = 2 * Math.PI * (k + CounterRng.uniform(key, 2 * s + 1)) / nPhi;
+                double sin = Math.sqrt(u);
+                Ray ray = new Ray(point, n.scale(Math.sqrt(1 - u)).addScaled(t, sin * Math.cos(phi), b,
+                        sin * Math.sin(phi)), n);
+                Intersection hit = findClosestIntersection(ray);
+                Color color;
+                if (hit == null) {
+                    color = scene.background;
+                    distances[s] = Double.POSITIVE_INFINITY;
+                } else {
+                    hit.seed = CounterRng.key(key, s);
+                    color = preprocessIntersection(hit, ray.direction)
+                            && alignZero(hit.normalAtPoint.dotProduct(hit.viewDirection)) != 0
+                            ? calcColorLocalEffects(hit) : Color.BLACK; // Direct light only
+                    distances[s] = hit.point.distance(point);
+                    inverseDistances += 1 / distances[s];
+                }
+                radiance[s] = color.getRgb();
+                sum = sum.add(radiance[s]);
+            }
+        Color irradiance = new Color(sum.d1() / count, sum.d2() / count, sum.d3() / count);
+
+        if (cache != null)
+            cache.add(point, n, irradiance, inverseDistances > 0 ? count / inverseDistances : Double.POSITIVE_INFINITY,
+                    irradianceGradient(radiance, distances, m, nPhi, t, b));
+        return irradiance;
+    }
 
-        Color effectColor = calcColor(intersection, level - 1, k.product(kEffect));
-        return effectColor.scale(kEffect);
+    /**
+     * Translational gradient of the irradiance (over pi) from stratified cosine
+     * weighted samples (after Ward and Heckbert) - as the point moves, the
+     * geometries seen across the border of neighbor strata move across it by
+     * the inverse of their distance, so the radiance difference of the strata
+     * flows through the cosine weighted measure of the border
+     *
+     * @param radiance  the radiance of each sample, by elevation stratum and azimuth stratum
+     * @param distances the distance of the geometry seen by each sample
+     * @param m         amount of elevation strata
+     * @param nPhi      amount of azimuth strata
+     * @param t         the first tangent of the hemisphere
+     * @param b         the second tangent of the hemisphere
+     * @return the gradient - 3 vectors (by X, Y, Z) of the color components
+     */
+    private static double[] irradianceGradient(Double3[] radiance, double[] distances, int m, int nPhi,
+                                               Vector t, Vector b) {
+        double[] gradient = new double[9];
+        for (int k = 0; k < nPhi; k++) {
+            double phi = 2 * Math.PI * (k + 0.5) / nPhi, phiMinus = 2 * Math.PI * k / nPhi;
+            // Direction of the azimuth of the stratum, and perpendicular to its lower edge
+            double ux = Math.cos(phi), uy = Math.sin(phi);
+            double vx = -Math.sin(phiMinus), vy = Math.cos(phiMinus);
+            double[] along = new double[3], across = new double[3];
+            for (int j = 1; j < m; j++) { // Changes between elevation strata
+                int s = j * nPhi + k, below = (j - 1) * nPhi + k;
+                double sinMinus = Math.sqrt((double) j / m), cos2Minus = 1 - (double) j / m;
+                double distance = Math.min(distances[s], distances[below]);
+                if (distance == Double.POSITIVE_INFINITY) continue;
+                double factor = 2 * Math.PI / nPhi * sinMinus * cos2Minus / distance;
+                along[0] += factor * (radiance[s].d1() - radiance[below].d1());
+                along[1] += factor * (radiance[s].d2() - radiance[below].d2());
+                along[2] += factor * (radiance[s].d3() - radiance[below].d3());
+            }
+            for (int j = 0; j < m; j++) { // Changes between azimuth strata
+                int s = j * nPhi + k, previous = j * nPhi + (k + nPhi - 1) % nPhi;
+                double distance = Math.min(distances[s], distances[previous]);
+                if (distance == Double.POSITIVE_INFINITY) continue;
+                double factor = (Math.sqrt((double) (j + 1) / m) - Math.sqrt((double) j / m)) / distance;
+                across[0] += factor * (radiance[s].d1() - radiance[previous].d1());
+                across[1] += factor * (radiance[s].d2() - radiance[previous].d2());
+                across[2] += factor * (radiance[s].d3() - radiance[previous].d3());
+            }
+            for (int c = 0; c < 3; c++) {
+                double gt = ux * along[c] + vx * across[c], gb = uy * along[c] + vy * across[c];
+                gradient[3 * c] += gt * t.dotProduct(Vector.AXIS_X) + gb * b.dotProduct(Vector.AXIS_X);
+                gradient[3 * c + 1] += gt * t.dotProduct(Vector.AXIS_Y) + gb * b.dotProduct(Vector.AXIS_Y);
+                gradient[3 * c + 2] += gt * t.dotProduct(Vector.AXIS_Z) + gb * b.dotProduct(Vector.AXIS_Z);
+            }
+        }
+        for (int c = 0; c < 9; c++) gradient[c] /= Math.PI; // The gradient of the irradiance over pi
+        return gradient;
     }
+
 }
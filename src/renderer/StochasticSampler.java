@@ -0,0 +1,206 @@
+package renderer;
+
+import primitives.CounterRng;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Randomized samplers. Unlike the regular grids of {@link BlackBoard.Shape},
+ * which alias on fine periodic details, these samplers give every area its own
+ * pattern (driven by the area random key) while still covering the area evenly,
+ * so a given quality is reached with less samples.
+ *
+ * @author Eitan Lafair
+ */
+public enum StochasticSampler implements Sampler {
+    /**
+     * Stratified jittered sampling - one uniformly random sample in each cell of
+     * the regular grid
+     */
+    JITTERED {
+        @Override
+        public int generate(int samplesPerDim, long key, double[] uv) {
+            int count = sampleCount(samplesPerDim);
+            for (int cell = 0; cell < count; cell++) { // Same cell numbering as the blackboard grid
+                uv[2 * cell] = (cell / samplesPerDim + CounterRng.uniform(key, 2 * cell)) / samplesPerDim - 0.5;
+                uv[2 * cell + 1] = (cell % samplesPerDim + CounterRng.uniform(key, 2 * cell + 1)) / samplesPerDim - 0.5;
+            }
+            return count;
+        }
+
+        @Override
+        public int[] progressiveOrder(int samplesPerDim) {
+            return BlackBoard.Shape.RECTANGLE.progressiveOrder(samplesPerDim); // Samples are grid cells
+        }
+    },
+
+    /**
+     * Halton sequence (bases 2 and 3), randomized per area by a toroidal shift
+     * (Cranley-Patterson rotation)
+     */
+    HALTON {
+        @Override
+        public int generate(int samplesPerDim, long key, double[] uv) {
+            int count = sampleCount(samplesPerDim);
+            double shiftU = CounterRng.uniform(key, 0);
+            double shiftV = CounterRng.uniform(key, 1);
+            for (int k = 0; k < count; k++) {
+                uv[2 * k] = wrap(radicalInverse(k, 2) + shiftU);
+                uv[2 * k + 1] = wrap(radicalInverse(k, 3) + shiftV);
+            }
+            return count;
+        }
+    },
+
+    /**
+     * Sobol sequence (first two dimensions), randomized per area by hash based
+     * Owen scrambling, which keeps its stratification in every power of 2
+     * elementary interval
+     */
+    SOBOL {
+        @Override
+        public int generate(int samplesPerDim, long key, double[] uv) {
+            int count = sampleCount(samplesPerDim);
+            int seedU = (int) CounterRng.bits(key, 0);
+            int seedV = (int) CounterRng.bits(key, 1);
+            for (int k = 0; k < count; k++) {
+                uv[2 * k] = toUnit(owenScramble(Integer.reverse(k), seedU)) - 0.5; // Van der Corput
+                uv[2 * k + 1] = toUnit(owenScramble(sobol2(k), seedV)) - 0.5;
+            }
+            return count;
+        }
+    },
+
+    /**
+     * Blue noise - a point set with no two samples too close to each other (by
+     * Mitchell's best candidate algorithm), computed once per amount of samples
+     * and randomized per area by a toroidal shift. The set is built point by
+     * point, so its order is already progressive.
+     */
+    BLUE_NOISE {
+        @Override
+        public int generate(int samplesPerDim, long key, double[] uv) {
+            int count = sampleCount(samplesPerDim);
+            double[] points = BLUE_NOISE_SETS.computeIfAbsent(count, StochasticSampler::bestCandidate);
+            double shiftU = CounterRng.uniform(key, 0);
+            double shiftV = CounterRng.uniform(key, 1);
+            for (int k = 0; k < count; k++) {
+                uv[2 * k] = wrap(points[2 * k] + shiftU);
+                uv[2 * k + 1] = wrap(points[2 * k + 1] + shiftV);
+            }
+            return count;
+        }
+    };
+
+    /** Blue noise point sets in the unit square by amount of points */
+    private static final Map<Integer, double[]> BLUE_NOISE_SETS = new ConcurrentHashMap<>();
+    /** Candidates per existing point in the best candidate algorithm */
+    private static final int CANDIDATES_FACTOR = 10;
+    /** Fixed random key of the blue noise point sets (they are shared by all the areas) */
+    private static final long BLUE_NOISE_KEY = 0x626C7565L; // "blue"
+
+    /**
+     * Maps a value in [0,2) to an offset in [-0.5,0.5) by wrapping around the unit square
+     *
+     * @param value the value
+     * @return the offset
+     */
+    private static double wrap(double value) {
+        return (value >= 1 ? value - 1 : value) - 0.5;
+    }
+
+    /**
+     * Maps 32 bits to a fraction in [0,1)
+     *
+     * @param bits the bits (unsigned)
+     * @return the fraction
+     */
+    private static double toUnit(int bits) {
+        return (bits & 0xFFFFFFFFL) * 0x1.0p-32;
+    }
+
+    /**
+     * Radical inverse of an index - its digits mirrored around the radix point
+     *
+     * @param index the index
+     * @param base  the base
+     * @return the radical inverse in [0,1)
+     */
+    private static double radicalInverse(int index, int base) {
+        double inverse = 0;
+        double digitValue = 1d / base;
+        for (int i = index; i > 0; i /= base, digitValue /= base)
+            inverse += (i % base) * digitValue;
+        return inverse;
+    }
+
+    /**
+     * Second dimension of the Sobol sequence (primitive polynomial x+1)
+     *
+     * @param index the index
+     * @return the sample as 32 bits fraction
+     */
+    private static int sobol2(int index) {
+        int result = 0;
+        for (int direction = 1 << 31; index != 0; index >>>= 1, direction ^= direction >>> 1)
+            if ((index & 1) != 0) result ^= direction;
+        return result;
+    }
+
+    /**
+     * Nested uniform (Owen) scrambling of a 32 bits fraction by the hash based
+     * Laine-Karras permutation of its reversed bits: every bit is flipped by a
+     * hash of the bits above it
+     *
+     * @param bits the fraction bits
+     * @param seed the scrambling seed
+     * @return the scrambled bits
+     */
+    private static int owenScramble(int bits, int seed) {
+        int x = Integer.reverse(bits);
+        x ^= x * 0x3d20adea;
+        x += seed;
+        x *= (seed >>> 16) | 1;
+        x ^= x * 0x05526c56;
+        x ^= x * 0x53a22864;
+        return Integer.reverse(x);
+    }
+
+    /**
+     * Mitchell's best candidate algorithm: each next point is the candidate
+     * farthest (with wrap around) from all the points chosen so far, among
+     * candidates proportional to the amount of chosen points
+     *
+     * @param count amount of points
+     * @return the points in the unit square, interleaved
+     */
+    private static double[] bestCandidate(int count) {
+        double[] points = new double[2 * count];
+        int dimension = 0;
+        for (int k = 0; k < count; k++) {
+            double bestU = 0, bestV = 0, bestDistance = -1;
+            int candidates = k == 0 ? 1 : k * CANDIDATES_FACTOR;
+            for (int c = 0; c < candidates; c++) {
+                double u = CounterRng.uniform(BLUE_NOISE_KEY, dimension++);
+                double v = CounterRng.uniform(BLUE_NOISE_KEY, dimension++);
+                double nearest = Double.POSITIVE_INFINITY;
+                for (int p = 0; p < k; p++) {
+                    double du = Math.abs(u - points[2 * p]);
+                    double dv = Math.abs(v - points[2 * p + 1]);
+                    du = Math.min(du, 1 - du); // Toroidal distance
+                    dv = Math.min(dv, 1 - dv);
+                    nearest = Math.min(nearest, du * du + dv * dv);
+                }
+                if (nearest > bestDistance) {
+                    bestDistance = nearest;
+                    bestU = u;
+                    bestV = v;
+                }
+            }
+            points[2 * k] = bestU;
+            points[2 * k + 1] = bestV;
+        }
+        return points;
+    }
+}
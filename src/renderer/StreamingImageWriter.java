@@ -0,0 +1,203 @@
+package renderer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming image file writer. The image is written band after band of rows,
+ * top to bottom, as the bands are rendered: a PNG is deflated incrementally and
+ * its compressed data is flushed as IDAT chunks, a PPM is appended row after
+ * row, and a PFM (whose rows are stored bottom to top) is written by positional
+ * writes. Only the band in progress is kept in memory, so the image size is
+ * bounded by the disk rather than by the heap.
+ * @author Eitan Lafair
+ */
+final class StreamingImageWriter implements Closeable {
+   /**
+    * Directory path for the image file generation - relative to the user
+    * directory
+    */
+   private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+   /** PNG file signature */
+   private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+   /** Size of the compressed data buffer (and the maximal IDAT chunk) */
+   private static final int    IDAT_SIZE     = 1 << 16;
+
+   /** Image width */
+   private final int           width;
+   /** Image height */
+   private final int           height;
+   /** File format */
+   private final ImageFormat   format;
+   /** Tone mapping operator of 8 bit formats */
+   private final ToneMapping   toneMapping;
+   /** Exposure scale before tone mapping */
+   private final double        exposure;
+   /** Whether the tone mapped colors are sRGB encoded */
+   private final boolean       srgb;
+   /** Output stream of the PNG and PPM formats */
+   private OutputStream        out           = null;
+   /** Output channel of the PFM format */
+   private FileChannel         channel       = null;
+   /** Size of the PFM header */
+   private long                headerSize    = 0;
+   /** Incremental compressor of the PNG format */
+   private Deflater            deflater      = null;
+   /** Compressed data buffer of the PNG format */
+   private byte[]              compressed    = null;
+   /** Next row to be written */
+   private int                 nextRow       = 0;
+
+   /**
+    * Creates the image file and writes its header
+    * @param  imageName   the file name (without extension) in the images directory
+    * @param  format      the file format
+    * @param  width       image width
+    * @param  height      image height
+    * @param  toneMapping tone mapping operator of 8 bit formats
+    * @param  exposure    exposure scale of 8 bit formats (1 - none)
+    * @param  srgb        whether to encode 8 bit colors by sRGB gamma
+    * @throws IllegalStateException in case of I/O error
+    */
+   StreamingImageWriter(String imageName, ImageFormat format, int width, int height,
+                        ToneMapping toneMapping, double exposure, boolean srgb) {
+      this.width       = width;
+      this.height      = height;
+      this.format      = format;
+      this.toneMapping = toneMapping;
+      this.exposure    = exposure;
+      this.srgb        = srgb;
+      Path file = Path.of(FOLDER_PATH, imageName + '.' + format.extension);
+      try {
+         switch (format) {
+            case PNG -> {
+               out = new BufferedOutputStream(new FileOutputStream(file.toFile()), IDAT_SIZE);
+               out.write(PNG_SIGNATURE);
+               ByteBuffer header = ByteBuffer.allocate(13);
+               header.putInt(width).putInt(height)
+                     .put((byte) 8).put((byte) 2) // 8 bit depth, RGB color type
+                     .put((byte) 0).put((byte) 0).put((byte) 0); // Deflate, adaptive filtering, no interlace
+               writeChunk(out, "IHDR", header.array(), header.position());
+               deflater   = new Deflater();
+               compressed = new byte[IDAT_SIZE];
+            }
+            case PPM -> {
+               out = new BufferedOutputStream(new FileOutputStream(file.toFile()), IDAT_SIZE);
+               out.write(("P6\n" + width + ' ' + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+            }
+            case PFM -> {
+               channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                          StandardOpenOption.TRUNCATE_EXISTING);
+               byte[] header = ("PF\n" + width + ' ' + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII);
+               channel.write(ByteBuffer.wrap(header), 0);
+               headerSize = header.length;
+            }
+         }
+      } catch (IOException e) {
+         throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+      }
+   }
+
+   /**
+    * Writes the next band of rows
+    * @param pixels the colors of the band, 3 floats (R, G, B) per pixel, row by row
+    * @param rows   amount of rows in the band
+    * @throws IllegalStateException in case of I/O error
+    */
+   void writeBand(float[] pixels, int rows) {
+      if (nextRow + rows > height) throw new IllegalArgumentException("Band is beyond the image bottom");
+      try {
+         switch (format) {
+            case PNG -> {
+               byte[] raw = new byte[rows * (1 + 3 * width)];
+               for (int y = 0; y < rows; ++y) {
+                  int row = y * (1 + 3 * width);
+                  raw[row] = 1; // Sub filter - each byte relative to the byte of the previous pixel
+                  for (int i = 0; i < 3 * width; ++i)
+                     raw[row + 1 + i] = (byte) toneMapping.toByte(pixels[3 * y * width + i], exposure, srgb);
+                  for (int i = 3 * width - 1; i >= 3; --i) raw[row + 1 + i] -= raw[row + 1 + i - 3];
+               }
+               deflater.setInput(raw);
+               while (!deflater.needsInput()) flushCompressed();
+            }
+            case PPM -> {
+               byte[] raw = new byte[3 * width * rows];
+               for (int i = 0; i < raw.length; ++i)
+                  raw[i] = (byte) toneMapping.toByte(pixels[i], exposure, srgb);
+               out.write(raw);
+            }
+            case PFM -> {
+               ByteBuffer row = ByteBuffer.allocate(12 * width).order(ByteOrder.LITTLE_ENDIAN);
+               for (int y = 0; y < rows; ++y) {
+                  row.clear();
+                  row.asFloatBuffer().put(pixels, 3 * y * width, 3 * width);
+                  // PFM rows are stored bottom to top
+                  long position = headerSize + (long) (height - 1 - nextRow - y) * 12 * width;
+                  while (row.hasRemaining()) position += channel.write(row, position);
+               }
+            }
+         }
+      } catch (IOException e) {
+         throw new IllegalStateException("I/O error writing image", e);
+      }
+      nextRow += rows;
+   }
+
+   /**
+    * Writes the compressed data produced so far as an IDAT chunk
+    * @throws IOException in case of I/O error
+    */
+   private void flushCompressed() throws IOException {
+      int size = deflater.deflate(compressed);
+      if (size > 0) writeChunk(out, "IDAT", compressed, size);
+   }
+
+   /**
+    * Writes a PNG chunk
+    * @param  out    the output
+    * @param  type   the chunk type
+    * @param  data   the chunk data
+    * @param  length the chunk data length
+    * @throws IOException in case of I/O error
+    */
+   static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+      byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+      CRC32  crc       = new CRC32();
+      crc.update(typeBytes);
+      crc.update(data, 0, length);
+      DataOutputStream chunk = new DataOutputStream(out);
+      chunk.writeInt(length);
+      chunk.write(typeBytes);
+      chunk.write(data, 0, length);
+      chunk.writeInt((int) crc.getValue());
+   }
+
+   /**
+    * Completes the image file
+    * @throws IllegalStateException if not all the rows were written, or in case of I/O error
+    */
+   @Override
+   public void close() {
+      try {
+         if (format == ImageFormat.PNG) {
+            deflater.finish();
+            while (!deflater.finished()) flushCompressed();
+            deflater.end();
+            writeChunk(out, "IEND", new byte[0], 0);
+         }
+         if (out != null) out.close();
+         if (channel != null) channel.close();
+      } catch (IOException e) {
+         throw new IllegalStateException("I/O error writing image", e);
+      }
+      if (nextRow != height)
+         throw new IllegalStateException("Image closed after " + nextRow + " of " + height + " rows");
+   }
+}
@@ -0,0 +1,57 @@
+package renderer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable rectangular region of pixels of the image - used as a crop window
+ * and as a unit of rendering work
+ * @param x      column of the top-left pixel
+ * @param y      row of the top-left pixel
+ * @param width  amount of pixel columns
+ * @param height amount of pixel rows
+ * @author Eitan Lafair
+ */
+public record Tile(int x, int y, int width, int height) implements Serializable {
+   /**
+    * Constructor with validation of the region size
+    * @param x      column of the top-left pixel
+    * @param y      row of the top-left pixel
+    * @param width  amount of pixel columns
+    * @param height amount of pixel rows
+    */
+   public Tile {
+      if (x < 0 || y < 0) throw new IllegalArgumentException("Tile position must be non-negative");
+      if (width <= 0 || height <= 0) throw new IllegalArgumentException("Tile size must be positive");
+   }
+
+   /**
+    * Amount of pixels in the tile
+    * @return width * height
+    */
+   public int size() { return width * height; }
+
+   /**
+    * Checks whether the tile lies inside an image of the given resolution
+    * @param  nX horizontal resolution of the image
+    * @param  nY vertical resolution of the image
+    * @return    true if all the pixels of the tile are in the image
+    */
+   public boolean fitsIn(int nX, int nY) { return x + width <= nX && y + height <= nY; }
+
+   /**
+    * Splits the tile into tiles of a given edge size (the tiles at the right and
+    * bottom edges may be smaller)
+    * @param  size edge size of the tiles
+    * @return      the tiles, row by row
+    */
+   public List<Tile> split(int size) {
+      if (size <= 0) throw new IllegalArgumentException("Tile size must be positive");
+      List<Tile> tiles = new ArrayList<>();
+      for (int ty = y; ty < y + height; ty += size)
+         for (int tx = x; tx < x + width; tx += size)
+            tiles.add(new Tile(tx, ty, Math.min(size, x + width - tx), Math.min(size, y + height - ty)));
+      return tiles;
+   }
+}
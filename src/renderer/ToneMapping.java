@@ -0,0 +1,48 @@
+package renderer;
+
+/**
+ * Tone mapping operators - mapping of the high dynamic range colors of the
+ * rendered image (in the color scale of 0..255 for the displayable range, but
+ * unbounded) into the displayable range
+ * @author Eitan Lafair
+ */
+public enum ToneMapping {
+   /** Clamp to the displayable range - the brightest colors are saturated */
+   CLAMP {
+      @Override
+      double map(double x) { return x; }
+   },
+   /** Reinhard operator x/(1+x) - compresses the highlights smoothly */
+   REINHARD {
+      @Override
+      double map(double x) { return x / (1 + x); }
+   },
+   /** ACES filmic curve (Narkowicz approximation) - filmic contrast and highlights */
+   ACES {
+      @Override
+      double map(double x) { return x * (2.51 * x + 0.03) / (x * (2.43 * x + 0.59) + 0.14); }
+   };
+
+   /**
+    * Maps a color component
+    * @param  x the component, normalized (1 is the top of the displayable range)
+    * @return   the mapped component, normalized (clamped afterwards into [0,1])
+    */
+   abstract double map(double x);
+
+   /**
+    * Tone maps a color component into 8 bits
+    * @param  value    the component (0..255 is the displayable range)
+    * @param  exposure exposure scale of the component
+    * @param  srgb     whether to encode the mapped component by sRGB gamma
+    * @return          the 8 bit value
+    */
+   int toByte(float value, double exposure, boolean srgb) {
+      if (this == CLAMP && exposure == 1 && !srgb) // Plain truncation into the range
+         return value >= 255 ? 255 : value <= 0 ? 0 : (int) value;
+      double x = map(value * exposure / 255);
+      x = x >= 1 ? 1 : x <= 0 ? 0 : x;
+      if (srgb) x = x <= 0.0031308 ? 12.92 * x : 1.055 * Math.pow(x, 1 / 2.4) - 0.055;
+      return (int) (x * 255 + 0.5);
+   }
+}
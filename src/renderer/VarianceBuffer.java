@@ -0,0 +1,83 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+/**
+ * Per-pixel running statistics of the sample luminance for variance driven
+ * adaptive sampling. The mean and the variance are updated by Welford's online
+ * algorithm, which needs no stored samples and is numerically stable.<br/>
+ * Each pixel is expected to be updated by a single thread at a time.
+ * @author Eitan Lafair
+ */
+final class VarianceBuffer {
+   /** The normal distribution quantile of a 95% confidence interval */
+   private static final double Z_95 = 1.96;
+
+   /** Horizontal resolution - number of pixels in row */
+   private final int      nX;
+   /** Amount of samples of each pixel */
+   private final int[]    counts;
+   /** Running mean of the luminance of each pixel */
+   private final double[] means;
+   /** Running sum of squared luminance deviations of each pixel */
+   private final double[] m2;
+
+   /**
+    * Constructs empty statistics
+    * @param nX amount of pixels by width
+    * @param nY amount of pixels by height
+    */
+   VarianceBuffer(int nX, int nY) {
+      this.nX = nX;
+      counts  = new int[nX * nY];
+      means   = new double[nX * nY];
+      m2      = new double[nX * nY];
+   }
+
+   /**
+    * Luminance of a color (Rec. 709 weights)
+    * @param  color the color
+    * @return       the luminance, in the color scale
+    */
+   static double luminance(Color color) {
+      Double3 rgb = color.getRgb();
+      return 0.2126 * rgb.d1() + 0.7152 * rgb.d2() + 0.0722 * rgb.d3();
+   }
+
+   /**
+    * Adds a sample to the statistics of a pixel
+    * @param xIndex X axis index of the pixel
+    * @param yIndex Y axis index of the pixel
+    * @param color  the sample color
+    */
+   void add(int xIndex, int yIndex, Color color) {
+      int    index = yIndex * nX + xIndex;
+      double value = luminance(color);
+      int    n     = ++counts[index];
+      double delta = value - means[index];
+      means[index] += delta / n;
+      m2[index]    += delta * (value - means[index]);
+   }
+
+   /**
+    * Amount of samples of a pixel
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the amount of samples
+    */
+   int count(int xIndex, int yIndex) { return counts[yIndex * nX + xIndex]; }
+
+   /**
+    * Half width of the 95% confidence interval of the pixel mean luminance
+    * @param  xIndex X axis index of the pixel
+    * @param  yIndex Y axis index of the pixel
+    * @return        the error bound, infinite while there are less than 2 samples
+    */
+   double error(int xIndex, int yIndex) {
+      int index = yIndex * nX + xIndex;
+      int n     = counts[index];
+      if (n < 2) return Double.POSITIVE_INFINITY;
+      return Z_95 * Math.sqrt(m2[index] / (n - 1) / n);
+   }
+}
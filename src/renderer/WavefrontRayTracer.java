@@ -0,0 +1,176 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.Material;
+import primitives.*;
+import scene.Scene;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static primitives.Util.alignZero;
+
+/**
+ * Wavefront ray tracer - traces a whole set of camera rays (a tile of the
+ * image, see {@link Camera#renderImage()}) stage after stage instead of ray
+ * after ray. Each wave of rays is kept in a {@link RayQueue} and goes through
+ * the stages:
+ * <ol>
+ * <li>intersection of all the rays of the wave</li>
+ * <li>shading of the hits grouped by material - the local effects with their
+ * shadow rays, and the global effects which are not traced</li>
+ * <li>emission of the reflection and refraction rays into the queue of the
+ * next wave, with their attenuation along the ray tree</li>
+ * <li>accumulation of the attenuated colors into the samples</li>
+ * </ol>
+ * until no ray is left. The colors are those of {@link SimpleRayTracer} up to
+ * rounding - the contributions of the ray tree are summed in another order.
+ * Single rays (and every other rendering mode of the camera) are traced as by
+ * the simple ray tracer.
+ *
+ * @author Eitan Lafair
+ */
+public class WavefrontRayTracer extends SimpleRayTracer {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a wavefront ray tracer for the given scene
+     *
+     * @param scene the scene
+     */
+    public WavefrontRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Traces a set of camera rays as a wavefront
+     *
+     * @param rays  the rays
+     * @param seeds the random key of each ray
+     * @return the color seen by each ray
+     */
+    public Color[] traceRays(Ray[] rays, long[] seeds) {
+        if (rays.length != seeds.length) throw new IllegalArgumentException("Each ray needs a random key");
+        RayQueue queue = new RayQueue(rays.length);
+        for (int i = 0; i < rays.length; i++) queue.add(rays[i], i, MAX_CALC_COLOR_LEVEL, seeds[i], 1, 1, 1);
+        double[] rgb = new double[3 * rays.length];
+        trace(queue, rgb);
+        Color[] colors = new Color[rays.length];
+        for (int i = 0; i < rays.length; i++) colors[i] = new Color(rgb[3 * i], rgb[3 * i + 1], rgb[3 * i + 2]);
+        return colors;
+    }
+
+    /**
+     * Traces a wave of camera rays and all the waves of their secondary rays,
+     * adding the colors to their samples
+     *
+     * @param queue the camera rays (of depth {@link #MAX_CALC_COLOR_LEVEL}), emptied on return
+     * @param rgb   the colors of the samples, by components, to be added to
+     */
+    void trace(RayQueue queue, double[] rgb) {
+        RayQueue next = new RayQueue(queue.size);
+        Intersection[] hits = new Intersection[queue.size];
+        int[] materials = new int[queue.size];
+        int[] order = new int[queue.size];
+        double[] cr = new double[queue.size], cg = new double[queue.size], cb = new double[queue.size];
+        Map<Material, Integer> materialIds = new IdentityHashMap<>();
+        Double3 background = scene.background.getRgb();
+
+        while (queue.size > 0) {
+            int n = queue.size;
+            if (hits.length < n) {
+                hits = new Intersection[n];
+                materials = new int[n];
+                order = new int[n];
+                cr = new double[n];
+                cg = new double[n];
+                cb = new double[n];
+            }
+
+            // Intersection stage
+            for (int i = 0; i < n; i++) hits[i] = findClosestIntersection(queue.rays[i]);
+
+            // Misses - the background for camera rays, black for secondary rays
+            int materialCount = 0;
+            materialIds.clear();
+            for (int i = 0; i < n; i++) {
+                boolean camera = queue.levels[i] == MAX_CALC_COLOR_LEVEL;
+                cr[i] = hits[i] == null && camera ? background.d1() : 0;
+                cg[i] = hits[i] == null && camera ? background.d2() : 0;
+                cb[i] = hits[i] == null && camera ? background.d3() : 0;
+                if (hits[i] == null) materials[i] = -1;
+                else {
+                    Integer id = materialIds.get(hits[i].material);
+                    if (id == null) materialIds.put(hits[i].material, id = materialCount++);
+                    materials[i] = id;
+                }
+            }
+
+            // Group the hits by material (counting sort) for coherent shading
+            int[] starts = new int[materialCount + 1];
+            for (int i = 0; i < n; i++) if (materials[i] >= 0) starts[materials[i] + 1]++;
+            for (int m = 0; m < materialCount; m++) starts[m + 1] += starts[m];
+            int hitCount = starts[materialCount];
+            for (int i = 0; i < n; i++) if (materials[i] >= 0) order[starts[materials[i]]++] = i;
+
+            // Shading stage, emitting the secondary rays of the next wave
+            for (int h = 0; h < hitCount; h++) {
+                int i = order[h];
+                Color color = shade(hits[i], queue, i, next);
+                Double3 c = color.getRgb();
+                cr[i] = c.d1();
+                cg[i] = c.d2();
+                cb[i] = c.d3();
+                hits[i] = null;
+            }
+
+            // Accumulation stage
+            for (int i = 0; i < n; i++) {
+                int target = 3 * queue.targets[i];
+                rgb[target] += queue.kr[i] * cr[i];
+                rgb[target + 1] += queue.kg[i] * cg[i];
+                rgb[target + 2] += queue.kb[i] * cb[i];
+            }
+
+            RayQueue done = queue;
+            queue = next;
+            next = done;
+            next.clear();
+        }
+    }
+
+    /**
+     * Shades the hit of a ray of a wave - its local effects, and the global
+     * effects which are not traced - and emits its reflection and refraction
+     * rays into the next wave
+     *
+     * @param intersection the hit
+     * @param queue        the wave
+     * @param i            the index of the ray in the wave
+     * @param next         the next wave
+     * @return the color of the hit, before the attenuation of the ray
+     */
+    private Color shade(Intersection intersection, RayQueue queue, int i, RayQueue next) {
+        intersection.seed = queue.seeds[i];
+        if (!preprocessIntersection(intersection, queue.rays[i].direction)) return Color.BLACK;
+        if (alignZero(intersection.normalAtPoint.dotProduct(intersection.viewDirection)) == 0)
+            return Color.BLACK; // Skip if view direction is perpendicular
+        Color color = calcColorLocalEffects(intersection);
+        int level = queue.levels[i];
+        if (level == 1) return color; // No global effects at the last level
+
+        double r = queue.kr[i], g = queue.kg[i], b = queue.kb[i];
+        Color global = calcGlobalEffects(intersection, level, new Double3(r, g, b));
+        if (global == null) return color; // Too dim
+
+        Double3 kR = intersection.material.kR;
+        if (!kR.equals(Double3.ZERO))
+            next.add(reflectedRay(intersection), queue.targets[i], level - 1, CounterRng.key(intersection.seed, 0),
+                    r * kR.d1(), g * kR.d2(), b * kR.d3());
+        Double3 kT = intersection.material.kT;
+        if (!kT.equals(Double3.ZERO))
+            next.add(refractedRay(intersection), queue.targets[i], level - 1, CounterRng.key(intersection.seed, 1),
+                    r * kT.d1(), g * kT.d2(), b * kT.d3());
+        return color.add(global);
+    }
+}
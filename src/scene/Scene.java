@@ -5,6 +5,7 @@ import lighting.AmbientLight;
 import lighting.LightSource;
 import primitives.Color;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -12,12 +13,14 @@ import java.util.List;
  * A class that represents a 3D scene with background, light, and shapes.
  * @author Eitan Lafair
  */
-public class Scene {
+public class Scene implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     String name;
     public Color background = Color.BLACK;
     public AmbientLight ambientLight = AmbientLight.NONE;
     public Geometries geometries = new Geometries();
+    @SuppressWarnings("serial") // Expected to be a serializable list
     public List<LightSource> lights = new LinkedList<>();
 
     public Scene setLights(List<LightSource> lights) {
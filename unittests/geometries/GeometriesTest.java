@@ -5,8 +5,12 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit tests for the {@link Geometries} class, focusing on the
@@ -60,4 +64,38 @@ public class GeometriesTest {
                 "Suppose to be 4 intersection points");
 
     }
+
+    /**
+     * Test for the {@link Geometries#hasIntersection(Ray, double)} method.
+     */
+    @Test
+    void testHasIntersection() {
+        int[] queried = { 0 };
+        Sphere near = new Sphere(new Point(0, 0, 10), 2);
+        Sphere counted = new Sphere(new Point(0, 0, 20), 2) {
+            @Override
+            public boolean hasIntersection(Ray ray, double maxDistance) {
+                queried[0]++;
+                return super.hasIntersection(ray, maxDistance);
+            }
+        };
+        Geometries geometries = new Geometries(near, counted);
+        Ray ray = new Ray(Point.ZERO, new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a hit within the distance - the next geometries are not queried
+        assertTrue(geometries.hasIntersection(ray, 100), "the near sphere must be hit");
+        assertEquals(0, queried[0], "any hit must stop the query");
+        // TC02: all the hits beyond the distance
+        assertFalse(geometries.hasIntersection(ray, 5), "hits beyond the distance must be ignored");
+        assertEquals(1, queried[0], "all the geometries must be queried without a hit");
+        // TC03: a hit within the distance of a later geometry
+        assertTrue(new Geometries(counted).hasIntersection(ray, 19), "the far sphere must be hit");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a hit exactly at the distance is not closer than it
+        assertFalse(near.hasIntersection(ray, 8), "hit at the distance must be ignored");
+        // TC12: no geometries
+        assertFalse(new Geometries().hasIntersection(ray, 100), "empty collection has no hits");
+    }
 }
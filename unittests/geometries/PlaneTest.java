@@ -154,4 +154,40 @@ class PlaneTests {
 
 
     }
+
+    /**
+     * Test method for {@link geometries.Plane#hasIntersection(primitives.Ray, double)}.
+     */
+    @Test
+    void testHasIntersection() {
+        // the intersections list must not be built for an any-hit query
+        Plane plane = new Plane(new Point(1, 0, 1), new Point(0, 1, 1), new Point(1, 1, 1)) {
+            @Override
+            protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+                return fail("the intersections must not be calculated");
+            }
+        };
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray intersects the plane within the distance
+        assertTrue(plane.hasIntersection(new Ray(new Point(1, 1, 0), new Vector(0, 0, 1)), 2),
+                "the plane must be hit");
+        // TC02: Ray intersects the plane beyond the distance
+        assertFalse(plane.hasIntersection(new Ray(new Point(1, 1, 0), new Vector(0, 0, 1)), 0.5),
+                "a hit beyond the distance must be ignored");
+        // TC03: Ray does not intersect the plane
+        assertFalse(plane.hasIntersection(new Ray(new Point(1, 1, 2), new Vector(0, 0, 1)), 2),
+                "a plane behind the ray must be missed");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: the hit is exactly at the distance
+        assertFalse(plane.hasIntersection(new Ray(new Point(1, 1, 0), new Vector(0, 0, 1)), 1),
+                "a hit at the distance is not closer than it");
+        // TC12: Ray is parallel to the plane
+        assertFalse(plane.hasIntersection(new Ray(new Point(1, 1, 0), new Vector(1, 0, 0)), 2),
+                "a parallel ray must miss the plane");
+        // TC13: Ray begins at the plane
+        assertFalse(plane.hasIntersection(new Ray(new Point(2, 4, 1), new Vector(2, 3, 5)), 2),
+                "a ray starting at the plane must miss it");
+    }
 }
@@ -155,15 +155,52 @@ class SphereTest {
 
     }
 
-}
-
-
-
-
-
-
-
-
-
-
+    /**
+     * Test method for {@link geometries.Sphere#hasIntersection(primitives.Ray, double)}.
+     */
+    @Test
+    void testHasIntersection() {
+        // the intersections list must not be built for an any-hit query
+        Sphere sphere = new Sphere(new Point(0, 0, 0), 1) {
+            @Override
+            protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+                return fail("the intersections must not be calculated");
+            }
+        };
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray starts before the sphere, the hit is within the distance
+        assertTrue(sphere.hasIntersection(new Ray(new Point(0, 0, -3), new Vector(0, 0, 1)), 5),
+                "the sphere must be hit");
+        // TC02: Ray starts before the sphere, both the hits are beyond the distance
+        assertFalse(sphere.hasIntersection(new Ray(new Point(0, 0, -3), new Vector(0, 0, 1)), 1),
+                "hits beyond the distance must be ignored");
+        // TC03: Ray starts inside the sphere, the hit is within the distance
+        assertTrue(sphere.hasIntersection(new Ray(new Point(0, 0, 0.5), new Vector(0, 0, 1)), 1),
+                "the sphere must be hit from inside");
+        // TC04: Ray starts inside the sphere, the hit is beyond the distance
+        assertFalse(sphere.hasIntersection(new Ray(new Point(0, 0, 0.5), new Vector(0, 0, 1)), 0.4),
+                "a hit beyond the distance must be ignored");
+        // TC05: Ray's line is outside the sphere
+        assertFalse(sphere.hasIntersection(new Ray(new Point(0, 0, -3), new Vector(1, 0, 0)), 5),
+                "the sphere must be missed");
+        // TC06: Ray starts after the sphere
+        assertFalse(sphere.hasIntersection(new Ray(new Point(0, 0, 3), new Vector(0, 0, 1)), 5),
+                "a sphere behind the ray must be missed");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: the hit is exactly at the distance
+        assertFalse(sphere.hasIntersection(new Ray(new Point(0, 0, -3), new Vector(0, 0, 1)), 2),
+                "a hit at the distance is not closer than it");
+        // TC12: Ray starts at the center, the hit is within the distance
+        assertTrue(sphere.hasIntersection(new Ray(Point.ZERO, new Vector(0, 0, 1)), 2),
+                "the sphere must be hit from its center");
+        // TC13: Ray starts at the center, the hit is exactly at the distance
+        assertFalse(sphere.hasIntersection(new Ray(Point.ZERO, new Vector(0, 0, 1)), 1),
+                "a hit at the distance is not closer than it");
+        // TC14: Ray starts on the sphere and goes outside
+        assertFalse(sphere.hasIntersection(new Ray(new Point(0, 0, 1), new Vector(0, 0, 1)), 5),
+                "a ray leaving the sphere must miss it");
+    }
 
+}
@@ -73,11 +73,37 @@ class TriangleTest {
                 "The point supposed to be on edge's continuation");
     }
 
+    /**
+     * Test method for {@link geometries.Triangle#hasIntersection(primitives.Ray, double)}.
+     */
+    @Test
+    void testHasIntersection() {
+        // the intersections list must not be built for an any-hit query
+        Triangle triangle = new Triangle(new Point(0, 1, 0), new Point(0, 5, 0), new Point(0, 3, 5)) {
+            @Override
+            protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+                return fail("the intersections must not be calculated");
+            }
+        };
 
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The intersection point is in the triangle, within the distance
+        assertTrue(triangle.hasIntersection(new Ray(new Point(1, 3, 1), new Vector(-1, 0, 0)), 2),
+                "the triangle must be hit");
+        // TC02: The intersection point is in the triangle, beyond the distance
+        assertFalse(triangle.hasIntersection(new Ray(new Point(1, 3, 1), new Vector(-1, 0, 0)), 0.5),
+                "a hit beyond the distance must be ignored");
+        // TC03: The intersection point is outside the triangle
+        assertFalse(triangle.hasIntersection(new Ray(new Point(1, 0, 0), new Vector(-1, 0, 1)), 5),
+                "the triangle must be missed");
 
+        // =============== Boundary Values Tests ==================
+        // TC11: the hit is exactly at the distance
+        assertFalse(triangle.hasIntersection(new Ray(new Point(1, 3, 1), new Vector(-1, 0, 0)), 1),
+                "a hit at the distance is not closer than it");
+        // TC12: The point is on edge
+        assertFalse(triangle.hasIntersection(new Ray(new Point(1, 3, 0), new Vector(-1, 0, 0)), 5),
+                "a hit on an edge must be ignored");
+    }
 
-
-
-
-
-}
\ No newline at end of file
+}
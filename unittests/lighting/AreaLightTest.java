@@ -0,0 +1,60 @@
+package lighting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.*;
+import renderer.BlackBoard;
+
+/**
+ * Tests for the sample points of area lights
+ *
+ * @author Eitan Lafair
+ */
+class AreaLightTest {
+    /**
+     * Test method for {@link lighting.AreaLight#getSamplePoint(int)}
+     */
+    @Test
+    void testSamplePoints() {
+        Point center = new Point(1, 2, 3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: rectangle - a grid of samples on the surface
+        AreaLight rectangle = new AreaLight(new Color(1, 1, 1), center, Vector.AXIS_X, Vector.AXIS_Y, 4, 2,
+                BlackBoard.Shape.RECTANGLE);
+        assertEquals(16, rectangle.getSampleCount(), "wrong amount of rectangle samples");
+        for (int s = 0; s < rectangle.getSampleCount(); s++) {
+            Vector offset = rectangle.getSamplePoint(s).subtract(center);
+            assertEquals(0, offset.dotProduct(Vector.AXIS_Z), 1e-10, "sample must be on the surface");
+            assertTrue(Math.abs(offset.dotProduct(Vector.AXIS_X)) < 2
+                    && Math.abs(offset.dotProduct(Vector.AXIS_Y)) < 1, "sample must be inside the rectangle");
+        }
+        // TC02: the first batch is spread over the surface - a sample in each quadrant
+        boolean[] quadrants = new boolean[4];
+        for (int s = 0; s < rectangle.getShadowBatch(); s++) {
+            Vector offset = rectangle.getSamplePoint(s).subtract(center);
+            quadrants[(offset.dotProduct(Vector.AXIS_X) > 0 ? 1 : 0) + (offset.dotProduct(Vector.AXIS_Y) > 0 ? 2 : 0)] = true;
+        }
+        assertArrayEquals(new boolean[] { true, true, true, true }, quadrants, "first batch must cover the surface");
+
+        // TC03: disk - samples inside the circle, in the plane of the disk
+        AreaLight disk = new AreaLight(new Color(1, 1, 1), center, new Vector(1, 1, 0), 3).setSamples(6);
+        assertTrue(disk.getSampleCount() < 36, "disk must have less samples than its square");
+        for (int s = 0; s < disk.getSampleCount(); s++) {
+            Vector offset = disk.getSamplePoint(s).subtract(center);
+            assertEquals(0, offset.dotProduct(new Vector(1, 1, 0).normalize()), 1e-10, "sample must be on the disk");
+            assertTrue(offset.length() <= 3, "sample must be inside the disk");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a single sample - the center, and a batch of all the samples
+        AreaLight single = new AreaLight(new Color(1, 1, 1), center, Vector.AXIS_Z, 1).setSamples(1);
+        assertEquals(center, single.getSamplePoint(0), "single sample must be the center");
+        assertEquals(1, single.getShadowBatch(), "batch must not exceed the samples");
+        // TC12: bad parameters
+        assertThrows(IllegalArgumentException.class, () -> single.setSamples(0), "samples must be positive");
+        assertThrows(IllegalArgumentException.class, () -> single.setShadowBatch(0), "batch must be positive");
+    }
+}
@@ -0,0 +1,114 @@
+package lighting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.*;
+
+/**
+ * Tests for the influence radius of lights and the spatial index of lights
+ *
+ * @author Eitan Lafair
+ */
+class LightIndexTest {
+    /** Negligible intensity of the tests */
+    private static final double THRESHOLD = 1e-5;
+
+    /**
+     * Test method for {@link lighting.PointLight#getInfluenceRadius(double)}
+     */
+    @Test
+    void testInfluenceRadius() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: quadratic attenuation - the intensity at the radius is the threshold
+        PointLight quadratic = new PointLight(new Color(100, 200, 50), Point.ZERO).setKl(0.5).setKQ(0.01);
+        double radius = quadratic.getInfluenceRadius(THRESHOLD);
+        assertEquals(THRESHOLD, quadratic.getIntensity(new Point(radius, 0, 0)).getRgb().d2(), 1e-12,
+                "wrong quadratic radius");
+        // TC02: linear attenuation
+        PointLight linear = new PointLight(new Color(100, 200, 50), Point.ZERO).setKl(0.5);
+        radius = linear.getInfluenceRadius(THRESHOLD);
+        assertEquals(THRESHOLD, linear.getIntensity(new Point(0, radius, 0)).getRgb().d2(), 1e-12,
+                "wrong linear radius");
+        // TC03: no attenuation with distance, and directional lights
+        assertEquals(Double.POSITIVE_INFINITY, new PointLight(new Color(1, 1, 1), Point.ZERO)
+                .getInfluenceRadius(THRESHOLD), "unattenuated light must reach everywhere");
+        assertEquals(Double.POSITIVE_INFINITY, new DirectionalLight(new Color(1, 1, 1), Vector.AXIS_Z)
+                .getInfluenceRadius(THRESHOLD), "directional light must reach everywhere");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a light which is negligible everywhere
+        assertEquals(0, new PointLight(new Color(1, 1, 1), Point.ZERO).setKc(1e6).setKl(1)
+                .getInfluenceRadius(THRESHOLD), "negligible light must have no radius");
+    }
+
+    /**
+     * Test method for {@link lighting.SpotLight#getInfluenceCone(double)}
+     */
+    @Test
+    void testInfluenceCone() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the beam factor of the strongest intensity at the cone is the threshold
+        SpotLight spot = new SpotLight(new Color(100, 200, 50), Point.ZERO, Vector.AXIS_X).setNarrowBeam(2).setKc(2);
+        double cos = spot.getInfluenceCone(THRESHOLD);
+        assertEquals(THRESHOLD, 100 * cos * cos, 1e-12, "wrong cone");
+        // TC02: lights without a cone
+        assertEquals(-1, new PointLight(new Color(1, 1, 1), Point.ZERO).getInfluenceCone(THRESHOLD),
+                "point light must have no cone");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a beam which does not fade is cut at the hemisphere
+        assertEquals(0, new SpotLight(new Color(1, 1, 1), Point.ZERO, Vector.AXIS_X).setNarrowBeam(0)
+                .getInfluenceCone(THRESHOLD), "unfaded beam must cover the hemisphere");
+    }
+
+    /**
+     * Test method for {@link lighting.LightIndex#lightsAt(Point)}
+     */
+    @Test
+    void testLightsAt() {
+        List<LightSource> lights = new LinkedList<>();
+        LightSource sun = new DirectionalLight(new Color(10, 10, 10), Vector.AXIS_Z);
+        LightSource near = new PointLight(new Color(1, 1, 1), new Point(0, 0, 0)).setKQ(1);
+        LightSource far = new SpotLight(new Color(1, 1, 1), new Point(10000, 0, 0), Vector.AXIS_X).setKq(1);
+        LightSource dark = new PointLight(new Color(1, 1, 1), new Point(0, 0, 0)).setKc(1e6);
+        lights.add(near);
+        lights.add(sun);
+        lights.add(dark);
+        lights.add(far);
+        LightIndex index = new LightIndex(lights, THRESHOLD);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a point near a light - the light and the unbounded ones, in the scene order
+        assertArrayEquals(new LightSource[] { near, sun }, index.lightsAt(new Point(10, 10, 0)),
+                "wrong lights near the first light");
+        assertArrayEquals(new LightSource[] { sun, far }, index.lightsAt(new Point(10010, 0, 0)),
+                "wrong lights near the second light");
+        // TC02: a point far from all the lights
+        assertArrayEquals(new LightSource[] { sun }, index.lightsAt(new Point(0, 0, 50000)),
+                "only the unbounded light reaches far");
+        // TC03: the index is stale after a light is added
+        assertTrue(index.isFor(lights), "index must be up to date");
+        lights.add(new DirectionalLight(new Color(1, 1, 1), Vector.AXIS_X));
+        assertFalse(index.isFor(lights), "index must be stale");
+        // TC04: a spot light is not visited behind its cone
+        List<LightSource> spots = new LinkedList<>();
+        LightSource spot = new SpotLight(new Color(1, 1, 1), Point.ZERO, Vector.AXIS_X).setKq(1);
+        spots.add(spot);
+        for (int i = 0; i < 4; i++) spots.add(new PointLight(new Color(1, 1, 1), Point.ZERO).setKQ(1e4));
+        LightIndex spotIndex = new LightIndex(spots, THRESHOLD);
+        assertArrayEquals(new LightSource[] { spot }, spotIndex.lightsAt(new Point(250, 0, 0)),
+                "the spot light must be visited in its cone");
+        assertArrayEquals(new LightSource[0], spotIndex.lightsAt(new Point(-250, 0, 0)),
+                "the spot light must not be visited behind it");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: no lights
+        assertEquals(0, new LightIndex(new LinkedList<>(), THRESHOLD).lightsAt(Point.ZERO).length,
+                "no lights must be visited");
+    }
+}
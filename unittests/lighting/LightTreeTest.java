@@ -0,0 +1,110 @@
+package lighting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Plane;
+import primitives.*;
+import renderer.SimpleRayTracer;
+import scene.Scene;
+
+/**
+ * Tests for the light tree sampling of many lights
+ *
+ * @author Eitan Lafair
+ */
+class LightTreeTest {
+    /**
+     * Test method for {@link lighting.LightTree#sample(Point, double, double[])}
+     * and {@link lighting.LightTree#pdf(Point, LightSource)}
+     */
+    @Test
+    void testSample() {
+        List<LightSource> lights = new LinkedList<>();
+        for (int k = 0; k < 9; k++)
+            lights.add(new PointLight(new Color(10 + k, 10, 10), new Point(20 * k, 5 * (k % 3), 0)).setKQ(0.01));
+        LightSource sun = new DirectionalLight(new Color(10, 10, 10), Vector.AXIS_Z);
+        lights.add(sun);
+        LightTree tree = new LightTree(lights);
+        Point point = new Point(30, 0, 10);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the probabilities of the located lights are positive and sum to 1
+        double sum = 0;
+        for (LightSource light : lights.subList(0, 9)) {
+            double pdf = tree.pdf(point, light);
+            assertTrue(pdf > 0, "a light which reaches the point must be sampled");
+            sum += pdf;
+        }
+        assertEquals(1, sum, 1e-12, "probabilities must sum to 1");
+        // TC02: the nearest light is the most probable
+        assertTrue(tree.pdf(point, lights.get(1)) > tree.pdf(point, lights.get(8)), "near light must be preferred");
+
+        // TC03: stratified samples choose the lights by their probabilities
+        final int n = 10000;
+        double[] pdf = new double[1];
+        int[] counts = new int[9];
+        for (int s = 0; s < n; s++) {
+            LightSource light = tree.sample(point, (s + 0.5) / n, pdf);
+            int k = lights.indexOf(light);
+            counts[k]++;
+            assertEquals(tree.pdf(point, light), pdf[0], 1e-12, "wrong probability of a sample");
+        }
+        for (int k = 0; k < 9; k++)
+            assertEquals(tree.pdf(point, lights.get(k)), (double) counts[k] / n, 1e-3, "wrong frequency of " + k);
+
+        // TC04: lights at infinity are not in the tree
+        assertEquals(List.of(sun), tree.getUnboundedLights(), "wrong unbounded lights");
+        assertEquals(0, tree.pdf(point, sun), "unbounded light must not be sampled");
+
+        // TC05: a spot light facing away from the point is never sampled
+        List<LightSource> spots = new LinkedList<>();
+        LightSource away = new SpotLight(new Color(100, 100, 100), Point.ZERO, Vector.AXIS_X);
+        LightSource toward = new SpotLight(new Color(1, 1, 1), new Point(0, 10, 0), new Vector(-1, 0, 0));
+        spots.add(away);
+        spots.add(toward);
+        LightTree spotTree = new LightTree(spots);
+        assertEquals(0, spotTree.pdf(new Point(-50, 0, 0), away), "light facing away must not be sampled");
+        assertEquals(1, spotTree.pdf(new Point(-50, 0, 0), toward), 1e-12, "wrong probability");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: no located lights
+        LightTree empty = new LightTree(List.of(sun));
+        assertNull(empty.sample(point, 0.5, pdf), "no light must be sampled");
+        // TC12: a single light
+        LightTree single = new LightTree(List.of(lights.get(0)));
+        assertSame(lights.get(0), single.sample(point, 0.99, pdf), "the light must be sampled");
+        assertEquals(1, pdf[0], "wrong probability of a single light");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setLightSamples(int)}
+     */
+    @Test
+    void testLightSampling() {
+        Scene scene = new Scene("Many lights scene");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKd(0.5)));
+        for (int k = 0; k < 64; k++)
+            scene.lights.add(new PointLight(new Color(50, 40, 30), new Point(10 * (k % 8), 10 * (k / 8), 5))
+                    .setKQ(0.01));
+        Ray ray = new Ray(new Point(35, 35, 100), new Vector(0, 0, -1));
+        Color exact = new SimpleRayTracer(scene).traceRay(ray, 0);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the average of sampled shadings converges to the shading by all the lights
+        SimpleRayTracer sampled = new SimpleRayTracer(scene).setLightSamples(4);
+        final int n = 4000;
+        double red = 0;
+        for (long seed = 0; seed < n; seed++) red += sampled.traceRay(ray, seed).getRgb().d1();
+        assertEquals(exact.getRgb().d1(), red / n, 0.02 * exact.getRgb().d1(), "biased light sampling");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: negative amount of samples
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setLightSamples(-1),
+                "negative light samples must be rejected");
+    }
+}
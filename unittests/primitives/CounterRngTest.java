@@ -0,0 +1,66 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the counter-based random number generator
+ * @author Eitan Lafair
+ */
+class CounterRngTest {
+
+    /**
+     * Test for the method {@link CounterRng#uniform(long, int)}
+     */
+    @Test
+    void uniform() {
+        long key = CounterRng.key(CounterRng.pixelKey(12, 34), 5);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the same key and dimension always give the same number
+        assertEquals(CounterRng.uniform(key, 3), CounterRng.uniform(key, 3), "ERROR: not reproducible");
+
+        // TC02: numbers are in [0,1) and their mean is about 1/2
+        double sum = 0;
+        final int count = 100_000;
+        for (int d = 0; d < count; ++d) {
+            double u = CounterRng.uniform(key, d);
+            assertTrue(u >= 0 && u < 1, "ERROR: number out of range");
+            sum += u;
+        }
+        assertEquals(0.5, sum / count, 0.01, "ERROR: numbers are not uniform");
+
+        // TC03: numbers in a given range
+        for (int d = 0; d < 1000; ++d) {
+            double u = CounterRng.uniform(key, d, -2, 3);
+            assertTrue(u >= -2 && u < 3, "ERROR: number out of the given range");
+        }
+    }
+
+    /**
+     * Test for the methods {@link CounterRng#pixelKey(int, int)} and {@link CounterRng#key(long, long)}
+     */
+    @Test
+    void key() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every pixel and every sample of a pixel gets its own stream
+        Set<Long> keys = new HashSet<>();
+        for (int y = 0; y < 64; ++y)
+            for (int x = 0; x < 64; ++x) {
+                long pixel = CounterRng.pixelKey(x, y);
+                for (int s = 0; s < 16; ++s)
+                    assertTrue(keys.add(CounterRng.key(pixel, s)), "ERROR: keys collide");
+            }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: swapped pixel coordinates give different keys
+        assertNotEquals(CounterRng.pixelKey(1, 0), CounterRng.pixelKey(0, 1), "ERROR: transposed pixels collide");
+        // TC12: a derived key differs from its parent
+        assertNotEquals(CounterRng.pixelKey(0, 0), CounterRng.key(CounterRng.pixelKey(0, 0), 0),
+                "ERROR: derived key equals its parent");
+    }
+}
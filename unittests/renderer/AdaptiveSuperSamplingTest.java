@@ -3,6 +3,10 @@ package renderer;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import geometries.*;
 import lighting.*;
 import primitives.*;
@@ -185,4 +189,47 @@ public class AdaptiveSuperSamplingTest {
 
         assertNotNull(camera);
     }
+    /**
+     * Test 5: every adaptive super sampling lattice point is traced once per tile
+     */
+    @Test
+    public void test_ASS_LatticeCache() {
+        Set<String> traced = ConcurrentHashMap.newKeySet();
+        AtomicInteger rays = new AtomicInteger();
+        // Tracer with a vertical edge in the middle of the image, so edge pixels are subdivided
+        RayTracerBase edgeTracer = new RayTracerBase(null) {
+            @Override
+            public Color traceRay(Ray ray) {
+                rays.incrementAndGet();
+                traced.add(ray.direction.toString());
+                return ray.direction.dotProduct(Vector.AXIS_X) > 0.129 ? new Color(255, 255, 255) : Color.BLACK;
+            }
+        };
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(10, 10);
+
+        // Uniform image - no subdivision, corners are shared by adjacent pixels
+        rays.set(0);
+        builder.setRayTracer(new RayTracerBase(null) {
+            @Override
+            public Color traceRay(Ray ray) {
+                rays.incrementAndGet();
+                return Color.BLACK;
+            }
+        }).build().enableAdaptiveSuperSampling(true).setMultithreading(0).renderTile(new Tile(0, 0, 10, 10));
+        assertEquals(11 * 11 + 10 * 10, rays.get(), "every corner and center must be traced once");
+
+        // Subdivided pixels - no lattice point is traced twice
+        rays.set(0);
+        float[] pixels = builder.setRayTracer(edgeTracer).build()
+                .enableAdaptiveSuperSampling(true).setAdaptiveMaxDepth(3).setMultithreading(0)
+                .renderTile(new Tile(0, 0, 10, 10));
+        assertEquals(traced.size(), rays.get(), "a lattice point was traced twice");
+        assertEquals(0, pixels[0], "pixel left of the edge must be black");
+        assertEquals(255, pixels[3 * 9], 1e-3, "pixel right of the edge must be white");
+        assertTrue(pixels[3 * 6] > 0 && pixels[3 * 6] < 255, "edge pixel must be blended");
+    }
 }
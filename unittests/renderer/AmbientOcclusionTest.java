@@ -0,0 +1,88 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the ambient occlusion of the simple ray tracer
+ *
+ * @author Eitan Lafair
+ */
+class AmbientOcclusionTest {
+    /** Amount of rays which are not camera rays (by the far away sphere) */
+    private final AtomicInteger occlusionRays = new AtomicInteger();
+    /** The test scene - a sphere on a floor, in ambient light only */
+    private final Scene scene = new Scene("Ambient occlusion scene");
+
+    /**
+     * Creates the scene
+     */
+    AmbientOcclusionTest() {
+        scene.setAmbientLight(new AmbientLight(new Color(100, 100, 100)));
+        scene.geometries.add(
+                new Sphere(new Point(1000, 1000, 1000), 1) { // First - queried by all the rays
+                    @Override
+                    public boolean hasIntersection(Ray ray, double maxDistance) {
+                        if (ray.head.getZ() < 1) occlusionRays.incrementAndGet(); // Rays from the floor
+                        return super.hasIntersection(ray, maxDistance);
+                    }
+                },
+                new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKa(1)),
+                new Sphere(new Point(0, 0, 20), 20).setMaterial(new Material().setKa(1)));
+    }
+
+    /**
+     * Ambient color of the floor at a distance from the contact point of the sphere
+     */
+    private double floor(SimpleRayTracer tracer, double x, long seed) {
+        return tracer.traceRay(new Ray(new Point(x, 0, 100), new Vector(0, 0, -1)), seed).getRgb().d1();
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setAmbientOcclusion(int, double)}
+     */
+    @Test
+    void testAmbientOcclusion() {
+        SimpleRayTracer tracer = new SimpleRayTracer(scene).setAmbientOcclusion(64, 50);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the floor is darker near the sphere, and fully lit far from it
+        double contact = 0, open = 0;
+        for (long seed = 0; seed < 20; seed++) {
+            contact += floor(tracer, 22, seed) / 20;
+            open += floor(tracer, 200, seed) / 20;
+        }
+        assertEquals(100, open, 1e-9, "open floor must get all the ambient light");
+        assertTrue(contact < 90 && contact > 20, "floor near the sphere must be occluded: " + contact);
+        assertEquals(100, floor(new SimpleRayTracer(scene), 22, 0), 1e-9, "no occlusion when disabled");
+
+        // TC02: open points stop after the first batch, penumbra points trace all the rays
+        occlusionRays.set(0);
+        floor(tracer, 200, 0);
+        assertEquals(16, occlusionRays.get(), "open point must stop after the first batch");
+        occlusionRays.set(0);
+        floor(tracer, 22, 0);
+        assertEquals(64, occlusionRays.get(), "partly occluded point must trace all the rays");
+
+        // TC03: the cache shares the occlusion of the points of a cell of a geometry
+        SimpleRayTracer cached = new SimpleRayTracer(scene).setAmbientOcclusion(64, 50)
+                .enableAmbientOcclusionCache(true);
+        double first = floor(cached, 22, 0);
+        occlusionRays.set(0);
+        assertEquals(first, floor(cached, 23, 7), 1e-9, "points of a cell must share the occlusion");
+        assertEquals(0, occlusionRays.get(), "cached occlusion must not trace rays");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: bad parameters
+        assertThrows(IllegalArgumentException.class, () -> tracer.setAmbientOcclusion(-1, 50), "negative samples");
+        assertThrows(IllegalArgumentException.class, () -> tracer.setAmbientOcclusion(16, 0), "no distance");
+    }
+}
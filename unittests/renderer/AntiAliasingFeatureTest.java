@@ -72,6 +72,33 @@ public class AntiAliasingFeatureTest {
         assertNotNull(cameraWithAA);
     }
 
+    /**
+     * Test method for {@link renderer.SamplePattern#of(int, BlackBoard.Shape)}:
+     * the precomputed offsets give the same samples as the blackboard
+     */
+    @Test
+    public void samplePatternTest() {
+        Point origin = new Point(0, 0, -10);
+        Point center = new Point(3, -2, 5);
+        Vector right = new Vector(1, 0, 0);
+        Vector up = new Vector(0, 1, 0);
+        for (BlackBoard.Shape shape : BlackBoard.Shape.values()) {
+            var samples = new BlackBoard(center, right, up, 2, 4, 5, shape).generateSamplePoints();
+            SamplePattern pattern = SamplePattern.of(5, shape);
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: same samples, in the same order
+            assertEquals(samples.size(), pattern.size(), "wrong amount of samples for " + shape);
+            for (int s = 0; s < pattern.size(); s++) {
+                int cell = pattern.cell(s);
+                Vector dir = center.subtract(origin).addScaled(right, pattern.u(cell) * 2, up, pattern.v(cell) * 4);
+                assertEquals(0, samples.get(s).distance(origin.add(dir)), 1e-10, "wrong sample offset for " + shape);
+            }
+            // TC02: the pattern is computed once per shape and density
+            assertSame(pattern, SamplePattern.of(5, shape), "pattern must be cached");
+        }
+    }
+
     /**
      * Helper method to create a complex test scene
      *
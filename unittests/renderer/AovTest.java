@@ -0,0 +1,97 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the arbitrary output variable buffers
+ *
+ * @author Eitan Lafair
+ */
+class AovTest {
+    /** Directory of the generated images */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+    /**
+     * Creates a camera over two spheres, the center pixel hitting the front of the big one
+     */
+    private Camera createCamera() {
+        Scene scene = new Scene("AOV scene");
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -100), 40).setEmission(new Color(100, 50, 25)),
+                new Sphere(new Point(30, 30, -40), 10).setEmission(new Color(25, 50, 100)));
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(41, 41)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+    }
+
+    /**
+     * Value of an output variable at a pixel
+     */
+    private float value(float[] values, int j, int i, int channel) {
+        return values[3 * (i * 41 + j) + channel];
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#enableAovs(Aov...)}
+     */
+    @Test
+    void testAovs() {
+        Camera camera = createCamera().enableAovs(Aov.values()).setMultithreading(2);
+        camera.renderImage();
+        AovBuffers buffers = camera.getAovBuffers();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: depth and normal of the center pixel - the front of the big sphere
+        assertEquals(160, value(buffers.values(Aov.DEPTH), 20, 20, 0), 1e-3, "wrong depth");
+        float[] normals = buffers.values(Aov.NORMAL);
+        assertEquals(0, value(normals, 20, 20, 0), 1e-6, "wrong normal");
+        assertEquals(0, value(normals, 20, 20, 1), 1e-6, "wrong normal");
+        assertEquals(1, value(normals, 20, 20, 2), 1e-6, "wrong normal");
+
+        // TC02: object ids by the first appearance - the small sphere is above the big one
+        float[] ids = buffers.values(Aov.OBJECT_ID);
+        assertEquals(0, value(ids, 0, 0, 0), "background must have id 0");
+        assertEquals(2, value(ids, 20, 20, 0), "wrong id of the big sphere");
+        assertEquals(1, value(ids, 29, 11, 0), "wrong id of the small sphere");
+
+        // TC03: a camera ray per pixel and a measured cost
+        assertEquals(1, value(buffers.values(Aov.SAMPLE_COUNT), 5, 30, 0), "wrong sample count");
+        assertTrue(value(buffers.values(Aov.RAY_COST), 20, 20, 0) > 0, "cost must be measured");
+
+        // TC04: anti-aliasing rays are counted
+        camera.enableAntiAliasing(true).setAntiAliasingSamples(3).renderImage();
+        assertEquals(9, value(buffers.values(Aov.SAMPLE_COUNT), 5, 30, 0), "wrong sample count");
+
+        // TC05: buffers are written as files
+        camera.writeAovs("aov", ImageFormat.PNG).writeAovs("aov", ImageFormat.PFM);
+        for (Aov aov : Aov.values()) {
+            assertTrue(new File(FOLDER_PATH, "aov_" + aov.suffix + ".png").length() > 0, "missing PNG of " + aov);
+            assertEquals("PF\n41 41\n-1.0\n".length() + 12 * 41 * 41,
+                    new File(FOLDER_PATH, "aov_" + aov.suffix + ".pfm").length(), "wrong PFM of " + aov);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a miss has infinite depth and zero normal
+        assertEquals(Float.POSITIVE_INFINITY, value(buffers.values(Aov.DEPTH), 0, 0, 0), "wrong depth of a miss");
+        assertEquals(0, value(normals, 0, 0, 2), "wrong normal of a miss");
+
+        // TC12: output variables which are not recorded
+        Camera depthOnly = createCamera().enableAovs(Aov.DEPTH);
+        assertThrows(IllegalArgumentException.class, () -> depthOnly.getAovBuffers().values(Aov.NORMAL),
+                "unrecorded output variable must be rejected");
+        assertThrows(IllegalStateException.class, () -> createCamera().writeAovs("aov", ImageFormat.PNG),
+                "disabled output variables must be rejected");
+    }
+}
@@ -0,0 +1,232 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for checkpoint and resume of long renders
+ *
+ * @author Eitan Lafair
+ */
+class CheckpointTest {
+    /** Directory of the generated images and checkpoints */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+    /** Location of the camera */
+    private static final Point CAMERA = new Point(0, 0, 100);
+
+    /**
+     * Sphere which counts the camera rays, and interrupts the render by an
+     * exception after a limit of camera rays (a crash of the render)
+     */
+    private static class CrashingSphere extends Sphere {
+        private static final long serialVersionUID = 1L;
+
+        /** Amount of camera rays since the last reset */
+        static final AtomicInteger cameraRays = new AtomicInteger();
+        /** Amount of camera rays after which the render crashes */
+        static volatile int limit = Integer.MAX_VALUE;
+
+        /** Constructs the sphere far from the scene */
+        CrashingSphere() {
+            super(new Point(1000, 1000, 1000), 1);
+        }
+
+        @Override
+        protected List<Intersectable.Intersection> calculateIntersectionsHelper(Ray ray) {
+            if (ray.head.equals(CAMERA) && cameraRays.incrementAndGet() > limit)
+                throw new IllegalStateException("Render crashed");
+            return super.calculateIntersectionsHelper(ray);
+        }
+    }
+
+    /**
+     * Creates a scene with a lighted sphere over a plane
+     */
+    private Scene createScene() {
+        Scene scene = new Scene("Checkpoint scene");
+        scene.setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+        scene.geometries.add(
+                new CrashingSphere(), // First - queried by all the rays
+                new Sphere(new Point(0, 0, -100), 35)
+                        .setEmission(new Color(60, 30, 90))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(60)),
+                new Plane(new Point(0, -35, 0), Vector.AXIS_Y)
+                        .setEmission(new Color(30, 50, 30))
+                        .setMaterial(new Material().setKd(0.5)));
+        scene.lights.add(new PointLight(new Color(400, 400, 400), new Point(50, 80, 0)).setKl(0.001).setKQ(0.0001));
+        return scene;
+    }
+
+    /**
+     * Creates a camera over a scene with checkpoints
+     */
+    private Camera createCamera(Scene scene, String checkpoint) {
+        return Camera.getBuilder()
+                .setLocation(CAMERA)
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(100, 100)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build()
+                .setCheckpoint(checkpoint, 0.05);
+    }
+
+    /**
+     * Reads a generated image
+     */
+    private BufferedImage read(String name) throws IOException {
+        return ImageIO.read(new File(FOLDER_PATH + '/' + name + ".png"));
+    }
+
+    /**
+     * Asserts two pixels are equal up to float rounding of the checkpoint
+     */
+    private void assertSamePixel(int expected, int actual) {
+        for (int shift = 0; shift < 24; shift += 8)
+            assertEquals((expected >> shift) & 0xFF, (actual >> shift) & 0xFF, 1, "pixel differs");
+    }
+
+    /**
+     * Writes a checkpoint of a 100x100 render with its top left tile (of 25x25)
+     * completed in red
+     */
+    private void writeRedTile(String name, long fingerprint) {
+        RenderCheckpoint checkpoint = new RenderCheckpoint(name, 100, 100, new Tile(0, 0, 100, 100), 25, fingerprint);
+        AccumulationBuffer buffer = new AccumulationBuffer(100, 100);
+        for (int i = 0; i < 25; ++i)
+            for (int j = 0; j < 25; ++j) {
+                buffer.add(j, i, new Color(255, 0, 0));
+                checkpoint.pixelDone(j, i);
+            }
+        checkpoint.start(buffer, 100);
+        checkpoint.finish(buffer, false);
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setCheckpoint(String, double)}
+     */
+    @Test
+    void testCheckpointResume() throws IOException {
+        for (String name : List.of("checkpoint_render", "checkpoint_crashed", "checkpoint_partial", "checkpoint_stale"))
+            Files.deleteIfExists(Path.of(FOLDER_PATH, name + ".ckpt"));
+        CrashingSphere.limit = Integer.MAX_VALUE;
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a completed render deletes its checkpoint file
+        createCamera(createScene(), "checkpoint_render").setMultithreading(2)
+                .renderImage().writeToImage("checkpoint_full");
+        assertFalse(Files.exists(Path.of(FOLDER_PATH, "checkpoint_render.ckpt")), "checkpoint file must be deleted");
+        assertFalse(Files.exists(Path.of(FOLDER_PATH, "checkpoint_render.ckpt.tmp")), "temporary file must be renamed");
+        BufferedImage full = read("checkpoint_full");
+
+        // TC02: a crashed render resumes, tracing only the tiles which were not completed
+        // (the render crashes after 50 rows - 8 tiles of 25x25 are completed)
+        CrashingSphere.cameraRays.set(0);
+        CrashingSphere.limit = 5000;
+        assertThrows(IllegalStateException.class,
+                () -> createCamera(createScene(), "checkpoint_crashed").setTileSize(25).renderImage(),
+                "render must crash");
+        assertTrue(Files.exists(Path.of(FOLDER_PATH, "checkpoint_crashed.ckpt")), "checkpoint file must be written");
+        CrashingSphere.cameraRays.set(0);
+        CrashingSphere.limit = Integer.MAX_VALUE;
+        createCamera(createScene(), "checkpoint_crashed").setTileSize(25)
+                .renderImage().writeToImage("checkpoint_resumed");
+        assertEquals(5000, CrashingSphere.cameraRays.get(), "only the tiles not completed must be traced");
+        assertFalse(Files.exists(Path.of(FOLDER_PATH, "checkpoint_crashed.ckpt")), "checkpoint file must be deleted");
+        BufferedImage resumed = read("checkpoint_resumed");
+        for (int i = 0; i < 100; ++i)
+            for (int j = 0; j < 100; ++j)
+                assertSamePixel(full.getRGB(j, i), resumed.getRGB(j, i));
+
+        // TC03: resuming a partial render skips only the completed tiles
+        Camera camera = createCamera(createScene(), "checkpoint_partial").setTileSize(25);
+        writeRedTile("checkpoint_partial", camera.fingerprint());
+        camera.renderImage().writeToImage("checkpoint_partial");
+        BufferedImage resumedPartial = read("checkpoint_partial");
+        assertEquals(0xFF0000, resumedPartial.getRGB(10, 10) & 0xFFFFFF, "completed tile must be restored");
+        assertSamePixel(full.getRGB(60, 60), resumedPartial.getRGB(60, 60));
+
+        // TC04: a checkpoint of another scene or camera is ignored
+        Camera stale = createCamera(createScene(), "checkpoint_stale").setTileSize(25);
+        writeRedTile("checkpoint_stale", stale.fingerprint() + 1);
+        stale.renderImage().writeToImage("checkpoint_stale");
+        assertSamePixel(full.getRGB(10, 10), read("checkpoint_stale").getRGB(10, 10));
+        assertEquals(camera.fingerprint(), createCamera(createScene(), "other").setTileSize(25).fingerprint(),
+                "same render must have the same fingerprint");
+        assertNotEquals(camera.fingerprint(), createCamera(new Scene("Empty"), "other").fingerprint(),
+                "another scene must have another fingerprint");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a checkpoint of another resolution is ignored
+        Camera other = Camera.getBuilder()
+                .setLocation(CAMERA)
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(50, 50)
+                .setRayTracer(new Scene("Empty"), RayTracerType.SIMPLE)
+                .build()
+                .setCheckpoint("checkpoint_stale", 1);
+        writeRedTile("checkpoint_stale", other.fingerprint());
+        other.renderImage().writeToImage("checkpoint_other");
+        assertEquals(0, read("checkpoint_other").getRGB(10, 10) & 0xFFFFFF, "foreign checkpoint must be ignored");
+
+        // TC12: a truncated checkpoint is not restored, and leaves the buffer untouched
+        writeRedTile("checkpoint_truncated", 7);
+        Path file = Path.of(FOLDER_PATH, "checkpoint_truncated.ckpt");
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 4)); // Without the length of the compressed stream
+            RenderCheckpoint truncated = new RenderCheckpoint("checkpoint_truncated", 100, 100,
+                    new Tile(0, 0, 100, 100), 25, 7);
+            AccumulationBuffer buffer = new AccumulationBuffer(100, 100);
+            assertFalse(truncated.restore(buffer, false), "truncated checkpoint must not be restored");
+            assertEquals(0, buffer.count(10, 10), "truncated checkpoint must not fill the buffer");
+            assertFalse(truncated.isDone(10, 10), "tile of a truncated checkpoint must be rendered");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test method for checkpoints of
+     * {@link renderer.Camera#renderImageProgressive(java.util.function.IntPredicate)}
+     */
+    @Test
+    void testProgressiveCheckpoint() throws IOException {
+        Files.deleteIfExists(Path.of(FOLDER_PATH, "checkpoint_progressive.ckpt"));
+        Camera camera = createCamera(createScene(), "checkpoint_progressive")
+                .enableAntiAliasing(true).setAntiAliasingSamples(3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: an interrupted progressive render resumes after the last saved pass
+        camera.renderImageProgressive(pass -> pass < 4);
+        int[] firstPass = {0};
+        createCamera(createScene(), "checkpoint_progressive")
+                .enableAntiAliasing(true).setAntiAliasingSamples(3)
+                .renderImageProgressive(pass -> {
+                    if (firstPass[0] == 0) firstPass[0] = pass;
+                    return true;
+                });
+        assertEquals(5, firstPass[0], "render must resume after the 4th pass");
+        assertFalse(Files.exists(Path.of(FOLDER_PATH, "checkpoint_progressive.ckpt")),
+                "checkpoint of a completed render must be deleted");
+    }
+}
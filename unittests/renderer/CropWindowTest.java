@@ -0,0 +1,100 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for crop window (region of interest) rendering
+ *
+ * @author Eitan Lafair
+ */
+class CropWindowTest {
+    /** Directory of the generated images */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+    /** Scene for the tests */
+    private final Scene scene = new Scene("Crop scene");
+
+    /**
+     * Creates a camera builder with a non-square resolution over a lighted scene
+     */
+    private Camera.Builder cameraBuilder() {
+        scene.geometries.add(
+                new Sphere(new Point(-20, 0, -100), 30)
+                        .setEmission(new Color(30, 80, 30))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(60)),
+                new Triangle(new Point(-90, -50, -150), new Point(90, -50, -150), new Point(40, 60, -150))
+                        .setEmission(new Color(100, 40, 90))
+                        .setMaterial(new Material().setKd(0.6).setKs(0.2).setShininess(20)));
+        scene.lights.add(new SpotLight(new Color(400, 300, 300), new Point(60, 60, 50), new Vector(-1, -1, -2))
+                .setKl(0.001).setKq(0.0001));
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 150)
+                .setResolution(150, 100)
+                .setRayTracer(scene, RayTracerType.SIMPLE);
+    }
+
+    /**
+     * Reads a generated image
+     */
+    private BufferedImage read(String name) throws IOException {
+        return ImageIO.read(new File(FOLDER_PATH + '/' + name + ".png"));
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#renderImage(Tile)}
+     */
+    @Test
+    void testCropWindow() throws IOException {
+        Camera.Builder builder = cameraBuilder();
+        builder.build().setMultithreading(3).renderImage().writeToImage("crop_full");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the crop pixels are identical to the same pixels of the full render
+        builder.setCropWindow(40, 20, 70, 50).build()
+                .setMultithreading(3)
+                .renderImage()
+                .writeCropToImage("crop_region")
+                .writeToImage("crop_composited");
+        BufferedImage full = read("crop_full");
+        BufferedImage crop = read("crop_region");
+        BufferedImage composited = read("crop_composited");
+        assertEquals(70, crop.getWidth(), "wrong crop width");
+        assertEquals(50, crop.getHeight(), "wrong crop height");
+        for (int i = 0; i < 50; ++i)
+            for (int j = 0; j < 70; ++j)
+                assertEquals(full.getRGB(40 + j, 20 + i), crop.getRGB(j, i), "crop pixel differs from full render");
+
+        // TC02: pixels outside the crop window are left untouched in the full image
+        assertEquals(0, composited.getRGB(0, 0) & 0xFFFFFF, "pixel outside the crop must not be rendered");
+
+        // TC03: composite a crop render over a previous full render
+        builder.setCropWindow(0, 0, 10, 10).build()
+                .loadImage("crop_full")
+                .renderImage()
+                .writeToImage("crop_recomposited");
+        BufferedImage recomposited = read("crop_recomposited");
+        for (int i = 0; i < 100; i += 7)
+            for (int j = 0; j < 150; j += 7)
+                assertEquals(full.getRGB(j, i), recomposited.getRGB(j, i), "composited image differs");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: crop window exceeding the resolution
+        assertThrows(IllegalStateException.class, () -> builder.setCropWindow(100, 0, 51, 10).build(),
+                "crop window outside the image must be rejected");
+    }
+}
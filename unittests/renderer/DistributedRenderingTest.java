@@ -0,0 +1,160 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for distributed tile rendering by worker processes on the local machine
+ *
+ * @author Eitan Lafair
+ */
+class DistributedRenderingTest {
+    /** Directory of the generated images */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+    /**
+     * Worker which exits abruptly (a simulated crash) before rendering a tile -
+     * the worker of id given by the "crash.worker" system property, after the
+     * amount of tiles given by the "crash.after" system property. If the
+     * "crash.hang" system property is true, the worker gets stuck instead
+     */
+    static class CrashingWorker {
+        /**
+         * Worker process entry point
+         *
+         * @param args the arguments of {@link RenderWorker#main(String[])}
+         * @throws Exception in case of a failure of the worker
+         */
+        public static void main(String[] args) throws Exception {
+            boolean crashing = args[2].equals(System.getProperty("crash.worker"));
+            int after = Integer.getInteger("crash.after", 0);
+            boolean hang = Boolean.getBoolean("crash.hang");
+            RenderWorker.run(args, tiles -> {
+                if (!crashing || tiles != after) return;
+                if (!hang) Runtime.getRuntime().halt(1);
+                try {
+                    Thread.sleep(Long.MAX_VALUE); // Alive, but never returns the tile
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates a coordinator whose worker crashes after some tiles
+     *
+     * @param camera  the camera to render
+     * @param workers amount of workers
+     * @param worker  the id of the crashing worker
+     * @param tiles   amount of tiles the crashing worker renders
+     */
+    private RenderCoordinator crashingCoordinator(Camera camera, int workers, int worker, int tiles) {
+        return new RenderCoordinator(camera, workers).setWorkerClass(CrashingWorker.class)
+                .setJvmOptions("-Dcrash.worker=" + worker, "-Dcrash.after=" + tiles);
+    }
+
+    /**
+     * Creates a camera builder over a scene with reflection and transparency
+     */
+    private Camera.Builder cameraBuilder() {
+        Scene scene = new Scene("Distributed scene");
+        scene.setAmbientLight(new AmbientLight(new Color(25, 25, 25)));
+        scene.geometries.add(
+                new Sphere(new Point(-25, 0, -100), 30)
+                        .setEmission(new Color(20, 40, 100))
+                        .setMaterial(new Material().setKd(0.4).setKs(0.4).setShininess(80).setKt(0.3)),
+                new Sphere(new Point(30, 10, -120), 25)
+                        .setEmission(new Color(100, 30, 30))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(40)),
+                new Triangle(new Point(-150, -40, -300), new Point(150, -40, -300), new Point(0, -40, 50))
+                        .setEmission(new Color(30, 30, 30))
+                        .setMaterial(new Material().setKd(0.3).setKr(0.5)));
+        scene.lights.add(new PointLight(new Color(500, 400, 300), new Point(50, 80, 0)).setKl(0.001).setKQ(0.0001));
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 150)
+                .setResolution(150, 100)
+                .setRayTracer(scene, RayTracerType.SIMPLE);
+    }
+
+    /**
+     * Asserts that two generated images are equal (up to float rounding of the transferred pixels)
+     */
+    private void assertSameImage(String expectedName, String actualName) throws IOException {
+        BufferedImage expected = ImageIO.read(new File(FOLDER_PATH + '/' + expectedName + ".png"));
+        BufferedImage actual = ImageIO.read(new File(FOLDER_PATH + '/' + actualName + ".png"));
+        for (int i = 0; i < expected.getHeight(); ++i)
+            for (int j = 0; j < expected.getWidth(); ++j) {
+                int e = expected.getRGB(j, i), a = actual.getRGB(j, i);
+                for (int shift = 0; shift < 24; shift += 8)
+                    assertEquals((e >> shift) & 0xFF, (a >> shift) & 0xFF, 1, "pixel differs from local render");
+            }
+    }
+
+    /**
+     * Test method for {@link renderer.RenderCoordinator#render()}
+     */
+    @Test
+    void testDistributedRender() throws IOException {
+        Camera.Builder builder = cameraBuilder();
+        builder.build().renderImage().writeToImage("distributed_local");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: two workers render the same image as a local render
+        RenderCoordinator coordinator = new RenderCoordinator(builder.build(), 2).setTileSize(20);
+        coordinator.render().writeToImage("distributed_workers");
+        assertSameImage("distributed_local", "distributed_workers");
+        assertEquals(2, coordinator.getWorkerStats().size(), "wrong amount of workers");
+        assertEquals(40, coordinator.getWorkerStats().stream().mapToInt(RenderCoordinator.WorkerStats::tiles).sum(),
+                "every tile must be rendered once");
+        assertEquals(150 * 100,
+                coordinator.getWorkerStats().stream().mapToLong(RenderCoordinator.WorkerStats::pixels).sum(),
+                "every pixel must be rendered once");
+        assertTrue(coordinator.getWorkerStats().stream().noneMatch(RenderCoordinator.WorkerStats::failed),
+                "no worker may be reported as failed");
+
+        // TC02: a worker dies in the middle, its tiles are rendered by the other worker
+        coordinator = crashingCoordinator(builder.build(), 2, 0, 3).setTileSize(20);
+        coordinator.render().writeToImage("distributed_failure");
+        assertSameImage("distributed_local", "distributed_failure");
+        assertTrue(coordinator.getWorkerStats().get(0).failed(), "worker 0 must be reported as failed");
+        assertEquals(3, coordinator.getWorkerStats().get(0).tiles(), "worker 0 rendered 3 tiles before failing");
+
+        // TC03: a worker gets stuck, its tile is rendered by the other worker after the tile timeout
+        coordinator = crashingCoordinator(builder.build(), 2, 0, 3).setTileSize(20).setTileTimeout(2);
+        coordinator.setJvmOptions("-Dcrash.worker=0", "-Dcrash.after=3", "-Dcrash.hang=true");
+        coordinator.render().writeToImage("distributed_stuck");
+        assertSameImage("distributed_local", "distributed_stuck");
+        assertTrue(coordinator.getWorkerStats().get(0).failed(), "stuck worker 0 must be reported as failed");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: all the workers die
+        RenderCoordinator failing = crashingCoordinator(builder.build(), 1, 0, 0);
+        assertThrows(IllegalStateException.class, failing::render, "render must fail when all workers die");
+
+        // TC12: the workers cannot start - the render fails without waiting for them, with their errors
+        RenderCoordinator broken = new RenderCoordinator(builder.build(), 1).setClassPath(FOLDER_PATH);
+        long start = System.currentTimeMillis();
+        Exception e = assertThrows(IllegalStateException.class, broken::render, "render must fail without workers");
+        assertTrue(System.currentTimeMillis() - start < 30_000, "dead workers must not be waited for");
+        assertTrue(e.getMessage().contains(RenderWorker.class.getName()), "the worker error must be reported");
+        // TC13: modes which need the whole region are not distributed
+        assertThrows(IllegalStateException.class,
+                () -> new RenderCoordinator(builder.build().enableVarianceSampling(true), 1).render(),
+                "variance sampling must not be ignored");
+    }
+}
@@ -0,0 +1,108 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the edge detection pre-pass of edge sampling
+ *
+ * @author Eitan Lafair
+ */
+class EdgeSamplingTest {
+    /** Amount of traced rays */
+    private final AtomicInteger rays = new AtomicInteger();
+
+    /**
+     * Creates a camera over flat shaded spheres - one in front of the other
+     */
+    private Camera createCamera() {
+        Scene scene = new Scene("Edge scene");
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -100), 40).setEmission(new Color(100, 50, 25)),
+                new Sphere(new Point(30, 30, -40), 15).setEmission(new Color(25, 50, 100)));
+        RayTracerBase countingTracer = new SimpleRayTracer(scene) {
+            @Override
+            public Color traceRay(Ray ray, long seed, HitRecord hit) {
+                rays.incrementAndGet();
+                return super.traceRay(ray, seed, hit);
+            }
+        };
+        rays.set(0);
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(60, 60)
+                .setRayTracer(countingTracer)
+                .build()
+                .setAntiAliasingSamples(4);
+    }
+
+    /**
+     * Reads a generated image
+     */
+    private BufferedImage read(String name) throws IOException {
+        return ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + name + ".png"));
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#enableEdgeSampling(boolean)}
+     */
+    @Test
+    void testEdgeSampling() throws IOException {
+        createCamera().enableAntiAliasing(true).renderImage().writeToImage("edge_full_aa");
+        int fullRays = rays.get();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: only the edge pixels are supersampled
+        Camera camera = createCamera().enableEdgeSampling(true).setMultithreading(2);
+        camera.renderImage().writeToImage("edge_sampling");
+        int edges = camera.getEdgePixelCount();
+        assertTrue(edges > 0 && edges < 60 * 60 / 4, "wrong amount of edge pixels: " + edges);
+        assertEquals(60 * 60 + edges * 16, rays.get(), "only edge pixels must be supersampled");
+        assertTrue(rays.get() < fullRays / 3, "edge sampling must save most of the rays");
+
+        // TC02: flat shaded scene - same image as full anti-aliasing
+        BufferedImage full = read("edge_full_aa");
+        BufferedImage sampled = read("edge_sampling");
+        for (int i = 0; i < 60; ++i)
+            for (int j = 0; j < 60; ++j)
+                assertEquals(full.getRGB(j, i), sampled.getRGB(j, i), "pixel (" + j + "," + i + ") differs");
+
+        // TC03: edge sampling with adaptive super sampling of the edge pixels
+        createCamera().enableEdgeSampling(true).enableAdaptiveSuperSampling(true).renderImage();
+        assertTrue(rays.get() < fullRays / 3, "edge sampling must save most of the rays");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a scene without edges is not supersampled
+        Camera empty = Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(20, 20)
+                .setRayTracer(new Scene("Empty"), RayTracerType.SIMPLE)
+                .build()
+                .enableEdgeSampling(true);
+        empty.renderImage();
+        assertEquals(0, empty.getEdgePixelCount(), "an empty scene has no edges");
+        // TC12: edge sampling cannot be combined with variance sampling or checkpoints
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().enableEdgeSampling(true).enableVarianceSampling(true).renderImage(),
+                "edge sampling must not be ignored for variance sampling");
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().enableEdgeSampling(true).setCheckpoint("edge_checkpoint", 60).renderImage(),
+                "edge sampling must not ignore the checkpoint");
+    }
+}
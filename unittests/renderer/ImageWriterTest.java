@@ -3,6 +3,11 @@ package renderer;
 import org.junit.jupiter.api.Test;
 import primitives.Color;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ImageWriterTest {
@@ -36,4 +41,51 @@ class ImageWriterTest {
 
 
 
-}
\ No newline at end of file
+    /**
+     * Writes colors into a single row image and reads back its 8 bit pixels
+     */
+    private int[] toneMapped(ImageWriter writer, Color... colors) throws IOException {
+        for (int x = 0; x < colors.length; x++) writer.writePixel(x, 0, colors[x]);
+        writer.writeToImage("tone_mapping");
+        BufferedImage image = ImageIO.read(new File(System.getProperty("user.dir") + "/images/tone_mapping.png"));
+        int[] result = new int[colors.length];
+        for (int x = 0; x < colors.length; x++) result[x] = image.getRGB(x, 0) & 0xFFFFFF;
+        return result;
+    }
+
+    /**
+     * Test method for {@link renderer.ImageWriter#setToneMapping(ToneMapping, double, boolean)}
+     */
+    @Test
+    void testToneMapping() throws IOException {
+        Color[] colors = { new Color(254.99999999, 0.3, 1000), new Color(128.7, 64.2, 12), Color.BLACK };
+        ImageWriter writer = new ImageWriter(colors.length, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: clamping (the default) gives the 8 bit colors of the color conversion
+        int[] clamped = toneMapped(writer, colors);
+        for (int x = 0; x < colors.length; x++)
+            assertEquals(colors[x].getColor().getRGB() & 0xFFFFFF, clamped[x], "clamping must truncate like Color");
+
+        // TC02: the high dynamic range is kept in the frame buffer
+        assertEquals(1000, writer.getPixel(0, 0).getRgb().d3(), 1e-3, "HDR value must be kept");
+
+        // TC03: Reinhard maps the top of the range to the middle and keeps the highlights
+        writer.setToneMapping(ToneMapping.REINHARD, 0, false);
+        int[] reinhard = toneMapped(writer, new Color(255, 765, 0));
+        assertEquals(128 << 16 | 191 << 8, reinhard[0], "wrong Reinhard mapping");
+
+        // TC04: ACES keeps the order of the brightness and the black
+        writer.setToneMapping(ToneMapping.ACES, 0, false);
+        int[] aces = toneMapped(writer, new Color(50, 255, 2000), Color.BLACK);
+        assertTrue((aces[0] >> 16) < ((aces[0] >> 8) & 0xFF) && ((aces[0] >> 8) & 0xFF) < (aces[0] & 0xFF),
+                "ACES must keep the brightness order");
+        assertEquals(0, aces[1], "ACES must keep the black");
+
+        // TC05: exposure of one stop doubles the colors, sRGB encodes the middle gray
+        writer.setToneMapping(ToneMapping.CLAMP, 1, false);
+        assertEquals(100 << 16, toneMapped(writer, new Color(50, 0, 0))[0], "wrong exposure");
+        writer.setToneMapping(ToneMapping.CLAMP, 0, true);
+        assertEquals(188 << 16, toneMapped(writer, new Color(127.5, 0, 0))[0], "wrong sRGB encoding");
+    }
+}
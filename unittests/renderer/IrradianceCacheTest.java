@@ -0,0 +1,144 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.Material;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the irradiance cache and the indirect diffuse light of the simple
+ * ray tracer
+ *
+ * @author Eitan Lafair
+ */
+class IrradianceCacheTest {
+    /** Zero gradient */
+    private static final double[] FLAT = new double[9];
+
+    /** Amount of rays which are not camera rays (by the far away sphere) */
+    private final AtomicInteger irradianceRays = new AtomicInteger();
+    /** The test scene - a white floor lit only by an emissive sphere above it */
+    private final Scene scene = new Scene("Irradiance scene");
+
+    /**
+     * Creates the scene
+     */
+    IrradianceCacheTest() {
+        scene.geometries.add(
+                new Sphere(new Point(1000, 1000, 1000), 1) { // First - queried by all the rays
+                    @Override
+                    protected List<Intersectable.Intersection> calculateIntersectionsHelper(Ray ray) {
+                        if (ray.head.getZ() < 1) irradianceRays.incrementAndGet(); // Rays from the floor
+                        return super.calculateIntersectionsHelper(ray);
+                    }
+                },
+                new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKd(1)),
+                new Sphere(new Point(0, 0, 10), 5).setEmission(new Color(100, 100, 100)));
+    }
+
+    /**
+     * Color of the floor at a point, seen from below the sphere
+     */
+    private double floor(SimpleRayTracer tracer, double x, double y) {
+        return tracer.traceRay(new Ray(new Point(x, y, 1), new Vector(0, 0, -1))).getRgb().d1();
+    }
+
+    /**
+     * Test method for {@link renderer.IrradianceCache#lookup(Point, Vector)}
+     */
+    @Test
+    void testLookup() {
+        IrradianceCache cache = new IrradianceCache(0.2, 0.1, 100);
+        double[] gradient = { 1, 0, 0, 0, 0, 0, 0, 0, 0 };
+        cache.add(Point.ZERO, Vector.AXIS_Z, new Color(10, 20, 30), 10, gradient);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a point near the record is extrapolated by the gradient
+        assertEquals(new Double3(10.5, 20, 30), cache.lookup(new Point(0.5, 0, 0), Vector.AXIS_Z).getRgb(),
+                "near point must be extrapolated by the gradient");
+        // TC02: a point beyond the validity of the record is not cached
+        assertNull(cache.lookup(new Point(5, 0, 0), Vector.AXIS_Z), "far point must not be cached");
+        // TC03: a point with a different normal is not cached
+        assertNull(cache.lookup(Point.ZERO, new Vector(1, 0, 1).normalize()), "turned normal must not be cached");
+        assertNull(cache.lookup(Point.ZERO, new Vector(0, 0, -1)), "opposite side must not be cached");
+        // TC04: a point between two records is weighted toward the closer one
+        cache.add(new Point(1, 0, 0), Vector.AXIS_Z, new Color(20, 20, 30), 10, FLAT);
+        double between = cache.lookup(new Point(0.8, 0, 0), Vector.AXIS_Z).getRgb().d1();
+        assertTrue(between > 15 && between < 20, "interpolation must favor the closer record: " + between);
+
+        // TC05: records inserted concurrently are all found
+        IrradianceCache shared = new IrradianceCache(0.2, 0.1, 100);
+        IntStream.range(0, 4).parallel().forEach(thread -> {
+            for (int i = 0; i < 250; i++)
+                shared.add(new Point(i * 10, thread * 10, 0), Vector.AXIS_Z, new Color(thread, i, 0), 2, FLAT);
+        });
+        assertEquals(1000, shared.size(), "all the records must be inserted");
+        for (int thread = 0; thread < 4; thread++)
+            for (int i = 0; i < 250; i++)
+                assertEquals(new Double3(thread, i, 0),
+                        shared.lookup(new Point(i * 10, thread * 10, 0), Vector.AXIS_Z).getRgb(),
+                        "each record must be found");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: the radius of a record is clamped by the minimal spacing
+        IrradianceCache clamped = new IrradianceCache(0.2, 1, 100);
+        clamped.add(Point.ZERO, Vector.AXIS_Z, new Color(10, 10, 10), 0.01, FLAT);
+        assertNotNull(clamped.lookup(new Point(0.5, 0, 0), Vector.AXIS_Z), "radius must be at least the spacing");
+        // TC12: bad parameters
+        assertThrows(IllegalArgumentException.class, () -> new IrradianceCache(0, 1, 10), "no accuracy");
+        assertThrows(IllegalArgumentException.class, () -> new IrradianceCache(0.2, 0, 10), "no spacing");
+        assertThrows(IllegalArgumentException.class, () -> new IrradianceCache(0.2, 10, 1), "inverted spacing");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setIndirectDiffuse(int, IrradianceCache)}
+     */
+    @Test
+    void testIndirectDiffuse() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the floor is lit by the emissive sphere, most under it
+        SimpleRayTracer uncached = new SimpleRayTracer(scene).setIndirectDiffuse(256, null);
+        double under = floor(uncached, 0, 0), aside = floor(uncached, 10, 0);
+        // The irradiance over pi of a sphere of radius 5 at height 10 is 100 (5/10)^2
+        assertEquals(25, under, 1.5, "floor under the sphere");
+        assertTrue(aside < under && aside > 0, "floor aside the sphere must be dimmer: " + aside);
+        assertEquals(0, floor(new SimpleRayTracer(scene), 0, 0), 1e-9, "no indirect light when disabled");
+
+        // TC02: the gradient extrapolates a record better than its constant irradiance
+        double exact = 0;
+        for (int i = 0; i < 8; i++) exact += floor(new SimpleRayTracer(scene).setIndirectDiffuse(1024, null), 11, i) / 8;
+        IrradianceCache cache = new IrradianceCache(0.3, 0.1, 1000);
+        SimpleRayTracer tracer = new SimpleRayTracer(scene).setIndirectDiffuse(1024, cache);
+        double record = floor(tracer, 10, 0);
+        double extrapolated = floor(tracer, 11, 0);
+        assertEquals(1, cache.size(), "the second point must be interpolated");
+        assertTrue(Math.abs(extrapolated - exact) < Math.abs(record - exact) / 2,
+                "gradient must improve the extrapolation: " + record + " " + extrapolated + " " + exact);
+
+        // TC03: a cache filled by a frame is reused by the next frame without tracing
+        IrradianceCache frames = new IrradianceCache(0.3, 0.5, 1000);
+        SimpleRayTracer first = new SimpleRayTracer(scene).setIndirectDiffuse(64, frames);
+        for (int x = -20; x <= 20; x += 2)
+            for (int y = -20; y <= 20; y += 2) floor(first, x, y);
+        int records = frames.size();
+        assertTrue(records > 0 && records < 21 * 21, "records must be shared by nearby points: " + records);
+        irradianceRays.set(0);
+        SimpleRayTracer second = new SimpleRayTracer(scene).setIndirectDiffuse(64, frames);
+        for (int x = -19; x <= 19; x += 2)
+            for (int y = -19; y <= 19; y += 2) floor(second, x, y);
+        assertTrue(frames.size() - records < records / 4, "next frame must reuse the records: " + frames.size());
+        assertTrue(irradianceRays.get() < 20 * 20 * 64 / 4, "next frame must trace few rays: " + irradianceRays.get());
+
+        // =============== Boundary Values Tests ==================
+        // TC11: bad parameters
+        assertThrows(IllegalArgumentException.class, () -> tracer.setIndirectDiffuse(-1, null), "negative samples");
+    }
+}
@@ -0,0 +1,144 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the light resampling of the camera
+ *
+ * @author Eitan Lafair
+ */
+class LightResamplingTest {
+    /** Resolution of the images */
+    private static final int SIZE = 40;
+    /** Location of the camera */
+    private static final Point CAMERA = new Point(0, 0, 200);
+    /** Amount of rays which are not camera rays (by the far away sphere) */
+    private final AtomicInteger shadowRays = new AtomicInteger();
+
+    /**
+     * Creates a camera over a wall lighted by a grid of 100 lights
+     */
+    private Camera createCamera() {
+        Scene scene = new Scene("Many lights scene");
+        scene.geometries.add(
+                new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKd(0.5).setKs(0.2).setShininess(10)),
+                new Sphere(new Point(1000, 1000, 1000), 1) {
+                    @Override
+                    protected List<Intersectable.Intersection> calculateIntersectionsHelper(Ray ray) {
+                        if (!ray.head.equals(CAMERA)) shadowRays.incrementAndGet();
+                        return super.calculateIntersectionsHelper(ray);
+                    }
+                });
+        for (int k = 0; k < 100; k++)
+            scene.lights.add(new PointLight(new Color(30 + k % 7 * 10, 40, 30 + k % 3 * 20),
+                    new Point(10 * (k % 10) - 45, 10 * (k / 10) - 45, 20)).setKQ(0.02));
+        return Camera.getBuilder()
+                .setLocation(CAMERA)
+                .setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(200).setVpSize(100, 100)
+                .setResolution(SIZE, SIZE)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+    }
+
+    /**
+     * Average gray level of a generated image
+     */
+    private double average(String name) throws IOException {
+        BufferedImage image = ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + name + ".png"));
+        double sum = 0;
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++) {
+                int rgb = image.getRGB(j, i);
+                sum += ((rgb >> 16 & 0xFF) + (rgb >> 8 & 0xFF) + (rgb & 0xFF)) / 3.0;
+            }
+        return sum / (SIZE * SIZE);
+    }
+
+    /**
+     * Root mean square difference of the gray levels of two generated images
+     */
+    private double error(String name, String reference) throws IOException {
+        BufferedImage a = ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + name + ".png"));
+        BufferedImage b = ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + reference + ".png"));
+        double sum = 0;
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++) {
+                int x = a.getRGB(j, i), y = b.getRGB(j, i);
+                double d = ((x >> 16 & 0xFF) + (x >> 8 & 0xFF) + (x & 0xFF)
+                        - (y >> 16 & 0xFF) - (y >> 8 & 0xFF) - (y & 0xFF)) / 3.0;
+                sum += d * d;
+            }
+        return Math.sqrt(sum / (SIZE * SIZE));
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setLightResampling(int, int)}
+     */
+    @Test
+    void testLightResampling() throws IOException {
+        shadowRays.set(0);
+        createCamera().renderImage().writeToImage("resampling_reference");
+        int referenceRays = shadowRays.get();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a single shadow ray per pixel
+        shadowRays.set(0);
+        createCamera().setLightResampling(16, 4).renderImage().writeToImage("resampling_reuse");
+        assertEquals(SIZE * SIZE, shadowRays.get(), "a shadow ray per pixel");
+        assertTrue(referenceRays > 50 * SIZE * SIZE, "the reference must shade by all the lights");
+
+        // TC02: the resampled image has about the brightness of the reference
+        double reference = average("resampling_reference");
+        assertEquals(reference, average("resampling_reuse"), 0.05 * reference, "wrong brightness with reuse");
+        createCamera().setLightResampling(16, 0).renderImage().writeToImage("resampling_candidates");
+        assertEquals(reference, average("resampling_candidates"), 0.05 * reference, "wrong brightness");
+        // (and the reuse of the neighbor reservoirs reduces the noise)
+        double reuseError = error("resampling_reuse", "resampling_reference");
+        double candidatesError = error("resampling_candidates", "resampling_reference");
+        assertTrue(reuseError < candidatesError, "reuse must reduce the noise");
+
+        // TC03: the image does not depend on threading
+        createCamera().setLightResampling(8, 4).setMultithreading(3).renderImage()
+                .writeToImage("resampling_threads");
+        createCamera().setLightResampling(8, 4).setMultithreading(0).renderImage()
+                .writeToImage("resampling_single");
+        BufferedImage threads = ImageIO.read(new File(System.getProperty("user.dir") + "/images/resampling_threads.png"));
+        BufferedImage single = ImageIO.read(new File(System.getProperty("user.dir") + "/images/resampling_single.png"));
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++)
+                assertEquals(single.getRGB(j, i), threads.getRGB(j, i), "pixel depends on threading");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: negative candidates or neighbors
+        assertThrows(IllegalArgumentException.class, () -> createCamera().setLightResampling(-1, 4),
+                "negative candidates must be rejected");
+        assertThrows(IllegalArgumentException.class, () -> createCamera().setLightResampling(4, -1),
+                "negative neighbors must be rejected");
+        // TC12: light resampling cannot be combined with the other sampling modes or checkpoints
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().setLightResampling(8, 4).enableVarianceSampling(true).renderImage(),
+                "variance sampling must not be ignored");
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().setLightResampling(8, 4).enableEdgeSampling(true).renderImage(),
+                "edge sampling must not be ignored");
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().setLightResampling(8, 4).setCheckpoint("resampling_checkpoint", 60).renderImage(),
+                "the checkpoint must not be ignored");
+    }
+}
@@ -0,0 +1,135 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Tests for the parallel PNG encoder
+ *
+ * @author Eitan Lafair
+ */
+class PngEncoderTest {
+    /** Directory of the generated images */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+    /**
+     * Creates pixels of smooth gradients with some noise - a render like image
+     */
+    private int[] createPixels(int width, int height) {
+        Random random = new Random(42);
+        int[] rgb = new int[width * height];
+        for (int y = 0; y < height; ++y)
+            for (int x = 0; x < width; ++x) {
+                int noise = random.nextInt(8);
+                rgb[y * width + x] = ((x * 255 / width + noise) & 0xFF) << 16
+                        | ((y * 255 / height) & 0xFF) << 8
+                        | ((x + y) / 4 + noise) & 0xFF;
+            }
+        return rgb;
+    }
+
+    /**
+     * Encodes a region of pixels and checks the decoded file
+     */
+    private void assertEncoded(String name, int[] rgb, int scanline, Tile region) throws IOException {
+        File file = new File(FOLDER_PATH, name + ".png");
+        PngEncoder.write(file.toPath(), rgb, scanline, region);
+        BufferedImage image = ImageIO.read(file);
+        assertEquals(region.width(), image.getWidth(), "wrong width");
+        assertEquals(region.height(), image.getHeight(), "wrong height");
+        for (int y = 0; y < region.height(); ++y)
+            for (int x = 0; x < region.width(); ++x)
+                assertEquals(rgb[(region.y() + y) * scanline + region.x() + x], image.getRGB(x, y) & 0xFFFFFF,
+                        "pixel (" + x + "," + y + ") differs");
+    }
+
+    /**
+     * Test method for {@link renderer.PngEncoder#write(Path, int[], int, Tile)}
+     */
+    @Test
+    void testWrite() throws IOException {
+        int[] rgb = createPixels(400, 1000);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: an image of several chunks decodes into the same pixels
+        assertEncoded("png_encoder", rgb, 400, new Tile(0, 0, 400, 1000));
+        // TC02: a region of the pixels
+        assertEncoded("png_encoder_region", rgb, 400, new Tile(33, 450, 101, 550));
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a single pixel image
+        assertEncoded("png_encoder_pixel", new int[] { 0x123456 }, 1, new Tile(0, 0, 1, 1));
+        // TC12: a single row image
+        assertEncoded("png_encoder_row", rgb, 400, new Tile(0, 999, 400, 1));
+    }
+
+    /**
+     * Test method for {@link renderer.PngEncoder#combineAdler(int, int, long)}
+     */
+    @Test
+    void testCombineAdler() {
+        byte[] bytes = new byte[200000];
+        new Random(7).nextBytes(bytes);
+        Adler32 whole = new Adler32();
+        whole.update(bytes);
+        Adler32 first = new Adler32();
+        Adler32 second = new Adler32();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: checksum of a concatenation
+        first.update(bytes, 0, 70000);
+        second.update(bytes, 70000, bytes.length - 70000);
+        assertEquals((int) whole.getValue(),
+                PngEncoder.combineAdler((int) first.getValue(), (int) second.getValue(), bytes.length - 70000),
+                "wrong combined checksum");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: an empty first sequence
+        assertEquals((int) whole.getValue(), PngEncoder.combineAdler(1, (int) whole.getValue(), bytes.length),
+                "wrong combined checksum");
+        // TC12: an empty second sequence
+        assertEquals((int) whole.getValue(), PngEncoder.combineAdler((int) whole.getValue(), 1, 0),
+                "wrong combined checksum");
+    }
+
+    /**
+     * Benchmark of the parallel encoder against ImageIO, on 4K and 16K images.
+     * Run by -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkWrite() throws IOException {
+        int[][] sizes = { { 3840, 2160 }, { 15360, 8640 } };
+        for (int[] size : sizes) {
+            int width = size[0], height = size[1];
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(createPixels(width, height), 0, rgb, 0, rgb.length);
+
+            File imageIoFile = new File(FOLDER_PATH, "benchmark_imageio.png");
+            File parallelFile = new File(FOLDER_PATH, "benchmark_parallel.png");
+            long start = System.nanoTime();
+            ImageIO.write(image, "png", imageIoFile);
+            long imageIoTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            PngEncoder.write(parallelFile.toPath(), rgb, width, new Tile(0, 0, width, height));
+            long parallelTime = System.nanoTime() - start;
+
+            System.out.printf("%dx%d: ImageIO %d ms (%d KB), parallel %d ms (%d KB)%n", width, height,
+                    imageIoTime / 1_000_000, imageIoFile.length() / 1024,
+                    parallelTime / 1_000_000, parallelFile.length() / 1024);
+        }
+    }
+}
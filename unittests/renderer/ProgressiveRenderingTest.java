@@ -0,0 +1,103 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for progressive (multi-pass) rendering into an accumulation buffer
+ *
+ * @author Eitan Lafair
+ */
+class ProgressiveRenderingTest {
+
+    /**
+     * Creates a small scene with a lighted sphere and a triangle
+     */
+    private Scene createScene() {
+        Scene scene = new Scene("Progressive scene");
+        scene.setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -100), 40)
+                        .setEmission(new Color(40, 60, 120))
+                        .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(60)),
+                new Triangle(new Point(-80, -60, -150), new Point(80, -60, -150), new Point(0, 70, -150))
+                        .setEmission(new Color(120, 40, 40))
+                        .setMaterial(new Material().setKd(0.6).setKs(0.2).setShininess(20)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(60, 60, 50)).setKl(0.001).setKQ(0.0001));
+        return scene;
+    }
+
+    /**
+     * Creates a camera for the scene
+     */
+    private Camera.Builder cameraBuilder(Scene scene) {
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(150, 150)
+                .setResolution(120, 120)
+                .setRayTracer(scene, RayTracerType.SIMPLE);
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#renderImageProgressive(java.util.function.IntPredicate)}
+     */
+    @Test
+    void testProgressivePasses() {
+        Camera camera = cameraBuilder(createScene()).build()
+                .enableAntiAliasing(true)
+                .setAntiAliasingSamples(4)
+                .setMultithreading(-1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a pass per stratum of the grid, the image can be written after each pass
+        assertEquals(16, camera.getProgressivePassCount(), "wrong amount of passes for 4x4 strata");
+        int[] passes = {0};
+        camera.renderImageProgressive(pass -> {
+            assertEquals(++passes[0], pass, "passes must be reported in order");
+            if (pass == 1) camera.writeToImage("progressive_pass1");
+            return true;
+        }).writeToImage("progressive_final");
+        assertEquals(16, passes[0], "all the passes must be rendered");
+
+        // TC02: stopping after a few passes
+        passes[0] = 0;
+        camera.renderImageProgressive(pass -> ++passes[0] < 3);
+        assertEquals(3, passes[0], "rendering must stop when the callback returns false");
+
+        // TC03: circle shaped sampling area has strata only inside the ellipse
+        camera.setAntiAliasingShape(BlackBoard.Shape.CIRCLE);
+        assertEquals(12, camera.getProgressivePassCount(), "wrong amount of passes for circle strata");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: without anti-aliasing there is a single pass
+        camera.enableAntiAliasing(false);
+        assertEquals(1, camera.getProgressivePassCount(), "regular rendering is a single pass");
+    }
+
+    /**
+     * Test method for {@link renderer.BlackBoard#progressiveOrder()}
+     */
+    @Test
+    void testProgressiveOrder() {
+        BlackBoard blackBoard = new BlackBoard(Point.ZERO, Vector.AXIS_X, Vector.AXIS_Y, 1, 1, 5,
+                BlackBoard.Shape.RECTANGLE);
+        int[] order = blackBoard.progressiveOrder();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: every cell appears exactly once, starting at the central cell
+        assertEquals(25, order.length, "wrong amount of cells");
+        assertEquals(12, order[0], "first stratum must be the central cell");
+        boolean[] seen = new boolean[25];
+        for (int cell : order) {
+            assertFalse(seen[cell], "cell appears twice");
+            seen[cell] = true;
+        }
+    }
+}
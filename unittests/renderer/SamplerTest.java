@@ -0,0 +1,127 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the anti-aliasing samplers
+ *
+ * @author Eitan Lafair
+ */
+class SamplerTest {
+    /** All the samplers */
+    private static final Sampler[] SAMPLERS = {
+            BlackBoard.Shape.RECTANGLE, BlackBoard.Shape.CIRCLE,
+            StochasticSampler.JITTERED, StochasticSampler.HALTON,
+            StochasticSampler.SOBOL, StochasticSampler.BLUE_NOISE };
+
+    /**
+     * Test method for {@link renderer.Sampler#generate(int, long, double[])}
+     */
+    @Test
+    void testGenerate() {
+        for (Sampler sampler : SAMPLERS) {
+            double[] uv = new double[2 * sampler.sampleCount(5)];
+            double[] other = new double[uv.length];
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: all the samples are inside the area
+            assertEquals(sampler.sampleCount(5), sampler.generate(5, 7, uv), "wrong amount of samples of " + sampler);
+            for (double offset : uv)
+                assertTrue(offset >= -0.5 && offset < 0.5, "sample outside the area for " + sampler);
+
+            // TC02: the same key gives the same samples
+            sampler.generate(5, 7, other);
+            assertArrayEquals(uv, other, "samples must depend only on the key for " + sampler);
+
+            // TC03: randomized samplers give other areas other samples
+            sampler.generate(5, 8, other);
+            assertEquals(sampler instanceof BlackBoard.Shape, Arrays.equals(uv, other),
+                    "only randomized samplers depend on the key, " + sampler);
+
+            // TC04: the progressive order is a permutation of the samples
+            int[] order = sampler.progressiveOrder(5).clone();
+            Arrays.sort(order);
+            for (int k = 0; k < order.length; k++)
+                assertEquals(k, order[k], "progressive order must cover every sample once for " + sampler);
+        }
+    }
+
+    /**
+     * Test method for the stratification of {@link renderer.StochasticSampler}
+     */
+    @Test
+    void testStratification() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: jittered sampling puts each sample in its own grid cell
+        double[] uv = new double[2 * 16];
+        StochasticSampler.JITTERED.generate(4, 3, uv);
+        for (int cell = 0; cell < 16; cell++) {
+            assertEquals(cell / 4, (int) ((uv[2 * cell] + 0.5) * 4), "jittered sample outside its column");
+            assertEquals(cell % 4, (int) ((uv[2 * cell + 1] + 0.5) * 4), "jittered sample outside its row");
+        }
+
+        // TC02: scrambled Sobol samples stay in distinct elementary intervals
+        // (16 columns, 16 rows, and 4x4 squares)
+        for (long key = 0; key < 10; key++) {
+            StochasticSampler.SOBOL.generate(4, key, uv);
+            boolean[] columns = new boolean[16], rows = new boolean[16], squares = new boolean[16];
+            for (int k = 0; k < 16; k++) {
+                double u = uv[2 * k] + 0.5, v = uv[2 * k + 1] + 0.5;
+                assertFalse(columns[(int) (u * 16)], "two Sobol samples in a column");
+                assertFalse(rows[(int) (v * 16)], "two Sobol samples in a row");
+                assertFalse(squares[(int) (u * 4) * 4 + (int) (v * 4)], "two Sobol samples in a square");
+                columns[(int) (u * 16)] = rows[(int) (v * 16)] = squares[(int) (u * 4) * 4 + (int) (v * 4)] = true;
+            }
+        }
+
+        // TC03: blue noise samples keep a minimal distance (with wrap around)
+        StochasticSampler.BLUE_NOISE.generate(4, 5, uv);
+        for (int a = 0; a < 16; a++)
+            for (int b = a + 1; b < 16; b++) {
+                double du = Math.abs(uv[2 * a] - uv[2 * b]), dv = Math.abs(uv[2 * a + 1] - uv[2 * b + 1]);
+                du = Math.min(du, 1 - du);
+                dv = Math.min(dv, 1 - dv);
+                assertTrue(du * du + dv * dv > 0.1 * 0.1, "blue noise samples are too close");
+            }
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setAntiAliasingShape(Sampler)}:
+     * randomized anti-aliasing gives the same image for any threading
+     */
+    @Test
+    void testThreadingDeterminism() {
+        Scene scene = new Scene("Sampler scene");
+        scene.geometries.add(new Sphere(new Point(0, 0, -100), 40)
+                .setEmission(new Color(100, 40, 40))
+                .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(30).setKr(0.3)));
+        scene.lights.add(new DirectionalLight(new Color(300, 300, 300), new Vector(1, -1, -1)));
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(40, 40)
+                .setRayTracer(scene, RayTracerType.SIMPLE);
+        Tile frame = new Tile(0, 0, 40, 40);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: single thread, parallel stream and raw threads give identical pixels
+        for (Sampler sampler : SAMPLERS) {
+            float[] expected = builder.build().enableAntiAliasing(true).setAntiAliasingSamples(3)
+                    .setAntiAliasingShape(sampler).setMultithreading(0).renderTile(frame);
+            for (int threads : new int[]{-1, 3})
+                assertArrayEquals(expected, builder.build().enableAntiAliasing(true).setAntiAliasingSamples(3)
+                                .setAntiAliasingShape(sampler).setMultithreading(threads).renderTile(frame),
+                        "image depends on threading with " + sampler);
+        }
+    }
+}
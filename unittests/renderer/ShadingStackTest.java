@@ -0,0 +1,63 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.Material;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the iterative evaluation of the ray tree of the simple ray tracer
+ *
+ * @author Eitan Lafair
+ */
+class ShadingStackTest {
+    /** Emission of the mirrors */
+    private static final double EMISSION = 10;
+    /** Reflection coefficient of the mirrors */
+    private static final double KR = 0.5;
+
+    /**
+     * Color of a recursive evaluation of a ray between the mirrors - the emission
+     * of a hit, and its global effects (the emission again and the reflection)
+     * above the last level
+     */
+    private static double recursive(int level) {
+        return level == 1 ? EMISSION : EMISSION + (EMISSION + recursive(level - 1) * KR);
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#traceRay(Ray)}
+     */
+    @Test
+    void testRayTree() {
+        Scene scene = new Scene("Mirrors scene");
+        Material mirror = new Material().setKr(KR);
+        scene.geometries.add(
+                new Plane(Point.ZERO, Vector.AXIS_Z).setEmission(new Color(EMISSION, EMISSION, EMISSION))
+                        .setMaterial(mirror),
+                new Plane(new Point(0, 0, 10), Vector.AXIS_Z).setEmission(new Color(EMISSION, EMISSION, EMISSION))
+                        .setMaterial(mirror));
+        SimpleRayTracer tracer = new SimpleRayTracer(scene);
+        Ray ray = new Ray(new Point(0, 0, 5), new Vector(0, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a ray between two mirrors is reflected up to the maximal depth, as by recursion
+        assertEquals(recursive(10), tracer.traceRay(ray).getRgb().d1(), 0, "ray tree must match the recursion");
+        // TC02: the stack of the thread is released and reused by the next ray
+        assertEquals(recursive(10), tracer.traceRay(ray).getRgb().d1(), 0, "next ray must get the same color");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: the stack grows beyond its initial capacity and shrinks back
+        ShadingStack stack = new ShadingStack();
+        for (int i = 0; i < 100; i++)
+            assertEquals(i, stack.push(ray, null, i, Double3.ONE, null, i, ShadingStack.TRACE), "entry index");
+        assertEquals(99, stack.levels[99], "entries must be kept when the stack grows");
+        for (int i = 0; i < 100; i++) stack.pop();
+        assertEquals(0, stack.size, "all the entries must be popped");
+        assertNull(stack.rays[0], "popped entries must be released");
+    }
+}
@@ -0,0 +1,87 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the last occluder shadow cache of the simple ray tracer
+ *
+ * @author Eitan Lafair
+ */
+class ShadowCacheTest {
+    /** Resolution of the rendered rays */
+    private static final int SIZE = 40;
+    /** Location of the camera */
+    private static final Point CAMERA = new Point(0, 0, 100);
+    /** Location of the light */
+    private static final Point LIGHT = new Point(0, 0, 0);
+    /** Amount of shadow rays which traversed the scene (by the far away sphere) */
+    private final AtomicInteger traversals = new AtomicInteger();
+
+    /**
+     * Traces the rays of a wall lighted through an occluder, and counts the
+     * scene traversals of shadow rays by a far away sphere which is never hit
+     *
+     * @param occluder the material of the occluder
+     * @return amount of pixels in full shadow
+     */
+    private int trace(Material occluder) {
+        Scene scene = new Scene("Shadow cache scene");
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), Vector.AXIS_Z)
+                        .setMaterial(new Material().setKd(0.8)),
+                new Sphere(new Point(0, 0, -50), 20).setMaterial(occluder),
+                new Sphere(new Point(1000, 1000, 1000), 1) {
+                    @Override
+                    protected List<Intersectable.Intersection> calculateIntersectionsHelper(Ray ray) {
+                        if (!ray.head.equals(CAMERA) // Shadow ray - toward the light
+                                && LIGHT.subtract(ray.head).normalize().dotProduct(ray.direction) > 0.9999)
+                            traversals.incrementAndGet();
+                        return super.calculateIntersectionsHelper(ray);
+                    }
+                });
+        scene.lights.add(new PointLight(new Color(500, 500, 500), LIGHT));
+        Camera camera = Camera.getBuilder()
+                .setLocation(CAMERA)
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(200, 200)
+                .setResolution(SIZE, SIZE)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+        SimpleRayTracer tracer = new SimpleRayTracer(scene);
+
+        traversals.set(0);
+        int shadowed = 0;
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++)
+                if (tracer.traceRay(camera.constructRay(SIZE, SIZE, j, i)).getRgb().lowerThan(1e-9)) shadowed++;
+        return shadowed;
+    }
+
+    /**
+     * Test method for the shadow cache of {@link renderer.SimpleRayTracer#traceRay(Ray)}
+     */
+    @Test
+    void testShadowCache() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: shadow rays of shadowed points test the cached occluder only
+        // (a traversal per lighted point, and one for the first shadowed point)
+        int shadowed = trace(new Material().setKd(0.5));
+        assertTrue(shadowed > 0 && shadowed < SIZE * SIZE / 2, "wrong shadow: " + shadowed);
+        assertEquals(SIZE * SIZE - shadowed + 1, traversals.get(), "shadowed points must use the cache");
+
+        // TC02: a transparent occluder is not cached - every shadow ray traverses the scene
+        assertEquals(0, trace(new Material().setKd(0.5).setKt(0.5)), "a transparent occluder makes no full shadow");
+        // (and the wall points seen through the occluder add their own shadow rays)
+        assertTrue(traversals.get() >= SIZE * SIZE, "transparent occluders must not be cached");
+    }
+}
@@ -0,0 +1,126 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the shadow map mode of directional and spot lights
+ *
+ * @author Eitan Lafair
+ */
+class ShadowMapTest {
+    /** Resolution of the images */
+    private static final int SIZE = 50;
+    /** Resolution of the shadow maps */
+    private static final int MAP = 128;
+    /** Location of the camera */
+    private static final Point CAMERA = new Point(0, 0, 300);
+    /** Amount of rays which are not camera rays (by the far away sphere) */
+    private final AtomicInteger lightRays = new AtomicInteger();
+
+    /**
+     * Renders a wall lighted through an occluder, and counts the rays which are
+     * not camera rays
+     */
+    private void render(LightSource light, String name) {
+        Scene scene = new Scene("Shadow map scene");
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), Vector.AXIS_Z).setMaterial(new Material().setKd(0.8)),
+                new Sphere(new Point(-20, 0, -50), 20).setMaterial(new Material().setKd(0.5)),
+                new Sphere(new Point(1000, 1000, 1000), 1) {
+                    @Override
+                    protected List<Intersectable.Intersection> calculateIntersectionsHelper(Ray ray) {
+                        if (!ray.head.equals(CAMERA)) lightRays.incrementAndGet();
+                        return super.calculateIntersectionsHelper(ray);
+                    }
+                });
+        scene.lights.add(light);
+        lightRays.set(0);
+        Camera.getBuilder()
+                .setLocation(CAMERA)
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(300).setVpSize(200, 200)
+                .setResolution(SIZE, SIZE)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build()
+                .renderImage()
+                .writeToImage(name);
+    }
+
+    /**
+     * Fraction of the pixels of two generated images which differ noticeably, and
+     * checks that the first has shadow pixels
+     */
+    private double difference(String name, String reference) throws IOException {
+        BufferedImage a = ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + name + ".png"));
+        BufferedImage b = ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + reference + ".png"));
+        int differ = 0, shadow = 0;
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++) {
+                int x = a.getRGB(j, i) & 0xFF, y = b.getRGB(j, i) & 0xFF;
+                if (x == 0) shadow++;
+                if (Math.abs(x - y) > 8) differ++;
+            }
+        assertTrue(shadow > 0, "there must be a shadow in " + name);
+        return (double) differ / (SIZE * SIZE);
+    }
+
+    /**
+     * Test method for {@link lighting.SpotLight#setShadowMap(int, double)} and
+     * {@link lighting.DirectionalLight#setShadowMap(int, Point, double)}
+     */
+    @Test
+    void testShadowMap() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: spot light - no shadow rays but the rays of the map, and about the exact shadow
+        render(new SpotLight(new Color(800, 800, 800), new Point(40, 0, 50), new Vector(-1, 0, -3)), "map_spot_exact");
+        assertTrue(lightRays.get() > SIZE * SIZE / 2, "exact shadows must trace shadow rays");
+        render(new SpotLight(new Color(800, 800, 800), new Point(40, 0, 50), new Vector(-1, 0, -3))
+                .setShadowMap(MAP, 80), "map_spot");
+        assertEquals(MAP * MAP, lightRays.get(), "shadow map must replace the shadow rays");
+        assertTrue(difference("map_spot", "map_spot_exact") < 0.05, "shadow map must approximate the shadow");
+
+        // TC02: directional light over an area covering the image
+        Vector direction = new Vector(1, 0, -2);
+        render(new DirectionalLight(new Color(200, 200, 200), direction), "map_directional_exact");
+        render(new DirectionalLight(new Color(200, 200, 200), direction)
+                .setShadowMap(MAP, new Point(0, 0, -100), 400), "map_directional");
+        assertEquals(MAP * MAP, lightRays.get(), "shadow map must replace the shadow rays");
+        assertTrue(difference("map_directional", "map_directional_exact") < 0.05,
+                "shadow map must approximate the shadow");
+
+        // TC03: points outside the map get exact shadow rays
+        render(new DirectionalLight(new Color(200, 200, 200), direction)
+                .setShadowMap(MAP, new Point(0, 0, -100), 100), "map_directional_partial");
+        assertTrue(lightRays.get() > MAP * MAP, "points outside the map must trace shadow rays");
+        assertTrue(difference("map_directional_partial", "map_directional_exact") < 0.05,
+                "partial shadow map must approximate the shadow");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: resolution 0 switches back to shadow rays
+        render(new DirectionalLight(new Color(200, 200, 200), direction)
+                .setShadowMap(MAP, new Point(0, 0, -100), 400).setShadowMap(0, null, 0), "map_directional_off");
+        assertEquals(0, difference("map_directional_off", "map_directional_exact"), "exact shadow must be restored");
+        // TC12: bad parameters
+        SpotLight spot = new SpotLight(new Color(1, 1, 1), Point.ZERO, Vector.AXIS_Z);
+        assertThrows(IllegalArgumentException.class, () -> spot.setShadowMap(-1, 45), "negative resolution");
+        assertThrows(IllegalArgumentException.class, () -> spot.setShadowMap(64, 90), "frustum too wide");
+        assertThrows(IllegalArgumentException.class,
+                () -> new DirectionalLight(new Color(1, 1, 1), Vector.AXIS_Z).setShadowMap(64, Point.ZERO, 0),
+                "empty area");
+    }
+}
@@ -0,0 +1,100 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the adaptive soft shadows of area lights
+ *
+ * @author Eitan Lafair
+ */
+class SoftShadowTest {
+    /** Resolution of the rendered rays */
+    private static final int SIZE = 40;
+    /** Location of the camera */
+    private static final Point CAMERA = new Point(0, 0, 300);
+    /** Amount of shadow rays (by the far away sphere) */
+    private final AtomicInteger shadowRays = new AtomicInteger();
+
+    /**
+     * Creates a camera of a wall lighted by an area light through an occluder
+     */
+    private Camera createCamera(AreaLight light) {
+        Scene scene = new Scene("Soft shadow scene");
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -100), Vector.AXIS_Z).setMaterial(new Material().setKd(0.8)),
+                new Sphere(new Point(0, 0, -50), 15).setMaterial(new Material().setKd(0.5)),
+                new Sphere(new Point(1000, 1000, 1000), 1) {
+                    @Override
+                    protected List<Intersectable.Intersection> calculateIntersectionsHelper(Ray ray) {
+                        if (!ray.head.equals(CAMERA)) shadowRays.incrementAndGet();
+                        return super.calculateIntersectionsHelper(ray);
+                    }
+                });
+        scene.lights.add(light);
+        return Camera.getBuilder()
+                .setLocation(CAMERA)
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(300).setVpSize(200, 200)
+                .setResolution(SIZE, SIZE)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+    }
+
+    /**
+     * Test method for the soft shadows of {@link lighting.AreaLight}
+     */
+    @Test
+    void testSoftShadow() throws IOException {
+        AreaLight light = new AreaLight(new Color(400, 400, 400), new Point(60, 0, 0), Vector.AXIS_Z, 20)
+                .setSamples(8);
+        Camera camera = createCamera(light);
+        shadowRays.set(0);
+        camera.renderImage().writeToImage("soft_shadow");
+        int adaptive = shadowRays.get();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: umbra, penumbra and lit wall
+        BufferedImage image = ImageIO.read(new File(System.getProperty("user.dir") + "/images/soft_shadow.png"));
+        // (the shadow is cast to the left of the occluder, along the middle row)
+        int lit = image.getRGB(0, SIZE / 2) & 0xFF;
+        int umbra = 0, penumbra = 0;
+        for (int j = 0; j < SIZE / 2 - 4; j++) {
+            int blue = image.getRGB(j, SIZE / 2) & 0xFF;
+            if (blue == 0) umbra++;
+            else if (blue < 0.9 * lit) penumbra++;
+        }
+        assertTrue(umbra > 0, "there must be an umbra");
+        assertTrue(penumbra > 1, "there must be a penumbra");
+
+        // TC02: only the penumbra is fully sampled
+        shadowRays.set(0);
+        createCamera(new AreaLight(new Color(400, 400, 400), new Point(60, 0, 0), Vector.AXIS_Z, 20)
+                .setSamples(8).setShadowBatch(light.getSampleCount())).renderImage();
+        int full = shadowRays.get();
+        // (occluded samples may skip the traversal by the shadow cache)
+        assertTrue(full > SIZE * SIZE * light.getSampleCount() / 2, "all the samples without adaptivity: " + full);
+        assertTrue(adaptive < full / 4, "adaptive sampling must skip the samples out of the penumbra: " + adaptive);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a single sample - a hard shadow
+        shadowRays.set(0);
+        createCamera(new AreaLight(new Color(400, 400, 400), new Point(60, 0, 0), Vector.AXIS_Z, 20)
+                .setSamples(1)).renderImage();
+        assertTrue(shadowRays.get() <= SIZE * SIZE, "at most a shadow ray per pixel");
+    }
+}
@@ -0,0 +1,153 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the streaming image output and the memory mapped frame buffer
+ *
+ * @author Eitan Lafair
+ */
+class StreamingOutputTest {
+    /** Directory of the generated images */
+    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+    /**
+     * Creates a camera over a lighted sphere with highlights brighter than the displayable range
+     */
+    private Camera createCamera() {
+        Scene scene = new Scene("Streaming scene");
+        scene.setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+        scene.geometries.add(new Sphere(new Point(0, 0, -100), 40)
+                .setEmission(new Color(60, 30, 90))
+                .setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(30)));
+        scene.lights.add(new PointLight(new Color(800, 600, 400), new Point(60, 60, 0)).setKl(0.001));
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 80)
+                .setResolution(75, 60)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+    }
+
+    /**
+     * Reads the float pixels of a PFM file, top row first
+     */
+    private float[] readPfm(String name, int width, int height) throws IOException {
+        byte[] bytes = Files.readAllBytes(Path.of(FOLDER_PATH, name + ".pfm"));
+        String header = "PF\n" + width + ' ' + height + "\n-1.0\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII), "wrong PFM header");
+        ByteBuffer data = ByteBuffer.wrap(bytes, header.length(), bytes.length - header.length())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        float[] pixels = new float[3 * width * height];
+        for (int y = height - 1; y >= 0; --y) // Bottom row first
+            for (int i = 0; i < 3 * width; ++i) pixels[3 * y * width + i] = data.getFloat();
+        return pixels;
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#renderImageStreaming(String, ImageFormat, int)}
+     */
+    @Test
+    void testStreaming() throws IOException {
+        createCamera().renderImage().writeToImage("streaming_reference");
+        BufferedImage expected = ImageIO.read(new File(FOLDER_PATH, "streaming_reference.png"));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a streamed PNG (bands not dividing the height) equals the regular image
+        createCamera().renderImageStreaming("streaming_png", ImageFormat.PNG, 7);
+        BufferedImage png = ImageIO.read(new File(FOLDER_PATH, "streaming_png.png"));
+        for (int y = 0; y < 60; ++y)
+            for (int x = 0; x < 75; ++x)
+                assertEquals(expected.getRGB(x, y), png.getRGB(x, y), "PNG pixel differs");
+
+        // TC02: a streamed PPM holds the same 8 bit colors
+        createCamera().renderImageStreaming("streaming_ppm", ImageFormat.PPM, 16);
+        byte[] ppm = Files.readAllBytes(Path.of(FOLDER_PATH, "streaming_ppm.ppm"));
+        int offset = "P6\n75 60\n255\n".length();
+        assertEquals(offset + 3 * 75 * 60, ppm.length, "wrong PPM size");
+        for (int y = 0; y < 60; ++y)
+            for (int x = 0; x < 75; ++x) {
+                int index = offset + 3 * (y * 75 + x);
+                int rgb = (ppm[index] & 0xFF) << 16 | (ppm[index + 1] & 0xFF) << 8 | ppm[index + 2] & 0xFF;
+                assertEquals(expected.getRGB(x, y) & 0xFFFFFF, rgb, "PPM pixel differs");
+            }
+
+        // TC03: a streamed PFM keeps the high dynamic range colors, truncated into the 8 bit image
+        createCamera().renderImageStreaming("streaming_pfm", ImageFormat.PFM, 13);
+        float[] pfm = readPfm("streaming_pfm", 75, 60);
+        float max = 0;
+        for (int y = 0; y < 60; ++y)
+            for (int x = 0; x < 75; ++x) {
+                float red = pfm[3 * (y * 75 + x)];
+                assertEquals(expected.getRGB(x, y) >> 16 & 0xFF, Math.min(255, (int) red), "PFM pixel differs");
+                max = Math.max(max, red);
+            }
+        assertTrue(max > 255, "highlights must keep their high dynamic range");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: bands must not be empty
+        assertThrows(IllegalArgumentException.class,
+                () -> createCamera().renderImageStreaming("streaming_empty", ImageFormat.PNG, 0),
+                "empty bands must be rejected");
+        // TC12: modes which need the whole region are not rendered by bands
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().enableVarianceSampling(true).renderImageStreaming("streaming_variance",
+                        ImageFormat.PNG, 10),
+                "variance sampling must not be ignored");
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().enableEdgeSampling(true).renderImageStreaming("streaming_edges",
+                        ImageFormat.PNG, 10),
+                "edge sampling must not be ignored");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#renderImageMapped(String)}
+     */
+    @Test
+    void testMappedFrameBuffer() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: tiles rendered into the mapped frame buffer give the streamed PFM
+        createCamera().renderImageStreaming("mapped_reference", ImageFormat.PFM, 60);
+        createCamera().setTileSize(16).renderImageMapped("mapped_frame");
+        assertArrayEquals(readPfm("mapped_reference", 75, 60), readPfm("mapped_frame", 75, 60),
+                "mapped frame buffer differs from the streamed image");
+
+        // TC02: tiles are read back from the frame buffer
+        MappedFrameBuffer frameBuffer = new MappedFrameBuffer("mapped_tiles", 20, 10);
+        Tile tile = new Tile(5, 3, 4, 2);
+        float[] pixels = new float[3 * tile.size()];
+        for (int i = 0; i < pixels.length; ++i) pixels[i] = i * 1.5f;
+        frameBuffer.writeTile(tile, pixels);
+        assertArrayEquals(pixels, frameBuffer.readTile(tile), "tile must be read back");
+        frameBuffer.close();
+        assertEquals(3 * 1.5f, readPfm("mapped_tiles", 20, 10)[3 * (3 * 20 + 6)], "tile must be in its place");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: modes which need the whole region are not rendered by tiles
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().setLightResampling(8, 4).renderImageMapped("mapped_resampling"),
+                "light resampling must not be ignored");
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().setCheckpoint("mapped_checkpoint", 60).renderImageMapped("mapped_checkpoint"),
+                "the checkpoint must not be ignored");
+    }
+}
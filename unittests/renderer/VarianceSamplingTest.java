@@ -0,0 +1,108 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.*;
+
+/**
+ * Tests for variance driven adaptive sampling
+ *
+ * @author Eitan Lafair
+ */
+class VarianceSamplingTest {
+    /** Rays traced through the edge column of pixels */
+    private final AtomicInteger edgeRays = new AtomicInteger();
+    /** Rays traced through the other pixels */
+    private final AtomicInteger otherRays = new AtomicInteger();
+
+    /**
+     * Creates a 10x10 pixels camera over a view plane of 100x100 at distance 100,
+     * with a vertical black/white edge in the middle of pixel column 6
+     */
+    private Camera createCamera() {
+        edgeRays.set(0);
+        otherRays.set(0);
+        RayTracerBase edgeTracer = new RayTracerBase(null) {
+            @Override
+            public Color traceRay(Ray ray) {
+                double x = 100 * ray.direction.dotProduct(Vector.AXIS_X) / -ray.direction.dotProduct(Vector.AXIS_Z);
+                (x >= 10 && x < 20 ? edgeRays : otherRays).incrementAndGet();
+                return x > 15 ? new Color(255, 255, 255) : Color.BLACK;
+            }
+        };
+        return Camera.getBuilder()
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Point(0, 0, -100), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(10, 10)
+                .setRayTracer(edgeTracer)
+                .build()
+                .enableVarianceSampling(true)
+                .setAntiAliasingShape(StochasticSampler.JITTERED)
+                .setAntiAliasingSamples(4)
+                .setVarianceMinSamples(4);
+    }
+
+    /**
+     * Reads a generated image
+     */
+    private BufferedImage read(String name) throws IOException {
+        return ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + name + ".png"));
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#enableVarianceSampling(boolean)}
+     */
+    @Test
+    void testVarianceSampling() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: flat pixels stop at the minimal samples, noisy pixels get all the samples
+        createCamera().setVarianceTolerance(1).renderImage();
+        assertEquals(90 * 4, otherRays.get(), "flat pixels must stop after the minimal samples");
+        assertEquals(10 * 16, edgeRays.get(), "edge pixels must get all the samples");
+
+        // TC02: the budget goes to the noisiest pixels
+        createCamera().setVarianceTolerance(1).setSampleBudget(5).renderImage();
+        assertEquals(90 * 4, otherRays.get(), "flat pixels must not get samples of the budget");
+        assertEquals(10 * 4 + 100, edgeRays.get(), "the budget must be spent on the edge pixels");
+
+        // TC03: the image does not depend on threading
+        createCamera().setSampleBudget(5).setMultithreading(0).renderImage().writeToImage("variance_single");
+        createCamera().setSampleBudget(5).setMultithreading(3).setTileSize(3).renderImage()
+                .writeToImage("variance_threads");
+        createCamera().setSampleBudget(5).setMultithreading(-1).setTileSize(3).renderImage()
+                .writeToImage("variance_streams");
+        BufferedImage single = read("variance_single");
+        BufferedImage threads = read("variance_threads");
+        BufferedImage streams = read("variance_streams");
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                assertEquals(single.getRGB(j, i), threads.getRGB(j, i), "image depends on threading");
+                assertEquals(single.getRGB(j, i), streams.getRGB(j, i), "image depends on threading");
+            }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: a budget below the minimal samples still gives every pixel its minimal samples
+        createCamera().setSampleBudget(1).renderImage();
+        assertEquals(100 * 4, edgeRays.get() + otherRays.get(), "minimal samples must always be traced");
+        // TC12: a huge tolerance stops every pixel at the minimal samples
+        createCamera().setVarianceTolerance(1000).renderImage();
+        assertEquals(100 * 4, edgeRays.get() + otherRays.get(), "all the pixels must be converged");
+        // TC13: less than 2 samples give no variance
+        assertThrows(IllegalArgumentException.class, () -> createCamera().setVarianceMinSamples(1),
+                "variance needs at least 2 samples");
+        // TC14: variance sampling renders cannot be checkpointed
+        assertThrows(IllegalStateException.class,
+                () -> createCamera().setCheckpoint("variance_checkpoint", 60).renderImage(),
+                "variance sampling must not ignore the checkpoint");
+    }
+}
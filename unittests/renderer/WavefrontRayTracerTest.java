@@ -0,0 +1,141 @@
+package renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+
+/**
+ * Tests for the wavefront ray tracer
+ *
+ * @author Eitan Lafair
+ */
+class WavefrontRayTracerTest {
+    /** Resolution of the images */
+    private static final int SIZE = 40;
+    /** The test scene - reflective and transparent spheres between two mirrors */
+    private final Scene scene = new Scene("Wavefront scene");
+
+    /**
+     * Creates the scene
+     */
+    WavefrontRayTracerTest() {
+        scene.setAmbientLight(new AmbientLight(new Color(15, 15, 15)));
+        scene.setBackground(new Color(20, 40, 60));
+        scene.geometries.add(
+                new Plane(Point.ZERO, Vector.AXIS_Z)
+                        .setMaterial(new Material().setKd(0.5).setKs(0.3).setShininess(20).setKr(0.4).setKa(0.2)),
+                new Sphere(new Point(0, 0, 10), 5).setEmission(new Color(20, 10, 5))
+                        .setMaterial(new Material().setKt(0.6).setKr(0.3).setKd(0.2).setKa(0.1)),
+                new Sphere(new Point(12, 3, 6), 4).setMaterial(new Material().setKr(0.9).setKd(0.1)),
+                new Plane(new Point(0, 0, 60), Vector.AXIS_Z).setMaterial(new Material().setKr(0.95).setKd(0.05)));
+        scene.lights.add(new PointLight(new Color(200, 160, 120), new Point(20, 20, 40)));
+        scene.lights.add(new SpotLight(new Color(100, 100, 200), new Point(-20, 5, 30), new Vector(1, 0, -1)));
+    }
+
+    /**
+     * Creates a camera of the scene
+     */
+    private Camera createCamera(RayTracerType type) {
+        return Camera.getBuilder()
+                .setLocation(new Point(0, -40, 40))
+                .setDirection(new Point(0, 0, 8), Vector.AXIS_Z)
+                .setVpDistance(100).setVpSize(100, 100)
+                .setResolution(SIZE, SIZE)
+                .setRayTracer(scene, type)
+                .build();
+    }
+
+    /**
+     * Reads a generated image
+     */
+    private static BufferedImage read(String name) throws IOException {
+        return ImageIO.read(new File(System.getProperty("user.dir") + "/images/" + name + ".png"));
+    }
+
+    /**
+     * Asserts that two generated images differ at most by rounding
+     */
+    private static void assertSimilar(String expected, String actual) throws IOException {
+        BufferedImage a = read(expected), b = read(actual);
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++)
+                for (int shift = 0; shift <= 16; shift += 8)
+                    assertEquals(a.getRGB(j, i) >> shift & 0xFF, b.getRGB(j, i) >> shift & 0xFF, 1,
+                            "pixel (" + j + "," + i + ") differs from the simple tracer");
+    }
+
+    /**
+     * Test method for {@link renderer.WavefrontRayTracer#traceRays(Ray[], long[])}
+     */
+    @Test
+    void testTraceRays() {
+        Ray[] rays = new Ray[400];
+        long[] seeds = new long[400];
+        for (int i = 0; i < rays.length; i++) {
+            double x = i % 20 - 10, y = i / 20 - 10;
+            rays[i] = new Ray(new Point(x * 3, y * 3, 40), new Vector(x * 0.1, y * 0.1, -1));
+            seeds[i] = i;
+        }
+        SimpleRayTracer simple = new SimpleRayTracer(scene);
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(scene);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the wave gets the colors of the rays traced one by one
+        Color[] colors = wavefront.traceRays(rays, seeds);
+        for (int i = 0; i < rays.length; i++) {
+            Double3 expected = simple.traceRay(rays[i], seeds[i]).getRgb();
+            Double3 actual = colors[i].getRgb();
+            assertEquals(expected.d1(), actual.d1(), 1e-9 * (1 + expected.d1()), "wrong red of ray " + i);
+            assertEquals(expected.d2(), actual.d2(), 1e-9 * (1 + expected.d2()), "wrong green of ray " + i);
+            assertEquals(expected.d3(), actual.d3(), 1e-9 * (1 + expected.d3()), "wrong blue of ray " + i);
+        }
+        // TC02: a single ray is traced as by the simple tracer
+        assertEquals(simple.traceRay(rays[210], 210).getRgb(), wavefront.traceRay(rays[210], 210).getRgb(),
+                "single ray must be traced as by the simple tracer");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: an empty wave, and a key missing
+        assertEquals(0, wavefront.traceRays(new Ray[0], new long[0]).length, "empty wave");
+        assertThrows(IllegalArgumentException.class, () -> wavefront.traceRays(rays, new long[1]), "missing keys");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#renderImage()} with {@link RayTracerType#WAVEFRONT}
+     */
+    @Test
+    void testRenderImage() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a render by tiles of waves matches the simple tracer
+        createCamera(RayTracerType.SIMPLE).renderImage().writeToImage("wavefront_reference");
+        createCamera(RayTracerType.WAVEFRONT).setTileSize(16).setMultithreading(3).renderImage()
+                .writeToImage("wavefront");
+        assertSimilar("wavefront_reference", "wavefront");
+
+        // TC02: all the anti-aliasing samples of a tile are traced in a wave
+        createCamera(RayTracerType.SIMPLE).enableAntiAliasing(true).setAntiAliasingSamples(3).renderImage()
+                .writeToImage("wavefront_aa_reference");
+        createCamera(RayTracerType.WAVEFRONT).enableAntiAliasing(true).setAntiAliasingSamples(3).renderImage()
+                .writeToImage("wavefront_aa");
+        assertSimilar("wavefront_aa_reference", "wavefront_aa");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: output variables and adaptive super sampling are not supported
+        assertThrows(IllegalStateException.class,
+                () -> createCamera(RayTracerType.WAVEFRONT).enableAovs(Aov.DEPTH).renderImage(),
+                "output variables must not fall back silently");
+        assertThrows(IllegalStateException.class,
+                () -> createCamera(RayTracerType.WAVEFRONT).enableAdaptiveSuperSampling(true).renderImage(),
+                "adaptive super sampling must not fall back silently");
+    }
+}